@@ -0,0 +1,249 @@
+package client.twilio.com.quickstart;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothHeadset;
+import android.bluetooth.BluetoothProfile;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioManager;
+import android.util.Log;
+
+/*
+ * The audio state of the device while calls are live.
+ *
+ * start() saves the current audio mode, requests audio focus and enters MODE_IN_COMMUNICATION once
+ * for the whole session, however many calls overlap; stop() restores the saved mode and abandons focus.
+ * In between, the output is routed to the speaker, a Bluetooth headset, a wired headset or the
+ * earpiece, in that order of preference, and the AudioManager is only touched when the route
+ * actually changes. Mode and route switches are slow on many devices and cause audible glitches.
+ *
+ * All methods must be called on the main thread, where focus changes and headset broadcasts are delivered.
+ */
+public class AudioSession implements AudioManager.OnAudioFocusChangeListener {
+
+    private static final String TAG = AudioSession.class.getName();
+
+    public static final int ROUTE_NONE = -1;
+    public static final int ROUTE_EARPIECE = 0;
+    public static final int ROUTE_SPEAKER = 1;
+    public static final int ROUTE_WIRED_HEADSET = 2;
+    public static final int ROUTE_BLUETOOTH = 3;
+
+    private final Context context;
+    private final AudioManager audioManager;
+
+    private boolean active;
+    private int savedAudioMode = AudioManager.MODE_INVALID;
+    private boolean savedSpeakerphoneOn;
+    private boolean hasAudioFocus;
+
+    private boolean speakerPhoneRequested;
+    private boolean wiredHeadsetConnected;
+    private boolean bluetoothHeadsetConnected;
+    private int route = ROUTE_NONE;
+
+    /*
+     * Number of audio mode and route switches applied, for diagnostics
+     */
+    private int modeChangeCount;
+    private int routeChangeCount;
+
+    /*
+     * Tracks headsets being plugged in or connected while the session is active
+     */
+    private final BroadcastReceiver headsetReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_HEADSET_PLUG.equals(action)) {
+                wiredHeadsetConnected = intent.getIntExtra("state", 0) == 1;
+            } else if (BluetoothHeadset.ACTION_CONNECTION_STATE_CHANGED.equals(action)) {
+                bluetoothHeadsetConnected = intent.getIntExtra(BluetoothProfile.EXTRA_STATE,
+                        BluetoothProfile.STATE_DISCONNECTED) == BluetoothProfile.STATE_CONNECTED;
+            } else if (AudioManager.ACTION_SCO_AUDIO_STATE_UPDATED.equals(action)) {
+                // The SCO link comes up asynchronously after startBluetoothSco()
+                if (route == ROUTE_BLUETOOTH && intent.getIntExtra(AudioManager.EXTRA_SCO_AUDIO_STATE,
+                        AudioManager.SCO_AUDIO_STATE_DISCONNECTED) == AudioManager.SCO_AUDIO_STATE_CONNECTED) {
+                    audioManager.setBluetoothScoOn(true);
+                }
+                return;
+            }
+            applyRoute();
+        }
+    };
+
+    public AudioSession(Context context) {
+        this.context = context.getApplicationContext();
+        this.audioManager = (AudioManager) this.context.getSystemService(Context.AUDIO_SERVICE);
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public boolean hasAudioFocus() {
+        return hasAudioFocus;
+    }
+
+    public int getRoute() {
+        return route;
+    }
+
+    public int getModeChangeCount() {
+        return modeChangeCount;
+    }
+
+    public int getRouteChangeCount() {
+        return routeChangeCount;
+    }
+
+    /*
+     * Enter communication mode for the calls about to start. Does nothing if the session is already active.
+     */
+    public void start() {
+        if (active || audioManager == null) {
+            return;
+        }
+        active = true;
+        savedAudioMode = audioManager.getMode();
+        savedSpeakerphoneOn = audioManager.isSpeakerphoneOn();
+
+        // Request audio focus before making any device switch.
+        hasAudioFocus = audioManager.requestAudioFocus(this, AudioManager.STREAM_VOICE_CALL,
+                AudioManager.AUDIOFOCUS_GAIN_TRANSIENT) == AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+
+        /*
+         * Start by setting MODE_IN_COMMUNICATION as default audio mode. It is
+         * required to be in this mode when playout and/or recording starts for
+         * best possible VoIP performance. Some devices have difficulties with speaker mode
+         * if this is not set.
+         */
+        enterCommunicationMode();
+
+        IntentFilter filter = new IntentFilter(Intent.ACTION_HEADSET_PLUG);
+        filter.addAction(BluetoothHeadset.ACTION_CONNECTION_STATE_CHANGED);
+        filter.addAction(AudioManager.ACTION_SCO_AUDIO_STATE_UPDATED);
+        context.registerReceiver(headsetReceiver, filter);
+        wiredHeadsetConnected = audioManager.isWiredHeadsetOn();
+        bluetoothHeadsetConnected = isBluetoothHeadsetConnected();
+        applyRoute();
+    }
+
+    /*
+     * Restore the audio mode and speakerphone state saved by start() and abandon audio focus
+     */
+    public void stop() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        context.unregisterReceiver(headsetReceiver);
+        if (route == ROUTE_BLUETOOTH) {
+            audioManager.setBluetoothScoOn(false);
+            audioManager.stopBluetoothSco();
+        }
+        if (audioManager.isSpeakerphoneOn() != savedSpeakerphoneOn) {
+            audioManager.setSpeakerphoneOn(savedSpeakerphoneOn);
+        }
+        if (audioManager.getMode() != savedAudioMode) {
+            audioManager.setMode(savedAudioMode);
+            modeChangeCount++;
+        }
+        audioManager.abandonAudioFocus(this);
+        hasAudioFocus = false;
+        route = ROUTE_NONE;
+        speakerPhoneRequested = false;
+    }
+
+    public boolean isSpeakerPhone() {
+        return speakerPhoneRequested;
+    }
+
+    /*
+     * Route audio to the speakerphone, or back to the headset or earpiece. Only applied while the
+     * session is active; the request is kept until then.
+     */
+    public void setSpeakerPhone(boolean speakerPhoneOn) {
+        speakerPhoneRequested = speakerPhoneOn;
+        applyRoute();
+    }
+
+    private void enterCommunicationMode() {
+        if (audioManager.getMode() != AudioManager.MODE_IN_COMMUNICATION) {
+            audioManager.setMode(AudioManager.MODE_IN_COMMUNICATION);
+            modeChangeCount++;
+        }
+    }
+
+    private int selectRoute() {
+        if (speakerPhoneRequested) {
+            return ROUTE_SPEAKER;
+        } else if (bluetoothHeadsetConnected && audioManager.isBluetoothScoAvailableOffCall()) {
+            return ROUTE_BLUETOOTH;
+        } else if (wiredHeadsetConnected) {
+            return ROUTE_WIRED_HEADSET;
+        }
+        return ROUTE_EARPIECE;
+    }
+
+    /*
+     * Switch to the preferred route, touching only the AudioManager settings that differ
+     */
+    private void applyRoute() {
+        if (!active) {
+            return;
+        }
+        int newRoute = selectRoute();
+        if (newRoute == route) {
+            return;
+        }
+        if (route == ROUTE_BLUETOOTH) {
+            audioManager.setBluetoothScoOn(false);
+            audioManager.stopBluetoothSco();
+        }
+        boolean speakerphoneOn = newRoute == ROUTE_SPEAKER;
+        if (audioManager.isSpeakerphoneOn() != speakerphoneOn) {
+            audioManager.setSpeakerphoneOn(speakerphoneOn);
+        }
+        if (newRoute == ROUTE_BLUETOOTH) {
+            audioManager.startBluetoothSco();
+        }
+        route = newRoute;
+        routeChangeCount++;
+    }
+
+    private static boolean isBluetoothHeadsetConnected() {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        try {
+            return bluetoothAdapter != null && bluetoothAdapter.isEnabled()
+                    && bluetoothAdapter.getProfileConnectionState(BluetoothProfile.HEADSET) == BluetoothProfile.STATE_CONNECTED;
+        } catch (SecurityException e) {
+            Log.w(TAG, "Unable to query the Bluetooth headset: " + e.toString());
+            return false;
+        }
+    }
+
+    @Override
+    public void onAudioFocusChange(int focusChange) {
+        switch (focusChange) {
+            case AudioManager.AUDIOFOCUS_GAIN:
+            case AudioManager.AUDIOFOCUS_GAIN_TRANSIENT:
+                hasAudioFocus = true;
+                // Another app, such as the phone app, may have changed the mode while it held focus
+                if (active) {
+                    enterCommunicationMode();
+                }
+                break;
+            case AudioManager.AUDIOFOCUS_LOSS:
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT:
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK:
+                hasAudioFocus = false;
+                Log.d(TAG, "Audio focus lost: " + focusChange);
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package client.twilio.com.quickstart;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * The call history: persists the records of a CallDetailRecorder to SQLite and reads them back a
+ * page at a time.
+ *
+ * Ending a call only queues its record in memory. Records are written behind, in one transaction
+ * per batch, on a dedicated background thread a moment after a call ends, so calls ending together
+ * share a transaction and neither the main thread nor the SDK threads ever touch the disk. Queries
+ * run on the same thread after any pending write, so a page always includes the calls just ended.
+ */
+public class CallDetailStore {
+
+    private static final String TAG = CallDetailStore.class.getName();
+
+    private static final String DATABASE_NAME = "call_history.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE = "calls";
+    private static final String COLUMN_ID = "_id";
+    private static final String COLUMN_DIRECTION = "direction";
+    private static final String COLUMN_ADDRESS = "address";
+    private static final String COLUMN_STARTED_AT = "started_at";
+    private static final String COLUMN_CONNECTED_AT = "connected_at";
+    private static final String COLUMN_ENDED_AT = "ended_at";
+    private static final String COLUMN_ERROR_CODE = "error_code";
+    private static final String COLUMN_FLAGS = "flags";
+
+    private static final String[] COLUMNS = {
+            COLUMN_ID, COLUMN_DIRECTION, COLUMN_ADDRESS, COLUMN_STARTED_AT, COLUMN_CONNECTED_AT, COLUMN_ENDED_AT,
+            COLUMN_ERROR_CODE, COLUMN_FLAGS
+    };
+
+    /*
+     * How long a finished record may wait for others to share its transaction, the most records
+     * written per transaction, and the most calls kept
+     */
+    private static final long FLUSH_DELAY_MILLIS = 2000;
+    private static final int MAX_BATCH = 64;
+    private static final int MAX_RECORDS = 5000;
+
+    private static CallDetailStore instance;
+
+    public interface PageCallback {
+        /*
+         * Records newest first, fewer than requested once the end of the history is reached.
+         * Called on the main thread.
+         */
+        void onPage(List<CallRecord> records);
+    }
+
+    private static class DatabaseHelper extends SQLiteOpenHelper {
+        private DatabaseHelper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + TABLE + " ("
+                    + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COLUMN_DIRECTION + " INTEGER NOT NULL, "
+                    + COLUMN_ADDRESS + " TEXT, "
+                    + COLUMN_STARTED_AT + " INTEGER NOT NULL, "
+                    + COLUMN_CONNECTED_AT + " INTEGER NOT NULL, "
+                    + COLUMN_ENDED_AT + " INTEGER NOT NULL, "
+                    + COLUMN_ERROR_CODE + " INTEGER NOT NULL, "
+                    + COLUMN_FLAGS + " INTEGER NOT NULL)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        }
+    }
+
+    private final CallDetailRecorder recorder = new CallDetailRecorder();
+    private final DatabaseHelper databaseHelper;
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /*
+     * Only used on the background thread
+     */
+    private SQLiteStatement insertStatement;
+    private final List<CallRecord> batch = new ArrayList<CallRecord>(MAX_BATCH);
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set(false);
+            flush();
+        }
+    };
+
+    public static synchronized CallDetailStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new CallDetailStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private CallDetailStore(Context context) {
+        databaseHelper = new DatabaseHelper(context);
+        HandlerThread thread = new HandlerThread("CallDetailStore", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /*
+     * Where calls are reported. Any thread may report.
+     */
+    public CallDetailRecorder getRecorder() {
+        return recorder;
+    }
+
+    /*
+     * Write the records queued so far soon, together with any queued until then. Cheap enough to
+     * call from any thread each time a call ends.
+     */
+    public void persistAsync() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            handler.postDelayed(flushRunnable, FLUSH_DELAY_MILLIS);
+        }
+    }
+
+    /*
+     * Load up to `limit` records older than the record `beforeId`, or the newest records if
+     * `beforeId` is 0. Pages are keyed on the row id, so each query starts where the previous one
+     * ended and calls ending in between do not shift them.
+     */
+    public void loadPageAsync(final long beforeId, final int limit, final PageCallback callback) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+                final List<CallRecord> records = query(beforeId, limit);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onPage(records);
+                    }
+                });
+            }
+        });
+    }
+
+    private void flush() {
+        while (recorder.drainTo(batch, MAX_BATCH) > 0) {
+            try {
+                insert(batch);
+            } catch (SQLiteException e) {
+                Log.e(TAG, "Unable to persist " + batch.size() + " call records: " + e.toString());
+            }
+            batch.clear();
+        }
+    }
+
+    private void insert(List<CallRecord> records) {
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        if (insertStatement == null) {
+            insertStatement = db.compileStatement("INSERT INTO " + TABLE + " ("
+                    + COLUMN_DIRECTION + ", " + COLUMN_ADDRESS + ", " + COLUMN_STARTED_AT + ", " + COLUMN_CONNECTED_AT + ", "
+                    + COLUMN_ENDED_AT + ", " + COLUMN_ERROR_CODE + ", " + COLUMN_FLAGS + ") VALUES (?, ?, ?, ?, ?, ?, ?)");
+        }
+        long lastId = 0;
+        db.beginTransaction();
+        try {
+            for (CallRecord record : records) {
+                insertStatement.clearBindings();
+                insertStatement.bindLong(1, record.getDirection());
+                if (record.getAddress() != null) {
+                    insertStatement.bindString(2, record.getAddress());
+                }
+                insertStatement.bindLong(3, record.getStartedAtMillis());
+                insertStatement.bindLong(4, record.getConnectedAtMillis());
+                insertStatement.bindLong(5, record.getEndedAtMillis());
+                insertStatement.bindLong(6, record.getErrorCode());
+                insertStatement.bindLong(7, record.getFlags());
+                lastId = insertStatement.executeInsert();
+            }
+            // Row ids only grow, so everything below the newest MAX_RECORDS is the oldest
+            if (lastId > MAX_RECORDS) {
+                db.delete(TABLE, COLUMN_ID + " <= ?", new String[] { String.valueOf(lastId - MAX_RECORDS) });
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private List<CallRecord> query(long beforeId, int limit) {
+        List<CallRecord> records = new ArrayList<CallRecord>(limit);
+        Cursor cursor;
+        try {
+            SQLiteDatabase db = databaseHelper.getReadableDatabase();
+            cursor = db.query(TABLE, COLUMNS, COLUMN_ID + " < ?",
+                    new String[] { String.valueOf(beforeId > 0 ? beforeId : Long.MAX_VALUE) },
+                    null, null, COLUMN_ID + " DESC", String.valueOf(limit));
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Unable to load call records: " + e.toString());
+            return records;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                records.add(new CallRecord(cursor.getLong(0), cursor.getInt(1), cursor.getString(2), cursor.getLong(3),
+                        cursor.getLong(4), cursor.getLong(5), cursor.getInt(6), cursor.getInt(7)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return records;
+    }
+}
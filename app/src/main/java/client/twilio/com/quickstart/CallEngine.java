@@ -0,0 +1,1237 @@
+package client.twilio.com.quickstart;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.twilio.client.Connection;
+import com.twilio.client.ConnectionListener;
+import com.twilio.client.Device;
+import com.twilio.client.DeviceListener;
+import com.twilio.client.PresenceEvent;
+import com.twilio.client.Twilio;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/*
+ * Owns the Device, its Connections and the call audio state for the lifetime of the application.
+ *
+ * The engine is hosted by CallService so registration and calls survive the ClientActivity being
+ * recreated. The activity binds to the service and acts as a view of the engine through Listener.
+ * Listener callbacks are always delivered on the main thread.
+ *
+ * The engine is the Device and Connection listener, but does no work on the SDK threads: each
+ * callback is handed to a CallEventDispatcher, which delivers it on the main thread to the event
+ * log, the call metrics, the call history and the engine's call state in turn.
+ */
+public class CallEngine implements DeviceListener, ConnectionListener {
+
+    private static final String TAG = CallEngine.class.getName();
+
+    private static final int EVENT_LOG_CAPACITY = 512;
+    private static final int EVENT_QUEUE_CAPACITY = 64;
+
+    /*
+     * You must provide a publicly accessible server to generate a Capability Token to connect to the Client service
+     * Refer to website documentation for additional details: https://www.twilio.com/docs/quickstart/php/android-client
+     */
+    private static final String TOKEN_SERVICE_URL = "TOKEN_SERVICE_URL";
+
+    /*
+     * A cached Capability Token is only reused if it remains valid for at least this long, and
+     * is refreshed this long before it expires
+     */
+    private static final long TOKEN_REFRESH_MARGIN_MILLIS = 60 * 1000;
+
+    /*
+     * Wait before refreshing again a token whose refresh failed while the Device kept listening:
+     * short enough for a few attempts within the margin
+     */
+    private static final long TOKEN_REFRESH_RETRY_MILLIS = 15 * 1000;
+
+    /*
+     * Saved profiles kept ready to switch to, and the wait before fetching again a token that failed
+     */
+    private static final int MAX_SAVED_PROFILES = 5;
+    private static final long SAVED_PROFILE_RETRY_MILLIS = 5 * 60 * 1000;
+
+    /*
+     * Target for the time from the incoming call intent to the ringtone playing
+     */
+    private static final long RING_TARGET_NANOS = 100 * 1000000L;
+
+    private static CallEngine instance;
+
+    /*
+     * The view of the engine, typically ClientActivity while it is bound to CallService
+     */
+    public interface Listener {
+        void onDeviceRegistered(ClientProfile clientProfile);
+
+        void onIncomingConnection(Connection connection);
+
+        void onPendingConnectionCancelled(Connection connection);
+
+        /*
+         * The pending call was answered or declined, in the activity or from the notification
+         */
+        void onPendingConnectionHandled(Connection connection);
+
+        void onActiveConnectionDisconnected(Connection connection);
+
+        /*
+         * A call was placed, answered, put on hold, swapped, muted or ended
+         */
+        void onCallsChanged(CallStateMachine.Snapshot snapshot);
+
+        /*
+         * Clients came online or went offline, reported at most once per main thread message
+         */
+        void onPresenceChanged(PresenceRoster presenceRoster);
+
+        void onError(String message);
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final StartupTracer startupTracer = StartupTracer.getInstance();
+
+    /*
+     * Device and Connection events. Debug events are only kept in debug builds, and nothing is
+     * written to logcat on the hot path.
+     */
+    private final EventLog eventLog = new EventLog(BuildConfig.DEBUG ? EventLog.LEVEL_DEBUG : EventLog.LEVEL_INFO, EVENT_LOG_CAPACITY);
+
+    /*
+     * Call setup latency, persisted across sessions
+     */
+    private final CallTimings callTimings = new CallTimings();
+    private final CallTimingsStore callTimingsStore;
+    private Listener listener;
+
+    /*
+     * The details of every call, written behind to the call history
+     */
+    private final CallDetailStore callDetailStore;
+    private final CallDetailRecorder callDetailRecorder;
+
+    /*
+     * Every contact dialed, for the suggestions of the call dialog
+     */
+    private final ContactDirectory contactDirectory;
+
+    /*
+     * Checks and normalizes contacts before dialing, remembering the last ones seen. Shared with the
+     * directory, so dialed numbers are recorded and looked up in one form.
+     */
+    private final ContactNormalizer contactNormalizer;
+
+    /*
+     * A Device is the primary entry point to Twilio Services
+     */
+    private Device clientDevice;
+    private CallDevice callDevice;
+
+    /*
+     * A Connection represents a connection between a Device and Twilio Services.
+     * Connections are either outgoing or incoming, and not created directly.
+     * An outgoing connection is created by Device.connect()
+     * An incoming connection are created internally by a Device and hanged to the registered PendingIntent
+     *
+     * Every live call, its hold state and its audio settings are tracked by the CallStateMachine.
+     */
+    private final CallStateMachine callStateMachine = new CallStateMachine();
+
+    /*
+     * SDK callbacks, handed over from the SDK threads and delivered in order on the main thread
+     */
+    private final CallEventDispatcher callEventDispatcher = new CallEventDispatcher(new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            mainHandler.post(runnable);
+        }
+    }, EVENT_QUEUE_CAPACITY);
+
+    /*
+     * Sends the digits typed on the in-call keypad in order, on its own thread, and times each one
+     * from keypress to send
+     */
+    private final DtmfSender dtmfSender = new DtmfSender(Executors.newSingleThreadScheduledExecutor(),
+            new DtmfSender.Callback() {
+                @Override
+                public void onDigitSent(long keypressToSendNanos) {
+                    callTimings.onDigitSent(callTimingsStore.getNetworkType(), keypressToSendNanos);
+                }
+            });
+
+    /*
+     * Online clients of the account, updated by presence events. The listener is told once for
+     * however many events arrive in a burst.
+     */
+    private final PresenceRoster presenceRoster = new PresenceRoster();
+    private final AtomicBoolean presenceNotificationPending = new AtomicBoolean();
+    private final Runnable presenceNotificationRunnable = new Runnable() {
+        @Override
+        public void run() {
+            presenceNotificationPending.set(false);
+            if (listener != null) {
+                listener.onPresenceChanged(presenceRoster);
+            }
+        }
+    };
+
+    /*
+     * Audio focus, mode and routing, held from the first live call until the last one ends
+     */
+    private final AudioSession audioSession;
+
+    /*
+     * Rings and shows the incoming call notification while a call is waiting to be answered
+     */
+    private final IncomingCallNotifier incomingCallNotifier;
+
+    private ClientProfile clientProfile;
+    private boolean initializing;
+
+    /*
+     * Startup runs the Capability Token fetch and SDK initialization in parallel and joins them before
+     * creating the Device: a token that arrives first is parked here until the SDK is initialized.
+     * Both callbacks are delivered on the main thread.
+     */
+    private boolean sdkInitialized;
+    private String deferredCapabilityToken;
+
+    /*
+     * Cached profile and Capability Token from the last registration, and the timer that refreshes
+     * the token in the background before it expires. The timer counts uptime, which stops while the
+     * device is in deep sleep, so when it is due in wall clock time is kept as well: see
+     * refreshOverdueTokens().
+     */
+    private final CapabilityTokenStore capabilityTokenStore;
+    private long tokenRefreshAtMillis;
+    private final Runnable tokenRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            tokenRefreshAtMillis = 0;
+            retrieveCapabilityToken(clientProfile);
+        }
+    };
+    private final BroadcastReceiver screenOnReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            refreshOverdueTokens();
+        }
+    };
+
+    /*
+     * The profiles switched between, each with a token fetched in the background ahead of the switch
+     * and kept fresh by the timer below. The registered profile is in the pool too, but its token is
+     * refreshed with the timer above. Only used on the main thread.
+     */
+    private final ClientProfilePool clientProfilePool = new ClientProfilePool(MAX_SAVED_PROFILES,
+            TOKEN_REFRESH_MARGIN_MILLIS, SAVED_PROFILE_RETRY_MILLIS);
+    private final Runnable savedProfileRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refreshSavedProfiles();
+        }
+    };
+
+    /*
+     * Re-registers the Device after it stopped listening because of an error or because no token
+     * could be fetched, backing off between attempts. Only used on the main thread.
+     */
+    private final RecoveryScheduler recoveryScheduler = new RecoveryScheduler();
+    private ClientProfile recoveryClientProfile;
+
+    /*
+     * Whether the Device listens for incoming calls, as last reported by the SDK. Failures while it
+     * does are not an outage. Only used on the main thread.
+     */
+    private boolean deviceListening;
+    private final Runnable recoveryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            attemptRecovery();
+        }
+    };
+
+    /*
+     * HTTP client of the token service, keeping its connection open between token refreshes
+     */
+    private final TokenTransport tokenTransport = new HttpTokenTransport();
+
+    /*
+     * Shares a single in-flight token request between all callers asking for the same profile
+     */
+    private final CapabilityTokenCoalescer capabilityTokenCoalescer = new CapabilityTokenCoalescer(capabilityTokenFetcher());
+    private final CapabilityTokenCoalescer.Callback capabilityTokenCallback = capabilityTokenCallback();
+    private final CapabilityTokenCoalescer.Callback savedProfileTokenCallback = savedProfileTokenCallback();
+
+    public static synchronized CallEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new CallEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private CallEngine(Context context) {
+        this.context = context;
+
+        audioSession = new AudioSession(context);
+        incomingCallNotifier = new IncomingCallNotifier(context);
+
+        /*
+         * Create a default profile (name=jenny, allowOutgoing=true, allowIncoming=true), or restore
+         * the profile of the last registration, if any
+         */
+        capabilityTokenStore = new CapabilityTokenStore(context);
+        ClientProfile savedClientProfile = capabilityTokenStore.loadProfile();
+        clientProfile = savedClientProfile != null ? savedClientProfile : new ClientProfile("jenny", true, true);
+        capabilityTokenStore.loadProfiles(clientProfilePool);
+        clientProfilePool.use(clientProfile);
+
+        callTimingsStore = new CallTimingsStore(context, callTimings);
+        callTimingsStore.loadAsync();
+
+        contactDirectory = ContactDirectory.getInstance(context);
+        contactNormalizer = contactDirectory.getContactNormalizer();
+
+        callDetailStore = CallDetailStore.getInstance(context);
+        callDetailRecorder = callDetailStore.getRecorder();
+
+        // In delivery order: each consumer sees an event only after those before it
+        callEventDispatcher.subscribe(eventLogSubscriber());
+        callEventDispatcher.subscribe(callTimingsSubscriber());
+        callEventDispatcher.subscribe(callDetailSubscriber());
+        callEventDispatcher.subscribe(callStateSubscriber());
+
+        // Registered for the life of the process, as the engine is
+        context.registerReceiver(screenOnReceiver, new IntentFilter(Intent.ACTION_SCREEN_ON));
+    }
+
+    /*
+     * Write the event log as text, for example to `adb shell dumpsys activity service CallService`
+     */
+    public void dumpEventLog(Appendable out) throws IOException {
+        eventLog.export(out);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /*
+     * Initialize the Twilio Client SDK and register a Device. The Capability Token is taken from the
+     * cache or requested from your server while the SDK initializes, and the Device is created as soon
+     * as both are ready. Safe to call repeatedly: once a Device exists this does nothing.
+     */
+    public void initialize() {
+        if (clientDevice != null || initializing) {
+            return;
+        }
+        initializing = true;
+
+        /*
+         * Register right away with the cached Capability Token if it is still valid,
+         * otherwise retrieve the Capability Token from your own web server
+         */
+        CapabilityToken cachedToken = capabilityTokenStore.loadValidToken(TOKEN_REFRESH_MARGIN_MILLIS);
+        if (cachedToken != null) {
+            deferredCapabilityToken = cachedToken.getJwt();
+            scheduleTokenRefresh(cachedToken);
+        } else {
+            retrieveCapabilityToken(clientProfile);
+        }
+
+        if (Twilio.isInitialized()) {
+            onSdkInitialized();
+            return;
+        }
+        startupTracer.mark(StartupTracer.MARK_SDK_INIT_STARTED);
+        Twilio.initialize(context, new Twilio.InitListener() {
+
+            /*
+             * Now that the SDK is initialized we can register using a Capability Token.
+             * A Capability Token is a JSON Web Token (JWT) that specifies how an associated Device
+             * can interact with Twilio services.
+             */
+            @Override
+            public void onInitialized() {
+                startupTracer.mark(StartupTracer.MARK_SDK_INITIALIZED);
+                // The SDK logs every signalling message, which release builds do not need
+                Twilio.setLogLevel(BuildConfig.DEBUG ? Log.DEBUG : Log.ERROR);
+                onSdkInitialized();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                initializing = false;
+                deferredCapabilityToken = null;
+                Log.e(TAG, e.toString());
+                notifyError("Failed to initialize the Twilio Client SDK");
+            }
+        });
+    }
+
+    /*
+     * Join point of startup: create the Device with the token that arrived first, if any
+     */
+    private void onSdkInitialized() {
+        initializing = false;
+        sdkInitialized = true;
+        if (deferredCapabilityToken != null) {
+            String capabilityToken = deferredCapabilityToken;
+            deferredCapabilityToken = null;
+            createDevice(capabilityToken);
+        }
+    }
+
+    /*
+     * Register with a new profile, updating the capabilities of the current Device. A saved profile
+     * whose token is still valid is switched to right away, without waiting on the token service.
+     */
+    public void updateClientProfile(ClientProfile newClientProfile) {
+        String capabilityToken = clientProfilePool.getValidToken(newClientProfile, System.currentTimeMillis());
+        if (capabilityToken != null && clientDevice != null) {
+            switchClientProfile(newClientProfile, capabilityToken);
+        } else {
+            retrieveCapabilityToken(newClientProfile);
+        }
+    }
+
+    /*
+     * The saved profiles, most recently used first. The registered profile is the first one.
+     */
+    public List<ClientProfile> getSavedClientProfiles() {
+        List<ClientProfilePool.Entry> entries = clientProfilePool.getEntries();
+        List<ClientProfile> savedClientProfiles = new ArrayList<ClientProfile>(entries.size());
+        for (ClientProfilePool.Entry entry : entries) {
+            savedClientProfiles.add(entry.getClientProfile());
+        }
+        return savedClientProfiles;
+    }
+
+    /*
+     * Register a saved profile with its prefetched token: a local Device.updateCapabilityToken()
+     */
+    private void switchClientProfile(ClientProfile newClientProfile, String capabilityToken) {
+        long startNanos = System.nanoTime();
+        // Neither a token still in flight for the previous profile nor a pending recovery may undo the switch
+        capabilityTokenCoalescer.supersede();
+        mainHandler.removeCallbacks(recoveryRunnable);
+
+        clientProfile = newClientProfile;
+        clientProfilePool.use(newClientProfile);
+        capabilityTokenStore.save(newClientProfile, capabilityToken);
+        capabilityTokenStore.saveProfiles(clientProfilePool);
+        createDevice(capabilityToken);
+        scheduleTokenRefresh(CapabilityToken.parse(capabilityToken));
+        // The profile switched from is refreshed in the background from now on
+        scheduleSavedProfileRefresh();
+        eventLog.record(EventLog.LEVEL_INFO, EventLog.EVENT_PROFILE_SWITCHED, 0, 0,
+                (System.nanoTime() - startNanos) / 1000);
+    }
+
+    /*
+     * Create a Device or update the capabilities of the current Device
+     */
+    private void createDevice(String capabilityToken) {
+        try {
+            if (clientDevice == null) {
+                startupTracer.mark(StartupTracer.MARK_CREATING_DEVICE);
+                clientDevice = Twilio.createDevice(capabilityToken, this);
+                callDevice = new TwilioCallDevice(clientDevice, this);
+                startupTracer.mark(StartupTracer.MARK_DEVICE_CREATED);
+
+                /*
+                 * Providing a PendingIntent to the newly created Device, allowing you to receive incoming calls
+                 *
+                 *  What you do when you receive the intent depends on the component you set in the Intent.
+                 *
+                 *  If you're using an Activity, you'll want to override Activity.onNewIntent()
+                 *  If you're using a Service, you'll want to override Service.onStartCommand().
+                 *  If you're using a BroadcastReceiver, override BroadcastReceiver.onReceive().
+                 *
+                 * Incoming calls go to the already running CallService, which starts ringing right away
+                 * instead of paying for an activity launch first.
+                 */
+                clientDevice.setIncomingIntent(CallService.createActionIntent(context, CallService.ACTION_INCOMING_CALL));
+            } else {
+                callDevice.updateCapabilityToken(capabilityToken);
+            }
+
+            final ClientProfile registeredClientProfile = clientProfile;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (listener != null) {
+                        listener.onDeviceRegistered(registeredClientProfile);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "An error has occured updating or creating a Device: \n" + e.toString());
+            notifyError("Device error");
+        }
+    }
+
+    /*
+     * Request a Capability Token from your public accessible server. Overlapping requests for the same
+     * profile share one fetch, and a response for a profile that has since been replaced is dropped.
+     */
+    private void retrieveCapabilityToken(final ClientProfile newClientProfile) {
+        capabilityTokenCoalescer.request(newClientProfile, capabilityTokenCallback);
+    }
+
+    /*
+     * Fetch a Capability Token for the profile with a single HTTP request
+     */
+    private CapabilityTokenCoalescer.Fetcher capabilityTokenFetcher() {
+        return new CapabilityTokenCoalescer.Fetcher() {
+            @Override
+            public void fetch(final ClientProfile newClientProfile, final CapabilityTokenCoalescer.Callback callback) {
+                // Correlate desired properties of the Device (from ClientProfile) to properties of the Capability Token
+                String tokenUrl = TokenUrlBuilder.build(TOKEN_SERVICE_URL, newClientProfile);
+
+                startupTracer.mark(StartupTracer.MARK_TOKEN_REQUESTED);
+                tokenTransport.get(tokenUrl, new TokenTransport.Callback() {
+
+                    /*
+                     * The transport answers on its own thread; startup joins the token with SDK
+                     * initialization on the main thread
+                     */
+                    @Override
+                    public void onResponse(final String capabilityToken) {
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                startupTracer.mark(StartupTracer.MARK_TOKEN_RECEIVED);
+                                callback.onToken(newClientProfile, capabilityToken);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onFailure(final Exception e) {
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                callback.onError(newClientProfile, e);
+                            }
+                        });
+                    }
+                });
+            }
+        };
+    }
+
+    private CapabilityTokenCoalescer.Callback capabilityTokenCallback() {
+        return new CapabilityTokenCoalescer.Callback() {
+            @Override
+            public void onToken(ClientProfile newClientProfile, String capabilityToken) {
+                eventLog.record(EventLog.LEVEL_INFO, EventLog.EVENT_TOKEN_RECEIVED, 0, 0,
+                        capabilityTokenCoalescer.getDeduplicatedCount());
+
+                // Update the current Client Profile to represent current properties
+                clientProfile = newClientProfile;
+                capabilityTokenStore.save(newClientProfile, capabilityToken);
+                CapabilityToken parsedToken = CapabilityToken.parse(capabilityToken);
+                clientProfilePool.use(newClientProfile);
+                clientProfilePool.onToken(newClientProfile, capabilityToken, parsedToken.getExpiresAtMillis());
+                capabilityTokenStore.saveProfiles(clientProfilePool);
+
+                // Create a Device with the Capability Token, or wait for the SDK to finish initializing
+                if (sdkInitialized) {
+                    createDevice(capabilityToken);
+                } else {
+                    deferredCapabilityToken = capabilityToken;
+                }
+                if (deviceListening) {
+                    // Refreshed in time: whatever failed before never cost the Device its registration
+                    recoveryScheduler.reset();
+                    mainHandler.removeCallbacks(recoveryRunnable);
+                }
+                scheduleTokenRefresh(parsedToken);
+                scheduleSavedProfileRefresh();
+            }
+
+            @Override
+            public void onError(ClientProfile newClientProfile, Exception e) {
+                Log.e(TAG, "Error retrieving token: " + e.toString());
+                eventLog.record(EventLog.LEVEL_ERROR, EventLog.EVENT_TOKEN_FAILED, 0, 0, recoveryScheduler.getAttempts());
+                if (deviceListening) {
+                    // The Device still listens on its current token, so this is no outage: an outage
+                    // starts when the SDK reports it stopped listening
+                    if (newClientProfile.equals(clientProfile)) {
+                        // A background refresh, tried again while the current token lasts
+                        mainHandler.removeCallbacks(tokenRefreshRunnable);
+                        tokenRefreshAtMillis = System.currentTimeMillis() + TOKEN_REFRESH_RETRY_MILLIS;
+                        mainHandler.postDelayed(tokenRefreshRunnable, TOKEN_REFRESH_RETRY_MILLIS);
+                    } else {
+                        notifyError("Error retrieving token");
+                    }
+                    return;
+                }
+                if (!recoveryScheduler.isRecovering()) {
+                    notifyError("Error retrieving token");
+                }
+                scheduleRecovery(newClientProfile, RecoveryScheduler.ERROR_TOKEN_REQUEST_FAILED);
+            }
+        };
+    }
+
+    /*
+     * Refresh the Capability Token ahead of its expiry. The refreshed token is applied to the
+     * existing Device with Device.updateCapabilityToken()
+     */
+    private void scheduleTokenRefresh(CapabilityToken capabilityToken) {
+        mainHandler.removeCallbacks(tokenRefreshRunnable);
+        tokenRefreshAtMillis = 0;
+        if (capabilityToken == null || !capabilityToken.hasExpiry()) {
+            return;
+        }
+        tokenRefreshAtMillis = capabilityToken.getExpiresAtMillis() - TOKEN_REFRESH_MARGIN_MILLIS;
+        mainHandler.postDelayed(tokenRefreshRunnable, Math.max(0, tokenRefreshAtMillis - System.currentTimeMillis()));
+    }
+
+    /*
+     * Refresh right away the tokens that fell due in wall clock time while the device slept and the
+     * timers did not run, instead of after expiry. Called when the screen turns on and when the
+     * activity comes to the foreground. Must be called on the main thread.
+     */
+    public void refreshOverdueTokens() {
+        if (tokenRefreshAtMillis != 0 && tokenRefreshAtMillis <= System.currentTimeMillis()) {
+            mainHandler.removeCallbacks(tokenRefreshRunnable);
+            tokenRefreshRunnable.run();
+        }
+        // Measured against the wall clock again
+        scheduleSavedProfileRefresh();
+    }
+
+    /*
+     * Wake up when the next token of a saved profile other than the registered one is due
+     */
+    private void scheduleSavedProfileRefresh() {
+        mainHandler.removeCallbacks(savedProfileRefreshRunnable);
+        long refreshAtMillis = clientProfilePool.getNextRefreshAtMillis(clientProfile);
+        if (refreshAtMillis != Long.MAX_VALUE) {
+            mainHandler.postDelayed(savedProfileRefreshRunnable, Math.max(0, refreshAtMillis - System.currentTimeMillis()));
+        }
+    }
+
+    /*
+     * Fetch the tokens of the saved profiles that are missing or about to expire. They are prefetched
+     * through the coalescer, so a profile being registered meanwhile shares the fetch instead of
+     * racing it, and the registration is never superseded by them.
+     */
+    private void refreshSavedProfiles() {
+        for (ClientProfile savedClientProfile : clientProfilePool.takeDueRefreshes(System.currentTimeMillis(), clientProfile)) {
+            capabilityTokenCoalescer.prefetch(savedClientProfile, savedProfileTokenCallback);
+        }
+        scheduleSavedProfileRefresh();
+    }
+
+    private CapabilityTokenCoalescer.Callback savedProfileTokenCallback() {
+        return new CapabilityTokenCoalescer.Callback() {
+            @Override
+            public void onToken(ClientProfile savedClientProfile, String capabilityToken) {
+                CapabilityToken parsedToken = CapabilityToken.parse(capabilityToken);
+                if (clientProfilePool.onToken(savedClientProfile, capabilityToken, parsedToken.getExpiresAtMillis())) {
+                    capabilityTokenStore.saveProfiles(clientProfilePool);
+                }
+                scheduleSavedProfileRefresh();
+            }
+
+            @Override
+            public void onError(ClientProfile savedClientProfile, Exception e) {
+                Log.e(TAG, "Error retrieving token of saved profile: " + e.toString());
+                clientProfilePool.onTokenFailed(savedClientProfile, System.currentTimeMillis());
+                scheduleSavedProfileRefresh();
+            }
+        };
+    }
+
+    /*
+     * Retry registering the profile after the backoff delay for the error. Must be called on the main thread.
+     */
+    private void scheduleRecovery(ClientProfile failedClientProfile, int errorCode) {
+        long delayMillis = recoveryScheduler.onFailure(errorCode, System.nanoTime());
+        mainHandler.removeCallbacks(recoveryRunnable);
+        if (delayMillis < 0) {
+            Log.e(TAG, "Not retrying registration after error " + errorCode);
+            notifyError("Device stopped listening for incoming calls");
+            return;
+        }
+        recoveryClientProfile = failedClientProfile;
+        eventLog.record(EventLog.LEVEL_INFO, EventLog.EVENT_RECOVERY_SCHEDULED, 0, errorCode, delayMillis);
+        mainHandler.postDelayed(recoveryRunnable, delayMillis);
+    }
+
+    /*
+     * Re-register with the cached Capability Token if the error allows it and it is still valid,
+     * otherwise with a fresh one
+     */
+    private void attemptRecovery() {
+        int action = recoveryScheduler.takePendingAction();
+        CapabilityToken cachedToken = capabilityTokenStore.loadValidToken(TOKEN_REFRESH_MARGIN_MILLIS);
+        if (action == RecoveryScheduler.ACTION_RETRY && clientDevice != null && cachedToken != null
+                && recoveryClientProfile.equals(clientProfile)) {
+            createDevice(cachedToken.getJwt());
+        } else {
+            retrieveCapabilityToken(recoveryClientProfile);
+        }
+    }
+
+    /*
+     * Determine if the receiving Intent has an extra for the incoming connection. If so, remove it from
+     * the Intent to prevent handling it again, make it the pending connection and start ringing.
+     * `receivedNanos` is when the intent was delivered, in System.nanoTime().
+     */
+    public boolean handleIncomingIntent(Intent intent, long receivedNanos) {
+        if (intent == null) {
+            return false;
+        }
+        Device device = intent.getParcelableExtra(Device.EXTRA_DEVICE);
+        Connection incomingConnection = intent.getParcelableExtra(Device.EXTRA_CONNECTION);
+
+        if (incomingConnection == null && device == null) {
+            return false;
+        }
+        intent.removeExtra(Device.EXTRA_DEVICE);
+        intent.removeExtra(Device.EXTRA_CONNECTION);
+        if (incomingConnection == null) {
+            return false;
+        }
+
+        callTimings.onIncoming(incomingConnection, callTimingsStore.getNetworkType(), receivedNanos);
+        incomingConnection.setConnectionListener(this);
+        Map<String, String> parameters = incomingConnection.getParameters();
+        String from = parameters != null ? parameters.get(Connection.IncomingParameterFromKey) : null;
+        callDetailRecorder.onStarted(incomingConnection, CallRecord.DIRECTION_INCOMING, from, System.currentTimeMillis(),
+                receivedNanos);
+        callStateMachine.onIncoming(new TwilioCallConnection(incomingConnection), from);
+
+        incomingCallNotifier.start(from);
+        long ringNanos = callTimings.onRinging(incomingConnection);
+        if (ringNanos > RING_TARGET_NANOS) {
+            eventLog.record(EventLog.LEVEL_WARN, EventLog.EVENT_SLOW_RING, System.identityHashCode(incomingConnection), 0,
+                    ringNanos / 1000000);
+        }
+
+        if (listener != null) {
+            listener.onIncomingConnection(incomingConnection);
+            listener.onCallsChanged(callStateMachine.getSnapshot());
+        }
+        return true;
+    }
+
+    /*
+     * Check a contact typed in the call dialog: phone numbers are put in E.164, client names checked
+     * for characters a client name cannot hold. Takes microseconds, or a lookup for a contact seen before.
+     */
+    public ContactNormalizer.Result normalizeContact(String contact, boolean isPhoneNumber) {
+        return contactNormalizer.normalize(contact, isPhoneNumber);
+    }
+
+    /*
+     * Create an outgoing connection, putting any active call on hold. Returns false if there is no
+     * Device to connect with or the contact is not valid, see normalizeContact().
+     */
+    public boolean connect(String contact, boolean isPhoneNumber) {
+        ContactNormalizer.Result normalizedContact = contactNormalizer.normalize(contact, isPhoneNumber);
+        if (callDevice == null || !normalizedContact.isValid()) {
+            return false;
+        }
+        contact = normalizedContact.getContact();
+        // Create an outgoing connection
+        long connectNanos = System.nanoTime();
+        CallConnection previouslyActive = callStateMachine.getActiveConnection();
+        CallConnection connection = callStateMachine.connect(callDevice, contact, isPhoneNumber);
+        if (connection == null) {
+            return false;
+        }
+        cancelDigitsUnlessActive(previouslyActive);
+        callTimings.onConnect(unwrap(connection), callTimingsStore.getNetworkType(), connectNanos);
+        callDetailRecorder.onStarted(unwrap(connection), CallRecord.DIRECTION_OUTGOING, contact, System.currentTimeMillis(),
+                connectNanos);
+        contactDirectory.recordAsync(contact, isPhoneNumber);
+        audioSession.start();
+        recordSpeakerPhone(connection);
+        notifyCallsChanged();
+        return true;
+    }
+
+    /*
+     * Disconnect the active connection. Audio is reset once no other call is live.
+     */
+    public void disconnect() {
+        if (callStateMachine.disconnect()) {
+            onCallsUpdated();
+        }
+    }
+
+    /*
+     * Disconnect a call, whether active or on hold
+     */
+    public void disconnect(CallConnection connection) {
+        if (callStateMachine.disconnect(connection)) {
+            onCallsUpdated();
+        }
+    }
+
+    /*
+     * Accept an incoming connection, putting any active call on hold
+     */
+    public void answer() {
+        CallConnection previouslyActive = callStateMachine.getActiveConnection();
+        CallConnection acceptedConnection = callStateMachine.answer();
+        if (acceptedConnection != null) {
+            cancelDigitsUnlessActive(previouslyActive);
+            callTimings.onAccept(unwrap(acceptedConnection));
+            stopRingingIfAnswered();
+            audioSession.start();
+            recordSpeakerPhone(acceptedConnection);
+            if (listener != null) {
+                listener.onPendingConnectionHandled(unwrap(acceptedConnection));
+            }
+            notifyCallsChanged();
+        }
+    }
+
+    /*
+     * Reject a pending incoming connection
+     */
+    public void reject() {
+        CallConnection rejected = callStateMachine.reject();
+        if (rejected != null) {
+            callTimings.onEnded(unwrap(rejected));
+            recordCallEnded(unwrap(rejected), 0, System.nanoTime());
+            stopRingingIfAnswered();
+            if (listener != null) {
+                listener.onPendingConnectionHandled(unwrap(rejected));
+            }
+            notifyCallsChanged();
+        }
+    }
+
+    /*
+     * Put the active call on hold
+     */
+    public void hold() {
+        CallConnection previouslyActive = callStateMachine.getActiveConnection();
+        if (callStateMachine.hold()) {
+            cancelDigitsUnlessActive(previouslyActive);
+            notifyCallsChanged();
+        }
+    }
+
+    /*
+     * Make a held call the active one, putting the active call on hold, and restore its audio route
+     */
+    public void swap(CallConnection connection) {
+        CallConnection previouslyActive = callStateMachine.getActiveConnection();
+        CallStateMachine.Call resumedCall = callStateMachine.swap(connection);
+        if (resumedCall != null) {
+            cancelDigitsUnlessActive(previouslyActive);
+            audioSession.setSpeakerPhone(resumedCall.isSpeakerPhone());
+            recordSpeakerPhone(resumedCall.getConnection());
+            notifyCallsChanged();
+        }
+    }
+
+    public ClientProfile getClientProfile() {
+        return clientProfile;
+    }
+
+    public boolean isRegistered() {
+        return clientDevice != null;
+    }
+
+    /*
+     * True if any call was placed or answered and is not being disconnected, including calls on hold
+     */
+    public boolean hasActiveConnection() {
+        return callStateMachine.getSnapshot().hasLiveCalls();
+    }
+
+    public CallStateMachine.Snapshot getCallSnapshot() {
+        return callStateMachine.getSnapshot();
+    }
+
+    public boolean hasPendingConnection() {
+        return callStateMachine.getPendingConnection() != null;
+    }
+
+    private static Connection unwrap(CallConnection connection) {
+        return connection != null ? ((TwilioCallConnection) connection).getConnection() : null;
+    }
+
+    /*
+     * True if the active call is muted
+     */
+    public boolean isMuted() {
+        CallStateMachine.Call activeCall = callStateMachine.getSnapshot().getActiveCall();
+        return activeCall != null && activeCall.isMuted();
+    }
+
+    public boolean isSpeakerPhone() {
+        return audioSession.isSpeakerPhone();
+    }
+
+    /*
+     * Mute/unmute microphone of the active call
+     */
+    public void setMuted(boolean muted) {
+        if (callStateMachine.setMuted(muted)) {
+            if (muted) {
+                callDetailRecorder.onFlag(unwrap(callStateMachine.getActiveConnection()), CallRecord.FLAG_MUTED);
+            }
+            notifyCallsChanged();
+        }
+    }
+
+    /*
+     * Audio routing to speakerphone or headset, remembered for the active call
+     */
+    public void setSpeakerPhone(boolean speakerPhoneOn) {
+        audioSession.setSpeakerPhone(speakerPhoneOn);
+        if (callStateMachine.setSpeakerPhone(speakerPhoneOn)) {
+            recordSpeakerPhone(callStateMachine.getActiveConnection());
+            notifyCallsChanged();
+        }
+    }
+
+    /*
+     * Note in the call history that the call used the speakerphone, if it is on
+     */
+    private void recordSpeakerPhone(CallConnection connection) {
+        if (connection != null && audioSession.isSpeakerPhone()) {
+            callDetailRecorder.onFlag(unwrap(connection), CallRecord.FLAG_SPEAKER_PHONE);
+        }
+    }
+
+    /*
+     * Queue the record of an ended call for the call history. Writing it is left to the store's thread.
+     */
+    private void recordCallEnded(Object connection, int errorCode, long endedNanos) {
+        if (callDetailRecorder.onEnded(connection, errorCode, endedNanos) != null) {
+            callDetailStore.persistAsync();
+        }
+    }
+
+    /*
+     * Send a keypad key, a DTMF digit or a pause, to the active call. Returns false if there is no
+     * active call or the key is not one of the keypad.
+     */
+    public boolean sendDigit(char key) {
+        CallConnection activeConnection = callStateMachine.getActiveConnection();
+        return activeConnection != null && dtmfSender.send(activeConnection, key);
+    }
+
+    /*
+     * Drop the keys still queued for a call that is no longer the active one, so a held call is not
+     * sent the rest of what was typed for it
+     */
+    private void cancelDigitsUnlessActive(CallConnection previouslyActive) {
+        if (previouslyActive != null && !previouslyActive.equals(callStateMachine.getActiveConnection())) {
+            dtmfSender.cancel(previouslyActive);
+        }
+    }
+
+    /*
+     * Stop ringing once no incoming call is left waiting. Must be called on the main thread.
+     */
+    private void stopRingingIfAnswered() {
+        if (callStateMachine.getPendingConnection() == null) {
+            incomingCallNotifier.stop();
+        }
+    }
+
+    private void notifyCallsChanged() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (listener != null) {
+                    listener.onCallsChanged(callStateMachine.getSnapshot());
+                }
+            }
+        });
+    }
+
+    /*
+     * A call left the registry or is being disconnected. Must be called on the main thread.
+     */
+    private void onCallsUpdated() {
+        stopRingingIfAnswered();
+        if (!callStateMachine.getSnapshot().hasLiveCalls()) {
+            audioSession.stop();
+        }
+        if (listener != null) {
+            listener.onCallsChanged(callStateMachine.getSnapshot());
+        }
+    }
+
+    private void notifyError(final String message) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (listener != null) {
+                    listener.onError(message);
+                }
+            }
+        });
+    }
+
+    /* Device Listener */
+    @Override
+    public void onStartListening(Device device) {
+        callEventDispatcher.postStartListening(device);
+        // Startup ends when the SDK reports listening, not when the main thread gets to it
+        if (startupTracer.completeLaunch(BuildConfig.VERSION_CODE)) {
+            StartupTraceStore.persistAsync(context, startupTracer);
+        }
+    }
+
+    /* Device Listener */
+    @Override
+    public void onStopListening(Device device) {
+        callEventDispatcher.postStopListening(device, 0, null);
+    }
+
+    /* Device Listener */
+    @Override
+    public void onStopListening(Device device, int errorCode, String error) {
+        callEventDispatcher.postStopListening(device, errorCode, error != null ? error : "");
+    }
+
+    /* Device Listener */
+    @Override
+    public boolean receivePresenceEvents(Device device) {
+        return true;
+    }
+
+    /* Device Listener */
+    @Override
+    public void onPresenceChanged(Device device, PresenceEvent presenceEvent) {
+        callEventDispatcher.postPresenceChanged(device, presenceEvent.getName(), presenceEvent.isAvailable());
+    }
+
+    /* Connection Listener */
+    @Override
+    public void onConnecting(Connection connection) {
+        callEventDispatcher.postConnecting(connection);
+    }
+
+    /* Connection Listener */
+    @Override
+    public void onConnected(Connection connection) {
+        callEventDispatcher.postConnected(connection);
+    }
+
+    /* Connection Listener */
+    @Override
+    public void onDisconnected(Connection connection) {
+        callEventDispatcher.postDisconnected(connection, 0, null);
+    }
+
+    /* Connection Listener */
+    @Override
+    public void onDisconnected(Connection connection, int errorCode, String error) {
+        callEventDispatcher.postDisconnected(connection, errorCode, error != null ? error : "");
+    }
+
+    /*
+     * Where SDK callbacks are delivered on the main thread, for any further consumer to subscribe
+     */
+    public CallEventDispatcher getCallEventDispatcher() {
+        return callEventDispatcher;
+    }
+
+    /*
+     * Records every SDK callback in the event log
+     */
+    private CallEventDispatcher.Subscriber eventLogSubscriber() {
+        return new CallEventDispatcher.Subscriber() {
+            @Override
+            public void onEvent(CallEventDispatcher.Event event) {
+                int subject = System.identityHashCode(event.getSubject());
+                switch (event.getType()) {
+                    case CallEventDispatcher.EVENT_START_LISTENING:
+                        eventLog.record(EventLog.LEVEL_INFO, EventLog.EVENT_START_LISTENING, subject, 0, 0);
+                        break;
+                    case CallEventDispatcher.EVENT_STOP_LISTENING:
+                        if (event.hasError()) {
+                            eventLog.record(EventLog.LEVEL_ERROR, EventLog.EVENT_STOP_LISTENING, subject, event.getErrorCode(), 0);
+                            Log.e(TAG, "Device has encountered an error and has stopped listening for incoming connections: "
+                                    + event.getError());
+                        } else {
+                            eventLog.record(EventLog.LEVEL_INFO, EventLog.EVENT_STOP_LISTENING, subject, 0, 0);
+                        }
+                        break;
+                    case CallEventDispatcher.EVENT_PRESENCE_CHANGED:
+                        eventLog.record(EventLog.LEVEL_DEBUG, EventLog.EVENT_PRESENCE_CHANGED, subject, 0, event.isAvailable() ? 1 : 0);
+                        break;
+                    case CallEventDispatcher.EVENT_CONNECTING:
+                        eventLog.record(EventLog.LEVEL_DEBUG, EventLog.EVENT_CONNECTING, subject, 0, 0);
+                        break;
+                    case CallEventDispatcher.EVENT_CONNECTED:
+                        eventLog.record(EventLog.LEVEL_DEBUG, EventLog.EVENT_CONNECTED, subject, 0, 0);
+                        break;
+                    case CallEventDispatcher.EVENT_DISCONNECTED:
+                        if (event.hasError()) {
+                            eventLog.record(EventLog.LEVEL_ERROR, EventLog.EVENT_DISCONNECTED, subject, event.getErrorCode(), 0);
+                            Log.e(TAG, "Connection error: " + event.getError());
+                        } else {
+                            eventLog.record(EventLog.LEVEL_DEBUG, EventLog.EVENT_DISCONNECTED, subject, 0, 0);
+                        }
+                        break;
+                }
+            }
+        };
+    }
+
+    /*
+     * Times call setup, from when the SDK reported each step
+     */
+    private CallEventDispatcher.Subscriber callTimingsSubscriber() {
+        return new CallEventDispatcher.Subscriber() {
+            @Override
+            public void onEvent(CallEventDispatcher.Event event) {
+                switch (event.getType()) {
+                    case CallEventDispatcher.EVENT_CONNECTING:
+                        callTimings.onConnecting(event.getSubject(), event.getPostedNanos());
+                        break;
+                    case CallEventDispatcher.EVENT_CONNECTED:
+                        callTimings.onConnected(event.getSubject(), event.getPostedNanos());
+                        callTimingsStore.persistAsync();
+                        break;
+                    case CallEventDispatcher.EVENT_DISCONNECTED:
+                        callTimings.onEnded(event.getSubject());
+                        break;
+                }
+            }
+        };
+    }
+
+    /*
+     * Completes the call history records
+     */
+    private CallEventDispatcher.Subscriber callDetailSubscriber() {
+        return new CallEventDispatcher.Subscriber() {
+            @Override
+            public void onEvent(CallEventDispatcher.Event event) {
+                switch (event.getType()) {
+                    case CallEventDispatcher.EVENT_CONNECTED:
+                        callDetailRecorder.onConnected(event.getSubject(), event.getPostedNanos());
+                        break;
+                    case CallEventDispatcher.EVENT_DISCONNECTED:
+                        recordCallEnded(event.getSubject(), event.getErrorCode(), event.getPostedNanos());
+                        break;
+                }
+            }
+        };
+    }
+
+    /*
+     * Keeps the calls, presence and registration of the engine up to date and tells the listener
+     */
+    private CallEventDispatcher.Subscriber callStateSubscriber() {
+        return new CallEventDispatcher.Subscriber() {
+            @Override
+            public void onEvent(CallEventDispatcher.Event event) {
+                switch (event.getType()) {
+                    case CallEventDispatcher.EVENT_START_LISTENING:
+                        onListening(event.getPostedNanos());
+                        break;
+                    case CallEventDispatcher.EVENT_STOP_LISTENING:
+                        deviceListening = false;
+                        // No presence events arrive until the Device listens again, so what is known goes stale
+                        if (presenceRoster.clear()) {
+                            notifyPresenceChanged();
+                        }
+                        if (event.hasError()) {
+                            scheduleRecovery(clientProfile, event.getErrorCode());
+                        }
+                        break;
+                    case CallEventDispatcher.EVENT_PRESENCE_CHANGED:
+                        if (presenceRoster.update(event.getClientName(), event.isAvailable())) {
+                            notifyPresenceChanged();
+                        }
+                        break;
+                    case CallEventDispatcher.EVENT_CONNECTED:
+                        if (callStateMachine.onConnected(new TwilioCallConnection((Connection) event.getSubject()))
+                                && listener != null) {
+                            listener.onCallsChanged(callStateMachine.getSnapshot());
+                        }
+                        break;
+                    case CallEventDispatcher.EVENT_DISCONNECTED:
+                        // Remote participant may have disconnected an incoming call before the local participant was able to respond, rejecting any existing pendingConnections
+                        onConnectionDisconnected((Connection) event.getSubject());
+                        break;
+                }
+            }
+        };
+    }
+
+    /*
+     * The Device listens for incoming calls, possibly again after recovering from an error
+     */
+    private void onListening(long listeningNanos) {
+        deviceListening = true;
+        long notListeningNanos = recoveryScheduler.onRecovered(listeningNanos);
+        if (notListeningNanos >= 0) {
+            mainHandler.removeCallbacks(recoveryRunnable);
+            callTimings.onListeningRestored(callTimingsStore.getNetworkType(), notListeningNanos);
+            callTimingsStore.persistAsync();
+        }
+        // Past startup, so fetching the tokens of the other saved profiles does not compete with it
+        scheduleSavedProfileRefresh();
+    }
+
+    /*
+     * Presence changed, told to the listener once for however many events arrive in a burst
+     */
+    private void notifyPresenceChanged() {
+        if (presenceNotificationPending.compareAndSet(false, true)) {
+            mainHandler.post(presenceNotificationRunnable);
+        }
+    }
+
+    public PresenceRoster getPresenceRoster() {
+        return presenceRoster;
+    }
+
+    /*
+     * Remove the connection from the registry and tell the listener which call ended
+     */
+    private void onConnectionDisconnected(Connection connection) {
+        TwilioCallConnection callConnection = connection != null ? new TwilioCallConnection(connection) : null;
+        if (callConnection != null) {
+            dtmfSender.cancel(callConnection);
+        }
+        int disconnected = callStateMachine.onDisconnected(callConnection);
+        if (disconnected == CallStateMachine.DISCONNECTED_OTHER) {
+            return;
+        }
+        if (listener != null) {
+            if (disconnected == CallStateMachine.DISCONNECTED_PENDING) {
+                listener.onPendingConnectionCancelled(connection);
+            } else if (disconnected == CallStateMachine.DISCONNECTED_ACTIVE) {
+                listener.onActiveConnectionDisconnected(connection);
+            }
+        }
+        onCallsUpdated();
+    }
+}
@@ -0,0 +1,81 @@
+package client.twilio.com.quickstart;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.widget.AbsListView;
+import android.widget.ListView;
+
+import java.util.List;
+
+/*
+ * The calls placed and received, newest first. Records are read from the CallDetailStore a page at
+ * a time, the next page being requested as the list nears its end.
+ */
+public class CallHistoryActivity extends AppCompatActivity {
+
+    private static final int PAGE_SIZE = 50;
+
+    /*
+     * Rows left below the last visible one when the next page is requested
+     */
+    private static final int PREFETCH_ROWS = 10;
+
+    private CallDetailStore callDetailStore;
+    private CallHistoryAdapter callHistoryAdapter;
+    private boolean loading;
+    private boolean endReached;
+    private boolean destroyed;
+
+    private final CallDetailStore.PageCallback pageCallback = new CallDetailStore.PageCallback() {
+        @Override
+        public void onPage(List<CallRecord> records) {
+            if (destroyed) {
+                return;
+            }
+            loading = false;
+            endReached = records.size() < PAGE_SIZE;
+            callHistoryAdapter.append(records);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_call_history);
+
+        callDetailStore = CallDetailStore.getInstance(this);
+        callHistoryAdapter = new CallHistoryAdapter(this);
+
+        ListView callHistoryListView = (ListView) findViewById(R.id.call_history_list);
+        callHistoryListView.setEmptyView(findViewById(R.id.call_history_empty));
+        callHistoryListView.setAdapter(callHistoryAdapter);
+        callHistoryListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - PREFETCH_ROWS) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        loadNextPage();
+    }
+
+    @Override
+    protected void onDestroy() {
+        destroyed = true;
+        super.onDestroy();
+    }
+
+    private void loadNextPage() {
+        if (loading || endReached) {
+            return;
+        }
+        loading = true;
+        callDetailStore.loadPageAsync(callHistoryAdapter.getOldestId(), PAGE_SIZE, pageCallback);
+    }
+}
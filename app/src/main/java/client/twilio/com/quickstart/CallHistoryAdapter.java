@@ -0,0 +1,111 @@
+package client.twilio.com.quickstart;
+
+import android.content.Context;
+import android.text.format.DateUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Rows of the call history, newest first, extended a page at a time as the list scrolls
+ */
+public class CallHistoryAdapter extends BaseAdapter {
+
+    private static class ViewHolder {
+        private final TextView addressTextView;
+        private final TextView detailsTextView;
+
+        private ViewHolder(View view) {
+            addressTextView = (TextView) view.findViewById(android.R.id.text1);
+            detailsTextView = (TextView) view.findViewById(android.R.id.text2);
+        }
+    }
+
+    private final Context context;
+    private final LayoutInflater layoutInflater;
+    private final List<CallRecord> records = new ArrayList<CallRecord>();
+    private final StringBuilder details = new StringBuilder();
+
+    public CallHistoryAdapter(Context context) {
+        this.context = context;
+        this.layoutInflater = LayoutInflater.from(context);
+    }
+
+    /*
+     * Add the next, older page of records
+     */
+    public void append(List<CallRecord> page) {
+        if (!page.isEmpty()) {
+            records.addAll(page);
+            notifyDataSetChanged();
+        }
+    }
+
+    /*
+     * Row id of the oldest record shown, where the next page starts, or 0 if none is shown
+     */
+    public long getOldestId() {
+        return records.isEmpty() ? 0 : records.get(records.size() - 1).getId();
+    }
+
+    @Override
+    public int getCount() {
+        return records.size();
+    }
+
+    @Override
+    public CallRecord getItem(int position) {
+        return records.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return records.get(position).getId();
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView;
+        ViewHolder holder;
+        if (view == null) {
+            view = layoutInflater.inflate(android.R.layout.simple_list_item_2, parent, false);
+            holder = new ViewHolder(view);
+            view.setTag(holder);
+        } else {
+            holder = (ViewHolder) view.getTag();
+        }
+        CallRecord record = records.get(position);
+        holder.addressTextView.setText(record.getAddress() != null ? record.getAddress() : "Unknown caller");
+
+        details.setLength(0);
+        details.append(record.isIncoming() ? "Incoming, " : "Outgoing, ")
+                .append(DateUtils.formatDateTime(context, record.getStartedAtMillis(),
+                        DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_SHOW_TIME | DateUtils.FORMAT_ABBREV_MONTH))
+                .append("  ");
+        if (record.wasConnected()) {
+            details.append(DateUtils.formatElapsedTime(record.getDurationMillis() / 1000));
+        } else if (record.getErrorCode() != 0) {
+            details.append("Failed (error ").append(record.getErrorCode()).append(')');
+        } else {
+            details.append(record.isIncoming() ? "Missed" : "Not answered");
+        }
+        if (record.hasFlag(CallRecord.FLAG_MUTED)) {
+            details.append(", muted");
+        }
+        if (record.hasFlag(CallRecord.FLAG_SPEAKER_PHONE)) {
+            details.append(", speakerphone");
+        }
+        holder.detailsTextView.setText(details);
+        return view;
+    }
+}
@@ -0,0 +1,150 @@
+package client.twilio.com.quickstart;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.support.design.widget.FloatingActionButton;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.widget.ArrayAdapter;
+import android.widget.Chronometer;
+import android.widget.ListView;
+
+/*
+ * Renders CallViewState onto the call screen.
+ *
+ * post() only records the latest state; it is applied on the next animation frame, so a burst of
+ * SDK-driven updates costs a single pass. Each pass compares the new state with the last one applied
+ * and only touches the views whose properties changed. Icons are resolved once up front.
+ * Must be used on the main thread.
+ */
+public class CallScreenRenderer {
+
+    private final View rootView;
+    private final View capabilityPropertiesView;
+    private final View callView;
+    private final ListView callListView;
+    private final ArrayAdapter<String> callListAdapter;
+    private final Chronometer chronometer;
+    private final FloatingActionButton hangupActionFab;
+    private final FloatingActionButton muteActionFab;
+    private final FloatingActionButton speakerActionFab;
+
+    private final Drawable micOnDrawable;
+    private final Drawable micOffDrawable;
+    private final Drawable speakerOnDrawable;
+    private final Drawable speakerOffDrawable;
+
+    /*
+     * The state on screen, null until the first pass, and the state waiting for the next frame
+     */
+    private CallViewState renderedState;
+    private CallViewState pendingState;
+    private boolean frameScheduled;
+
+    private final Runnable renderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            frameScheduled = false;
+            render(pendingState);
+        }
+    };
+
+    public CallScreenRenderer(Context context, View rootView, View capabilityPropertiesView, View callView,
+                              ListView callListView, ArrayAdapter<String> callListAdapter, Chronometer chronometer,
+                              FloatingActionButton hangupActionFab, FloatingActionButton muteActionFab,
+                              FloatingActionButton speakerActionFab) {
+        this.rootView = rootView;
+        this.capabilityPropertiesView = capabilityPropertiesView;
+        this.callView = callView;
+        this.callListView = callListView;
+        this.callListAdapter = callListAdapter;
+        this.chronometer = chronometer;
+        this.hangupActionFab = hangupActionFab;
+        this.muteActionFab = muteActionFab;
+        this.speakerActionFab = speakerActionFab;
+
+        micOnDrawable = ContextCompat.getDrawable(context, R.drawable.ic_mic_green_24px);
+        micOffDrawable = ContextCompat.getDrawable(context, R.drawable.ic_mic_off_red_24px);
+        speakerOnDrawable = ContextCompat.getDrawable(context, R.drawable.ic_speaker_on_black_24dp);
+        speakerOffDrawable = ContextCompat.getDrawable(context, R.drawable.ic_speaker_off_black_24dp);
+    }
+
+    /*
+     * The state most recently posted, which is on screen by the next frame
+     */
+    public CallViewState getState() {
+        if (pendingState != null) {
+            return pendingState;
+        }
+        return renderedState != null ? renderedState : CallViewState.IDLE;
+    }
+
+    /*
+     * Render the state on the next animation frame, replacing any state not rendered yet
+     */
+    public void post(CallViewState state) {
+        pendingState = state;
+        if (!frameScheduled) {
+            frameScheduled = true;
+            ViewCompat.postOnAnimation(rootView, renderRunnable);
+        }
+    }
+
+    /*
+     * Render the state right away, for example when the screen is first shown
+     */
+    public void renderNow(CallViewState state) {
+        if (frameScheduled) {
+            rootView.removeCallbacks(renderRunnable);
+            frameScheduled = false;
+        }
+        render(state);
+    }
+
+    private void render(CallViewState state) {
+        pendingState = null;
+        if (state == null || state.equals(renderedState)) {
+            return;
+        }
+        CallViewState previous = renderedState;
+        renderedState = state;
+
+        if (previous == null || previous.isInCall() != state.isInCall()) {
+            renderInCall(state.isInCall());
+        }
+        if (previous == null || previous.isMuted() != state.isMuted()) {
+            muteActionFab.setImageDrawable(state.isMuted() ? micOffDrawable : micOnDrawable);
+        }
+        if (previous == null || previous.isSpeakerPhone() != state.isSpeakerPhone()) {
+            speakerActionFab.setImageDrawable(state.isSpeakerPhone() ? speakerOnDrawable : speakerOffDrawable);
+        }
+        if (previous == null || !previous.getCallLabels().equals(state.getCallLabels())) {
+            callListAdapter.setNotifyOnChange(false);
+            callListAdapter.clear();
+            callListAdapter.addAll(state.getCallLabels());
+            callListAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /*
+     * Switch between the idle screen and the call screen. The chronometer restarts only when a call
+     * screen is entered, not on every update during the call.
+     */
+    private void renderInCall(boolean inCall) {
+        int callVisibility = inCall ? View.VISIBLE : View.INVISIBLE;
+        capabilityPropertiesView.setVisibility(inCall ? View.INVISIBLE : View.VISIBLE);
+        callView.setVisibility(callVisibility);
+        callListView.setVisibility(callVisibility);
+        chronometer.setVisibility(callVisibility);
+        if (inCall) {
+            hangupActionFab.show();
+            chronometer.setBase(SystemClock.elapsedRealtime());
+            chronometer.start();
+        } else {
+            hangupActionFab.hide();
+            chronometer.stop();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package client.twilio.com.quickstart;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.support.v4.app.NotificationCompat;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/*
+ * Foreground service hosting the CallEngine, keeping the Device registered while the
+ * ClientActivity is recreated or in the background.
+ *
+ * Activities bind to the service and retrieve the engine from the LocalBinder. Incoming calls are
+ * delivered to the service by the Device, as are the answer and decline actions of the incoming call
+ * notification, so an incoming call never has to wait for an activity to launch.
+ */
+public class CallService extends Service {
+
+    private static final int NOTIFICATION_ID = 1;
+    private static final String NOTIFICATION_CHANNEL_ID = "call_service";
+
+    public static final String ACTION_INCOMING_CALL = "client.twilio.com.quickstart.action.INCOMING_CALL";
+    public static final String ACTION_ANSWER = "client.twilio.com.quickstart.action.ANSWER";
+    public static final String ACTION_DECLINE = "client.twilio.com.quickstart.action.DECLINE";
+
+    private final IBinder binder = new LocalBinder();
+    private CallEngine callEngine;
+
+    public class LocalBinder extends Binder {
+        public CallEngine getCallEngine() {
+            return callEngine;
+        }
+    }
+
+    public static void start(Context context) {
+        context.startService(new Intent(context, CallService.class));
+    }
+
+    /*
+     * A PendingIntent delivering `action` to the service
+     */
+    public static PendingIntent createActionIntent(Context context, String action) {
+        Intent intent = new Intent(context, CallService.class);
+        intent.setAction(action);
+        return PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        callEngine = CallEngine.getInstance(this);
+        startForeground(NOTIFICATION_ID, createNotification());
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        long receivedNanos = System.nanoTime();
+        String action = intent != null ? intent.getAction() : null;
+        if (ACTION_INCOMING_CALL.equals(action)) {
+            callEngine.handleIncomingIntent(intent, receivedNanos);
+        } else if (ACTION_ANSWER.equals(action)) {
+            callEngine.answer();
+        } else if (ACTION_DECLINE.equals(action)) {
+            callEngine.reject();
+        }
+
+        /*
+         * Also restarts registration when the service is recreated after the process was killed
+         */
+        callEngine.initialize();
+        return START_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        stopForeground(true);
+        super.onDestroy();
+    }
+
+    /*
+     * Export the engine's event log with `adb shell dumpsys activity service CallService`
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        if (callEngine == null) {
+            return;
+        }
+        try {
+            callEngine.dumpEventLog(writer);
+        } catch (IOException e) {
+            writer.println("Unable to export the event log: " + e.toString());
+        }
+    }
+
+    private Notification createNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(NOTIFICATION_CHANNEL_ID,
+                    getString(R.string.app_name), NotificationManager.IMPORTANCE_LOW);
+            ((NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE)).createNotificationChannel(channel);
+        }
+
+        Intent intent = new Intent(this, ClientActivity.class);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+
+        return new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_call_white_24px)
+                .setContentTitle(getString(R.string.app_name))
+                .setContentText("Listening for incoming calls")
+                .setContentIntent(contentIntent)
+                .setOngoing(true)
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package client.twilio.com.quickstart;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Persists CallTimings across sessions. Loading and saving run in order on a single background
+ * thread, so a save can never overtake the initial load.
+ */
+public class CallTimingsStore {
+
+    private static final String TAG = CallTimingsStore.class.getName();
+
+    private static final String FILE_NAME = "call_timings.bin";
+
+    private final Context context;
+    private final CallTimings callTimings;
+    private final File file;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    public CallTimingsStore(Context context, CallTimings callTimings) {
+        this.context = context.getApplicationContext();
+        this.callTimings = callTimings;
+        this.file = new File(this.context.getFilesDir(), FILE_NAME);
+    }
+
+    /*
+     * Merge the histograms of previous sessions into the in-memory CallTimings
+     */
+    public void loadAsync() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!file.exists()) {
+                    return;
+                }
+                try {
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                    try {
+                        callTimings.readFrom(in);
+                    } finally {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Unable to load call timings: " + e.toString());
+                }
+            }
+        });
+    }
+
+    public void persistAsync() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                    try {
+                        callTimings.writeTo(out);
+                    } finally {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Unable to persist call timings: " + e.toString());
+                }
+                if (BuildConfig.DEBUG) {
+                    logSummary();
+                }
+            }
+        });
+    }
+
+    /*
+     * The CallTimings network type of the active network
+     */
+    public int getNetworkType() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager != null ? connectivityManager.getActiveNetworkInfo() : null;
+        if (networkInfo == null) {
+            return CallTimings.NETWORK_OTHER;
+        }
+        switch (networkInfo.getType()) {
+            case ConnectivityManager.TYPE_WIFI:
+                return CallTimings.NETWORK_WIFI;
+            case ConnectivityManager.TYPE_MOBILE:
+                return CallTimings.NETWORK_MOBILE;
+            default:
+                return CallTimings.NETWORK_OTHER;
+        }
+    }
+
+    private void logSummary() {
+        for (int network = 0; network < CallTimings.NETWORK_COUNT; network++) {
+            for (int metric = 0; metric < CallTimings.METRIC_COUNT; metric++) {
+                LatencyHistogram histogram = callTimings.getHistogram(network, metric);
+                if (histogram.getTotalCount() > 0) {
+                    Log.d(TAG, String.format("Call setup %s/%s: n=%d p50=%dms p95=%dms p99=%dms max=%dms",
+                            CallTimings.getNetworkName(network), CallTimings.getMetricName(metric),
+                            histogram.getTotalCount(), histogram.getValueAtPercentile(50),
+                            histogram.getValueAtPercentile(95), histogram.getValueAtPercentile(99),
+                            histogram.getMaxMillis()));
+                }
+            }
+        }
+    }
+}
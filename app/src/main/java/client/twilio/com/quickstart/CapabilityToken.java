@@ -0,0 +1,67 @@
+package client.twilio.com.quickstart;
+
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+/*
+ * A Capability Token is a JSON Web Token (JWT). The only claim the application cares about
+ * is `exp`, the expiry time in seconds since the epoch, which is used to decide whether a
+ * cached token can still be handed to a Device and when it needs to be refreshed.
+ */
+public class CapabilityToken {
+
+    private static final String TAG = CapabilityToken.class.getName();
+
+    private static final long UNKNOWN_EXPIRY = 0L;
+
+    private final String jwt;
+    private final long expiresAtMillis;
+
+    private CapabilityToken(String jwt, long expiresAtMillis) {
+        this.jwt = jwt;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    /*
+     * Parse the `exp` claim out of the JWT payload. A token that cannot be parsed is kept, but
+     * is treated as already expired so that it is never reused from the cache.
+     */
+    public static CapabilityToken parse(String jwt) {
+        if (jwt == null) {
+            return null;
+        }
+        String[] segments = jwt.trim().split("\\.");
+        if (segments.length < 2) {
+            return new CapabilityToken(jwt, UNKNOWN_EXPIRY);
+        }
+        try {
+            byte[] payload = Base64.decode(segments[1], Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
+            JSONObject claims = new JSONObject(new String(payload, "UTF-8"));
+            return new CapabilityToken(jwt, claims.optLong("exp", UNKNOWN_EXPIRY) * 1000L);
+        } catch (Exception e) {
+            Log.w(TAG, "Unable to read the expiry of the Capability Token: " + e.toString());
+            return new CapabilityToken(jwt, UNKNOWN_EXPIRY);
+        }
+    }
+
+    public String getJwt() {
+        return jwt;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public boolean hasExpiry() {
+        return expiresAtMillis != UNKNOWN_EXPIRY;
+    }
+
+    /*
+     * True if the token is still valid for at least `minRemainingMillis` at wall clock time `nowMillis`
+     */
+    public boolean isValidFor(long nowMillis, long minRemainingMillis) {
+        return hasExpiry() && expiresAtMillis - nowMillis > minRemainingMillis;
+    }
+}
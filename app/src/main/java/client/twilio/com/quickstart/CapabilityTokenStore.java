@@ -0,0 +1,113 @@
+package client.twilio.com.quickstart;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.List;
+
+/*
+ * Keeps the last registered ClientProfile and its Capability Token on disk so that a still valid
+ * token can be handed to a Device at startup without waiting on the token service. The saved
+ * profiles of the ClientProfilePool are kept alongside, with their tokens, most recently used first.
+ */
+public class CapabilityTokenStore {
+
+    private static final String PREFERENCES_NAME = "capability_token_store";
+
+    private static final String KEY_CLIENT_NAME = "client_name";
+    private static final String KEY_ALLOW_OUTGOING = "allow_outgoing";
+    private static final String KEY_ALLOW_INCOMING = "allow_incoming";
+    private static final String KEY_TOKEN = "token";
+
+    private static final String KEY_PROFILE_COUNT = "profile_count";
+    private static final String KEY_PROFILE_PREFIX = "profile_";
+
+    private final SharedPreferences preferences;
+
+    public CapabilityTokenStore(Context context) {
+        preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /*
+     * Persist the profile together with the token that was issued for it
+     */
+    public void save(ClientProfile clientProfile, String capabilityToken) {
+        preferences.edit()
+                .putString(KEY_CLIENT_NAME, clientProfile.getName())
+                .putBoolean(KEY_ALLOW_OUTGOING, clientProfile.isAllowOutgoing())
+                .putBoolean(KEY_ALLOW_INCOMING, clientProfile.isAllowIncoming())
+                .putString(KEY_TOKEN, capabilityToken)
+                .apply();
+    }
+
+    /*
+     * The last saved profile, or null if nothing has been registered yet
+     */
+    public ClientProfile loadProfile() {
+        if (!preferences.contains(KEY_TOKEN)) {
+            return null;
+        }
+        return new ClientProfile(preferences.getString(KEY_CLIENT_NAME, null),
+                preferences.getBoolean(KEY_ALLOW_OUTGOING, true),
+                preferences.getBoolean(KEY_ALLOW_INCOMING, true));
+    }
+
+    /*
+     * The last saved token if it remains valid for at least `minRemainingMillis`, otherwise null
+     */
+    public CapabilityToken loadValidToken(long minRemainingMillis) {
+        CapabilityToken token = CapabilityToken.parse(preferences.getString(KEY_TOKEN, null));
+        if (token == null || !token.isValidFor(System.currentTimeMillis(), minRemainingMillis)) {
+            return null;
+        }
+        return token;
+    }
+
+    /*
+     * Persist the profiles of the pool and their tokens, replacing those saved before
+     */
+    public void saveProfiles(ClientProfilePool clientProfilePool) {
+        List<ClientProfilePool.Entry> entries = clientProfilePool.getEntries();
+        SharedPreferences.Editor editor = preferences.edit();
+        int savedCount = preferences.getInt(KEY_PROFILE_COUNT, 0);
+        for (int i = entries.size(); i < savedCount; i++) {
+            String prefix = KEY_PROFILE_PREFIX + i + "_";
+            editor.remove(prefix + KEY_CLIENT_NAME)
+                    .remove(prefix + KEY_ALLOW_OUTGOING)
+                    .remove(prefix + KEY_ALLOW_INCOMING)
+                    .remove(prefix + KEY_TOKEN);
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            ClientProfilePool.Entry entry = entries.get(i);
+            String prefix = KEY_PROFILE_PREFIX + i + "_";
+            editor.putString(prefix + KEY_CLIENT_NAME, entry.getClientProfile().getName())
+                    .putBoolean(prefix + KEY_ALLOW_OUTGOING, entry.getClientProfile().isAllowOutgoing())
+                    .putBoolean(prefix + KEY_ALLOW_INCOMING, entry.getClientProfile().isAllowIncoming())
+                    .putString(prefix + KEY_TOKEN, entry.getCapabilityToken());
+        }
+        editor.putInt(KEY_PROFILE_COUNT, entries.size()).apply();
+    }
+
+    /*
+     * Add the saved profiles and their tokens to the pool, keeping the order they were last used in
+     */
+    public void loadProfiles(ClientProfilePool clientProfilePool) {
+        int savedCount = Math.min(preferences.getInt(KEY_PROFILE_COUNT, 0), clientProfilePool.getCapacity());
+        // Least recently used first, so that each profile used moves ahead of the ones before it
+        for (int i = savedCount - 1; i >= 0; i--) {
+            String prefix = KEY_PROFILE_PREFIX + i + "_";
+            ClientProfile clientProfile = new ClientProfile(preferences.getString(prefix + KEY_CLIENT_NAME, null),
+                    preferences.getBoolean(prefix + KEY_ALLOW_OUTGOING, true),
+                    preferences.getBoolean(prefix + KEY_ALLOW_INCOMING, true));
+            clientProfilePool.use(clientProfile);
+            CapabilityToken token = CapabilityToken.parse(preferences.getString(prefix + KEY_TOKEN, null));
+            if (token != null) {
+                clientProfilePool.onToken(clientProfile, token.getJwt(), token.getExpiresAtMillis());
+            }
+        }
+    }
+
+    public void clear() {
+        preferences.edit().clear().apply();
+    }
+}
@@ -1,100 +1,70 @@
 package client.twilio.com.quickstart;
 
 import android.Manifest;
-import android.app.PendingIntent;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
-import android.media.AudioManager;
-import android.net.Uri;
 import android.os.Bundle;
-import android.os.SystemClock;
+import android.os.IBinder;
 import android.support.annotation.NonNull;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
-import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.CheckBox;
 import android.widget.Chronometer;
 import android.widget.EditText;
+import android.widget.ListView;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.koushikdutta.async.future.FutureCallback;
-import com.koushikdutta.ion.Ion;
 import com.twilio.client.Connection;
-import com.twilio.client.ConnectionListener;
-import com.twilio.client.Device;
-import com.twilio.client.DeviceListener;
-import com.twilio.client.PresenceEvent;
 import com.twilio.client.Twilio;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
-public class ClientActivity extends AppCompatActivity implements DeviceListener, ConnectionListener {
+/*
+ * The call screen. The Device and its Connections are owned by the CallEngine hosted in CallService;
+ * this activity binds to the service and renders the state of the engine.
+ */
+public class ClientActivity extends AppCompatActivity implements CallEngine.Listener {
 
     private static final String TAG = ClientActivity.class.getName();
 
     private static final int MIC_PERMISSION_REQUEST_CODE = 1;
 
     /*
-     * You must provide a publicly accessible server to generate a Capability Token to connect to the Client service
-     * Refer to website documentation for additional details: https://www.twilio.com/docs/quickstart/php/android-client
+     * The CallEngine, available while the activity is bound to CallService
      */
-    private static final String TOKEN_SERVICE_URL = "TOKEN_SERVICE_URL";
-
-    /*
-     * A Device is the primary entry point to Twilio Services
-     */
-    private Device clientDevice;
-
-    /*
-     * A Connection represents a connection between a Device and Twilio Services.
-     * Connections are either outgoing or incoming, and not created directly.
-     * An outgoing connection is created by Device.connect()
-     * An incoming connection are created internally by a Device and hanged to the registered PendingIntent
-     */
-    private Connection activeConnection;
-    private Connection pendingConnection;
-
-    private AudioManager audioManager;
-    private int savedAudioMode = AudioManager.MODE_INVALID;
-
-    /*
-     * A representation of the current properties of a client token
-     */
-    protected class ClientProfile {
-        private String name;
-        private boolean allowOutgoing = true;
-        private boolean allowIncoming = true;
-
-
-        public ClientProfile(String name, boolean allowOutgoing, boolean allowIncoming) {
-            this.name = name;
-            this.allowOutgoing = allowOutgoing;
-            this.allowIncoming = allowIncoming;
-        }
-
-        public String getName() {
-            return name;
+    private CallEngine callEngine;
+    private boolean bound;
+
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            callEngine = ((CallService.LocalBinder) service).getCallEngine();
+            callEngine.setListener(ClientActivity.this);
+            dialogCache.onPresenceChanged(callEngine.getPresenceRoster());
+            // The token may have expired while the phone slept
+            callEngine.refreshOverdueTokens();
+            restoreUI();
         }
 
-        public boolean isAllowOutgoing() {
-            return allowOutgoing;
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            callEngine = null;
         }
-
-        public boolean isAllowIncoming() {
-            return allowIncoming;
-        }
-    }
+    };
 
     /*
      * Android application UI elements
@@ -103,17 +73,27 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
     private FloatingActionButton muteActionFab;
     private FloatingActionButton speakerActionFab;
     private FloatingActionButton hangupActionFab;
-    private ClientProfile clientProfile;
+    private FloatingActionButton keypadActionFab;
     private AlertDialog alertDialog;
+    private DialogCache dialogCache;
     private Chronometer chronometer;
     private View callView;
     private View capabilityPropertiesView;
 
-    private boolean muteMicrophone;
-    private boolean speakerPhone;
+    /*
+     * The calls placed or answered, active or on hold. Tapping a held call swaps to it, tapping
+     * the active call puts it on hold, and a long press hangs up that call.
+     */
+    private ListView callListView;
+
+    /*
+     * Applies CallViewState to the views above, once per frame and only where it changed
+     */
+    private CallScreenRenderer callScreenRenderer;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTracer.getInstance().mark(StartupTracer.MARK_LAUNCH);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_client);
 
@@ -124,17 +104,24 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
         hangupActionFab = (FloatingActionButton) findViewById(R.id.hangup_action_fab);
         muteActionFab = (FloatingActionButton) findViewById(R.id.mute_action_fab);
         speakerActionFab = (FloatingActionButton) findViewById(R.id.speaker_action_fab);
+        keypadActionFab = (FloatingActionButton) findViewById(R.id.keypad_action_fab);
         chronometer = (Chronometer) findViewById(R.id.chronometer);
 
-        /*
-         * Create a default profile (name=jenny, allowOutgoing=true, allowIncoming=true)
-         */
-        clientProfile = new ClientProfile("jenny", true, true);
+        callListView = (ListView) findViewById(R.id.call_list);
+        ArrayAdapter<String> callListAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_list_item_1);
+        callListView.setAdapter(callListAdapter);
+        callListView.setOnItemClickListener(callListItemClickListener());
+        callListView.setOnItemLongClickListener(callListItemLongClickListener());
+
+        callScreenRenderer = new CallScreenRenderer(this, findViewById(android.R.id.content), capabilityPropertiesView,
+                callView, callListView, callListAdapter, chronometer, hangupActionFab, muteActionFab, speakerActionFab);
 
         /*
-         * Needed for setting/abandoning audio focus during call
+         * Start the CallService, which initializes the Twilio Client SDK and fetches the Capability
+         * Token in parallel. Registration does not need the microphone, so it does not wait for the
+         * permission prompt below.
          */
-        audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
+        CallService.start(this);
 
         /*
          * Check microphone permissions. Needed in Android M.
@@ -142,121 +129,52 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
         if (!checkPermissionForMicrophone()) {
             requestPermissionForMicrophone();
         } else {
-            /*
-             * Initialize the Twilio Client SDK
-             */
-            initializeTwilioClientSDK();
+            StartupTracer.getInstance().mark(StartupTracer.MARK_PERMISSION_GRANTED);
         }
 
         /*
          * Set the initial state of the UI
          */
         setCallAction();
-    }
 
-    /*
-     * Initialize the Twilio Client SDK
-     */
-    private void initializeTwilioClientSDK() {
-
-        if (!Twilio.isInitialized()) {
-            Twilio.initialize(getApplicationContext(), new Twilio.InitListener() {
-
-                /*
-                 * Now that the SDK is initialized we can register using a Capability Token.
-                 * A Capability Token is a JSON Web Token (JWT) that specifies how an associated Device
-                 * can interact with Twilio services.
-                 */
-                @Override
-                public void onInitialized() {
-                    Twilio.setLogLevel(Log.DEBUG);
-                    /*
-                     * Retrieve the Capability Token from your own web server
-                     */
-                    retrieveCapabilityToken(clientProfile);
-                }
-
-                @Override
-                public void onError(Exception e) {
-                    Log.e(TAG, e.toString());
-                    Toast.makeText(ClientActivity.this, "Failed to initialize the Twilio Client SDK", Toast.LENGTH_LONG).show();
-                }
-            });
-        }
+        /*
+         * Build the dialogs once the first frame is done, so showing them later inflates nothing
+         */
+        dialogCache = new DialogCache(this, ContactDirectory.getInstance(this));
+        dialogCache.prepareWhenIdle();
     }
 
-    /*
-     * Create a Device or update the capabilities of the current Device
-     */
-    private void createDevice(String capabilityToken) {
-        try {
-            if (clientDevice == null) {
-                clientDevice = Twilio.createDevice(capabilityToken, this);
-
-                /*
-                 * Providing a PendingIntent to the newly created Device, allowing you to receive incoming calls
-                 *
-                 *  What you do when you receive the intent depends on the component you set in the Intent.
-                 *
-                 *  If you're using an Activity, you'll want to override Activity.onNewIntent()
-                 *  If you're using a Service, you'll want to override Service.onStartCommand().
-                 *  If you're using a BroadcastReceiver, override BroadcastReceiver.onReceive().
-                 */
-
-                Intent intent = new Intent(getApplicationContext(), ClientActivity.class);
-                PendingIntent pendingIntent = PendingIntent.getActivity(getApplicationContext(), 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-                clientDevice.setIncomingIntent(pendingIntent);
-            } else {
-                clientDevice.updateCapabilityToken(capabilityToken);
-            }
-
-            TextView clientNameTextView = (TextView) capabilityPropertiesView.findViewById(R.id.client_name_registered_text);
-            clientNameTextView.setText("Client Name: " + ClientActivity.this.clientProfile.getName());
-
-            TextView outgoingCapabilityTextView = (TextView) capabilityPropertiesView.findViewById(R.id.outgoing_capability_registered_text);
-            outgoingCapabilityTextView.setText("Outgoing Capability: " +Boolean.toString(ClientActivity.this.clientProfile.isAllowOutgoing()));
-
-            TextView incomingCapabilityTextView = (TextView) capabilityPropertiesView.findViewById(R.id.incoming_capability_registered_text);
-            incomingCapabilityTextView.setText("Incoming Capability: " +Boolean.toString(ClientActivity.this.clientProfile.isAllowIncoming()));
-
-            TextView libraryVersionTextView = (TextView) capabilityPropertiesView.findViewById(R.id.library_version_text);
-            libraryVersionTextView.setText("Library Version: " + Twilio.getVersion());
-
-        } catch (Exception e) {
-            Log.e(TAG, "An error has occured updating or creating a Device: \n" + e.toString());
-            Toast.makeText(ClientActivity.this, "Device error", Toast.LENGTH_SHORT).show();
-        }
+    @Override
+    protected void onDestroy() {
+        dialogCache.release();
+        super.onDestroy();
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
-
-        Intent intent = getIntent();
-
-        if (intent != null) {
-            /*
-             * Determine if the receiving Intent has an extra for the incoming connection. If so,
-             * remove it from the Intent to prevent handling it again next time the Activity is resumed
-             */
-            Device device = intent.getParcelableExtra(Device.EXTRA_DEVICE);
-            Connection incomingConnection = intent.getParcelableExtra(Device.EXTRA_CONNECTION);
-
-            if (incomingConnection == null && device == null) {
-                return;
-            }
-            intent.removeExtra(Device.EXTRA_DEVICE);
-            intent.removeExtra(Device.EXTRA_CONNECTION);
-
-            pendingConnection = incomingConnection;
-            pendingConnection.setConnectionListener(this);
+    protected void onStart() {
+        super.onStart();
+        bound = bindService(new Intent(this, CallService.class), serviceConnection, Context.BIND_AUTO_CREATE);
+    }
 
-            showIncomingDialog();
+    @Override
+    protected void onStop() {
+        if (alertDialog != null && alertDialog.isShowing()) {
+            alertDialog.dismiss();
+        }
+        if (callEngine != null) {
+            callEngine.setListener(null);
+            callEngine = null;
         }
+        if (bound) {
+            unbindService(serviceConnection);
+            bound = false;
+        }
+        super.onStop();
     }
 
     /*
-     * Receive intent for incoming call from Twilio Client Service
+     * Receive the full-screen intent of the incoming call notification. The call itself was already
+     * handed to CallService; the pending call is offered once the activity is bound.
      * Android will only call Activity.onNewIntent() if `android:launchMode` is set to `singleTop`.
      */
     @Override
@@ -266,83 +184,48 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
     }
 
     /*
-     * Request a Capability Token from your public accessible server
+     * Bring the UI in line with the engine after the activity was (re)created
      */
-    private void retrieveCapabilityToken(final ClientProfile newClientProfile) {
-
-        // Correlate desired properties of the Device (from ClientProfile) to properties of the Capability Token
-        Uri.Builder b = Uri.parse(TOKEN_SERVICE_URL).buildUpon();
-        if (newClientProfile.isAllowOutgoing()) {
-            b.appendQueryParameter("allowOutgoing", newClientProfile.allowOutgoing ? "true" : "false");
+    private void restoreUI() {
+        if (callEngine.isRegistered()) {
+            onDeviceRegistered(callEngine.getClientProfile());
         }
-        if (newClientProfile.isAllowIncoming() && newClientProfile.getName() != null) {
-            b.appendQueryParameter("client", newClientProfile.getName());
+        callScreenRenderer.renderNow(CallViewState.from(callEngine.getCallSnapshot(), callEngine.isSpeakerPhone()));
+        if (callEngine.hasPendingConnection()) {
+            showIncomingDialog();
         }
-
-        Ion.with(getApplicationContext())
-                .load(b.toString())
-                .asString()
-                .setCallback(new FutureCallback<String>() {
-                    @Override
-                    public void onCompleted(Exception e, String capabilityToken) {
-                        if (e == null) {
-                            Log.d(TAG, capabilityToken);
-
-                            // Update the current Client Profile to represent current properties
-                            ClientActivity.this.clientProfile = newClientProfile;
-
-                            // Create a Device with the Capability Token
-                            createDevice(capabilityToken);
-                        } else {
-                            Log.e(TAG, "Error retrieving token: " + e.toString());
-                            Toast.makeText(ClientActivity.this, "Error retrieving token", Toast.LENGTH_SHORT).show();
-                        }
-                    }
-                });
     }
 
     /*
-     * Create an outgoing connection
+     * Create an outgoing connection. Any active call is put on hold.
      */
     private void connect(String contact, boolean isPhoneNumber) {
-        // Determine if you're calling another client or a phone number
-        if (!isPhoneNumber) {
-            contact = "client:" + contact.trim();
+        if (callEngine != null) {
+            // Rejected here rather than by the service after a call setup
+            ContactNormalizer.Result normalizedContact = callEngine.normalizeContact(contact, isPhoneNumber);
+            if (!normalizedContact.isValid()) {
+                Toast.makeText(ClientActivity.this, describeContactError(normalizedContact), Toast.LENGTH_SHORT).show();
+                return;
+            }
         }
-
-        Map<String, String> params = new HashMap<String, String>();
-        params.put("To", contact);
-
-        if (clientDevice != null) {
-            // Create an outgoing connection
-            activeConnection = clientDevice.connect(params, this);
-            setCallUI();
+        if (callEngine != null && callEngine.connect(contact, isPhoneNumber)) {
+            renderCalls();
         } else {
             Toast.makeText(ClientActivity.this, "No existing device", Toast.LENGTH_SHORT).show();
         }
     }
 
-    /*
-     * Disconnect an active connection
-     */
-    private void disconnect() {
-        if (activeConnection != null) {
-            activeConnection.disconnect();
-            activeConnection = null;
-        }
-    }
-
-    /*
-     * Accept an incoming connection
-     */
-    private void answer() {
-        // Only one connection can exist at time, disconnecting any active connection.
-        if( activeConnection != null ){
-            activeConnection.disconnect();
+    private int describeContactError(ContactNormalizer.Result normalizedContact) {
+        switch (normalizedContact.getError()) {
+            case ContactNormalizer.ERROR_EMPTY:
+                return normalizedContact.isPhoneNumber() ? R.string.phone_number_empty : R.string.client_name_empty;
+            case ContactNormalizer.ERROR_INVALID_CHARACTER:
+                return normalizedContact.isPhoneNumber() ? R.string.phone_number_invalid_character
+                        : R.string.client_name_invalid_character;
+            default:
+                return normalizedContact.isPhoneNumber() ? R.string.phone_number_invalid_length
+                        : R.string.client_name_invalid_length;
         }
-        pendingConnection.accept();
-        activeConnection = pendingConnection;
-        pendingConnection = null;
     }
 
     /*
@@ -353,57 +236,80 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
         hangupActionFab.setOnClickListener(hangupActionFabClickListener());
         muteActionFab.setOnClickListener(muteMicrophoneFabClickListener());
         speakerActionFab.setOnClickListener(toggleSpeakerPhoneFabClickListener());
+        keypadActionFab.setOnClickListener(keypadActionFabClickListener());
     }
 
     /*
-     * Reset UI elements
+     * Render the calls of the engine on the next frame
      */
-    private void resetUI() {
-        callActionFab.show();
-        capabilityPropertiesView.setVisibility(View.VISIBLE);
-
-        hangupActionFab.hide();
-        callView.setVisibility(View.INVISIBLE);
-        chronometer.setVisibility(View.INVISIBLE);
-
-        muteMicrophone = false;
-        speakerPhone = false;
-
-        muteActionFab.setImageDrawable(ContextCompat.getDrawable(ClientActivity.this, R.drawable.ic_mic_green_24px));
-        speakerActionFab.setImageDrawable(ContextCompat.getDrawable(ClientActivity.this, R.drawable.ic_speaker_off_black_24dp));
-
-        setAudioFocus(false);
-        audioManager.setSpeakerphoneOn(speakerPhone);
-
-        chronometer.stop();
+    private void renderCalls() {
+        if (callEngine != null) {
+            callScreenRenderer.post(CallViewState.from(callEngine.getCallSnapshot(), callEngine.isSpeakerPhone()));
+        } else {
+            callScreenRenderer.post(CallViewState.IDLE);
+        }
     }
 
     /*
-     * The UI state when there is an active connection
+     * Creates an update token UI dialog
      */
-    private void setCallUI() {
-        callActionFab.hide();
-        capabilityPropertiesView.setVisibility(View.INVISIBLE);
-        hangupActionFab.show();
-        callView.setVisibility(View.VISIBLE);
-        chronometer.setVisibility(View.VISIBLE);
-        chronometer.setBase(SystemClock.elapsedRealtime());
-        chronometer.start();
+    private void updateClientProfileDialog() {
+        if (callEngine == null) {
+            return;
+        }
+        alertDialog = dialogCache.getRegisterDialog(updateTokenClickListener(), cancelCallClickListener(), callEngine.getClientProfile());
+        alertDialog.show();
     }
 
     /*
-     * Creates an update token UI dialog
+     * Lists the saved client profiles to switch to. Their tokens are fetched ahead of time, so the
+     * switch does not wait on the token service.
      */
-    private void updateClientProfileDialog() {
-        alertDialog = Dialog.createRegisterDialog(updateTokenClickListener(), cancelCallClickListener(), clientProfile, this);
+    private void showSwitchClientDialog() {
+        if (callEngine == null) {
+            return;
+        }
+        final List<ClientProfile> savedClientProfiles = callEngine.getSavedClientProfiles();
+        CharSequence[] clientNames = new CharSequence[savedClientProfiles.size()];
+        int checkedItem = -1;
+        for (int i = 0; i < clientNames.length; i++) {
+            ClientProfile savedClientProfile = savedClientProfiles.get(i);
+            clientNames[i] = describeClientProfile(savedClientProfile);
+            if (savedClientProfile.equals(callEngine.getClientProfile())) {
+                checkedItem = i;
+            }
+        }
+        alertDialog = Dialog.createSwitchClientDialog(clientNames, checkedItem, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                alertDialog.dismiss();
+                if (callEngine != null) {
+                    callEngine.updateClientProfile(savedClientProfiles.get(which));
+                }
+            }
+        }, this);
         alertDialog.show();
     }
 
+    /*
+     * The client name, and its capabilities unless it has both
+     */
+    private static String describeClientProfile(ClientProfile clientProfile) {
+        if (!clientProfile.isAllowIncoming() && !clientProfile.isAllowOutgoing()) {
+            return clientProfile.getName() + " (no calls)";
+        } else if (!clientProfile.isAllowIncoming()) {
+            return clientProfile.getName() + " (outgoing only)";
+        } else if (!clientProfile.isAllowOutgoing()) {
+            return clientProfile.getName() + " (incoming only)";
+        }
+        return clientProfile.getName();
+    }
+
     /*
      * Create an outgoing call UI dialog
      */
     private void showCallDialog() {
-        alertDialog = Dialog.createCallDialog(callClickListener(), cancelCallClickListener(), this);
+        alertDialog = dialogCache.getCallDialog(callClickListener(), cancelCallClickListener());
         alertDialog.show();
     }
 
@@ -411,7 +317,15 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
      * Creates an incoming call UI dialog
      */
     private void showIncomingDialog() {
-        alertDialog = Dialog.createIncomingCallDialog(answerCallClickListener(), cancelCallClickListener(), this);
+        alertDialog = dialogCache.getIncomingCallDialog(answerCallClickListener(), cancelCallClickListener());
+        alertDialog.show();
+    }
+
+    /*
+     * Shows the DTMF keypad for the active call
+     */
+    private void showKeypadDialog() {
+        alertDialog = dialogCache.getKeypadDialog(keypadListener());
         alertDialog.show();
     }
 
@@ -423,8 +337,10 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
                 /*
                  * Accept an incoming call
                  */
-                answer();
-                setCallUI();
+                if (callEngine != null) {
+                    callEngine.answer();
+                    renderCalls();
+                }
                 alertDialog.dismiss();
             }
         };
@@ -465,7 +381,9 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
 
                 ClientProfile newClientProfile = new ClientProfile(clientName, allowOutgoing, allowIncoming);
                 alertDialog.dismiss();
-                retrieveCapabilityToken(newClientProfile);
+                if (callEngine != null) {
+                    callEngine.updateClientProfile(newClientProfile);
+                }
             }
         };
     }
@@ -475,8 +393,8 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
 
             @Override
             public void onClick(DialogInterface dialogInterface, int i) {
-                if (pendingConnection != null) {
-                    pendingConnection.reject();
+                if (callEngine != null) {
+                    callEngine.reject();
                 }
                 alertDialog.dismiss();
             }
@@ -490,14 +408,9 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
                 /*
                  *  Mute/unmute microphone
                  */
-                muteMicrophone = !muteMicrophone;
-                if (activeConnection != null) {
-                    activeConnection.setMuted(muteMicrophone);
-                }
-                if (muteMicrophone) {
-                    muteActionFab.setImageDrawable(ContextCompat.getDrawable(ClientActivity.this, R.drawable.ic_mic_off_red_24px));
-                } else {
-                    muteActionFab.setImageDrawable(ContextCompat.getDrawable(ClientActivity.this, R.drawable.ic_mic_green_24px));
+                if (callEngine != null) {
+                    callEngine.setMuted(!callEngine.isMuted());
+                    renderCalls();
                 }
             }
         };
@@ -510,15 +423,29 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
                 /*
                  * Audio routing to speakerphone or headset
                  */
-                speakerPhone = !speakerPhone;
+                if (callEngine != null) {
+                    callEngine.setSpeakerPhone(!callEngine.isSpeakerPhone());
+                    renderCalls();
+                }
+            }
+        };
+    }
 
-                setAudioFocus(true);
-                audioManager.setSpeakerphoneOn(speakerPhone);
+    private View.OnClickListener keypadActionFabClickListener() {
+        return new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showKeypadDialog();
+            }
+        };
+    }
 
-                if (speakerPhone) {
-                    speakerActionFab.setImageDrawable(ContextCompat.getDrawable(ClientActivity.this, R.drawable.ic_speaker_on_black_24dp));
-                } else {
-                    speakerActionFab.setImageDrawable(ContextCompat.getDrawable(ClientActivity.this, R.drawable.ic_speaker_off_black_24dp));
+    private DtmfKeypad.Listener keypadListener() {
+        return new DtmfKeypad.Listener() {
+            @Override
+            public void onKey(char key) {
+                if (callEngine != null) {
+                    callEngine.sendDigit(key);
                 }
             }
         };
@@ -528,8 +455,42 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
         return new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                resetUI();
-                disconnect();
+                if (callEngine != null) {
+                    callEngine.disconnect();
+                }
+                renderCalls();
+            }
+        };
+    }
+
+    private AdapterView.OnItemClickListener callListItemClickListener() {
+        return new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                List<CallConnection> listedConnections = callScreenRenderer.getState().getCallConnections();
+                if (callEngine == null || position >= listedConnections.size()) {
+                    return;
+                }
+                CallConnection connection = listedConnections.get(position);
+                if (connection.equals(callEngine.getCallSnapshot().getActiveConnection())) {
+                    callEngine.hold();
+                } else {
+                    callEngine.swap(connection);
+                }
+            }
+        };
+    }
+
+    private AdapterView.OnItemLongClickListener callListItemLongClickListener() {
+        return new AdapterView.OnItemLongClickListener() {
+            @Override
+            public boolean onItemLongClick(AdapterView<?> parent, View view, int position, long id) {
+                List<CallConnection> listedConnections = callScreenRenderer.getState().getCallConnections();
+                if (callEngine == null || position >= listedConnections.size()) {
+                    return false;
+                }
+                callEngine.disconnect(listedConnections.get(position));
+                return true;
             }
         };
     }
@@ -539,90 +500,73 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
 
             @Override
             public void onClick(View v) {
+                if (!checkPermissionForMicrophone()) {
+                    requestPermissionForMicrophone();
+                }
                 showCallDialog();
             }
         };
     }
 
-    /* Device Listener */
+    /* CallEngine Listener */
     @Override
-    public void onStartListening(Device device) {
-        Log.d(TAG, "Device has started listening for incoming connections");
-    }
+    public void onDeviceRegistered(ClientProfile clientProfile) {
+        TextView clientNameTextView = (TextView) capabilityPropertiesView.findViewById(R.id.client_name_registered_text);
+        clientNameTextView.setText("Client Name: " + clientProfile.getName());
 
-    /* Device Listener */
-    @Override
-    public void onStopListening(Device device) {
-        Log.d(TAG, "Device has stopped listening for incoming connections");
+        TextView outgoingCapabilityTextView = (TextView) capabilityPropertiesView.findViewById(R.id.outgoing_capability_registered_text);
+        outgoingCapabilityTextView.setText("Outgoing Capability: " +Boolean.toString(clientProfile.isAllowOutgoing()));
+
+        TextView incomingCapabilityTextView = (TextView) capabilityPropertiesView.findViewById(R.id.incoming_capability_registered_text);
+        incomingCapabilityTextView.setText("Incoming Capability: " +Boolean.toString(clientProfile.isAllowIncoming()));
+
+        TextView libraryVersionTextView = (TextView) capabilityPropertiesView.findViewById(R.id.library_version_text);
+        libraryVersionTextView.setText("Library Version: " + Twilio.getVersion());
     }
 
-    /* Device Listener */
+    /* CallEngine Listener */
     @Override
-    public void onStopListening(Device device, int errorCode, String error) {
-        Log.e(TAG, String.format("Device has encountered an error and has stopped" +
-                " listening for incoming connections: %s", error));
+    public void onIncomingConnection(Connection connection) {
+        showIncomingDialog();
     }
 
-    /* Device Listener */
+    /* CallEngine Listener */
     @Override
-    public boolean receivePresenceEvents(Device device) {
-        return false;
+    public void onPendingConnectionCancelled(Connection connection) {
+        if (alertDialog != null) {
+            alertDialog.dismiss();
+        }
     }
 
-    /* Device Listener */
+    /* CallEngine Listener */
     @Override
-    public void onPresenceChanged(Device device, PresenceEvent presenceEvent) {
+    public void onPendingConnectionHandled(Connection connection) {
+        // Still up if the call was answered or declined from the notification
+        dialogCache.dismissIncomingCallDialog();
     }
 
-    /* Connection Listener */
+    /* CallEngine Listener */
     @Override
-    public void onConnecting(Connection connection) {
-        Log.d(TAG, "Attempting to connect");
+    public void onActiveConnectionDisconnected(Connection connection) {
+        Toast.makeText(ClientActivity.this, "Call ended", Toast.LENGTH_SHORT).show();
     }
 
-    /* Connection Listener */
+    /* CallEngine Listener */
     @Override
-    public void onConnected(Connection connection) {
-        Log.d(TAG, "Connected");
+    public void onCallsChanged(CallStateMachine.Snapshot snapshot) {
+        callScreenRenderer.post(CallViewState.from(snapshot, callEngine != null && callEngine.isSpeakerPhone()));
     }
 
-    /* Connection Listener */
+    /* CallEngine Listener */
     @Override
-    public void onDisconnected(Connection connection) {
-        // Remote participant may have disconnected an incoming call before the local participant was able to respond, rejecting any existing pendingConnections
-        if( connection == pendingConnection ) {
-            pendingConnection = null;
-            alertDialog.dismiss();
-        } else if (activeConnection != null && connection != null) {
-            if (activeConnection == connection) {
-                activeConnection = null;
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        resetUI();
-                    }
-                });
-            }
-            Log.d(TAG, "Disconnect");
-        }
+    public void onPresenceChanged(PresenceRoster presenceRoster) {
+        dialogCache.onPresenceChanged(presenceRoster);
     }
 
-    /* Connection Listener */
+    /* CallEngine Listener */
     @Override
-    public void onDisconnected(Connection connection, int errorCode, String error) {
-        // A connection other than active connection could have errored out.
-        if (activeConnection != null && connection != null) {
-            if (activeConnection == connection) {
-                activeConnection = null;
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        resetUI();
-                    }
-                });
-            }
-            Log.e(TAG, String.format("Connection error: %s", error));
-        }
+    public void onError(String message) {
+        Toast.makeText(ClientActivity.this, message, Toast.LENGTH_SHORT).show();
     }
 
     @Override
@@ -637,6 +581,12 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
             case R.id.action_update_capability:
                 updateClientProfileDialog();
                 return true;
+            case R.id.action_switch_client:
+                showSwitchClientDialog();
+                return true;
+            case R.id.action_call_history:
+                startActivity(new Intent(this, CallHistoryActivity.class));
+                return true;
             default:
                 return true;
         }
@@ -669,12 +619,9 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
          * Check if microphone permissions is granted
          */
         if (requestCode == MIC_PERMISSION_REQUEST_CODE && permissions.length > 0) {
-            boolean granted = true;
+            boolean granted = grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED;
             if (granted) {
-                /*
-                * Initialize the Twilio Client SDK
-                */
-                initializeTwilioClientSDK();
+                StartupTracer.getInstance().mark(StartupTracer.MARK_PERMISSION_GRANTED);
             } else {
                 Toast.makeText(this,
                         "Microphone permissions needed. Please allow in App Settings for additional functionality.",
@@ -682,26 +629,4 @@ public class ClientActivity extends AppCompatActivity implements DeviceListener,
             }
         }
     }
-
-    private void setAudioFocus(boolean setFocus) {
-        if (audioManager != null) {
-            if (setFocus) {
-                savedAudioMode = audioManager.getMode();
-                // Request audio focus before making any device switch.
-                audioManager.requestAudioFocus(null, AudioManager.STREAM_VOICE_CALL,
-                        AudioManager.AUDIOFOCUS_GAIN_TRANSIENT);
-
-                /*
-                 * Start by setting MODE_IN_COMMUNICATION as default audio mode. It is
-                 * required to be in this mode when playout and/or recording starts for
-                 * best possible VoIP performance. Some devices have difficulties with speaker mode
-                 * if this is not set.
-                 */
-                audioManager.setMode(AudioManager.MODE_IN_COMMUNICATION);
-            } else {
-                audioManager.setMode(savedAudioMode);
-                audioManager.abandonAudioFocus(null);
-            }
-        }
-    }
 }
@@ -0,0 +1,293 @@
+package client.twilio.com.quickstart;
+
+import android.Manifest;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+import android.support.v4.content.ContextCompat;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Everyone the user may want to call: the contacts dialed before and, when READ_CONTACTS is granted,
+ * the phone numbers of the address book. Both are indexed in a ContactIndex for the suggestions of
+ * the call dialog. Phone numbers of both are put in the form they are dialed in by one
+ * ContactNormalizer, so a number is one contact whichever way it was typed or saved.
+ *
+ * Nothing is read until the dialer is first built. Loading, recording dials and saving the dial
+ * history run in order on a single background thread; the address book is read one page at a time
+ * and each page is searchable as soon as it is indexed. Searches can run on any thread.
+ */
+public class ContactDirectory {
+
+    private static final String TAG = ContactDirectory.class.getName();
+
+    private static final String FILE_NAME = "dial_history.bin";
+
+    /*
+     * Dialed contacts kept, address book numbers indexed, and suggestions indexed in total: room is
+     * left for the contacts dialed in this session once the address book is loaded
+     */
+    private static final int MAX_HISTORY = 500;
+    private static final int MAX_ADDRESS_BOOK = 15000;
+    private static final int MAX_SUGGESTIONS = 20000;
+
+    private static final int PAGE_SIZE = 500;
+    private static final int LABEL_LOOKUP_LIMIT = 4;
+
+    /*
+     * Contacts whose normalized form is remembered
+     */
+    private static final int CONTACT_CACHE_CAPACITY = 64;
+
+    private static ContactDirectory instance;
+
+    private final Context context;
+    private final File file;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final DialHistory dialHistory = new DialHistory(MAX_HISTORY);
+    private final ContactIndex contactIndex = new ContactIndex(MAX_SUGGESTIONS);
+    private final ContactNormalizer contactNormalizer;
+    private boolean loadStarted;
+
+    /*
+     * Set on the background thread once the persisted dial history was read, so a dial recorded
+     * before the dialer was first built never overwrites it
+     */
+    private boolean dialHistoryLoaded;
+
+    public static synchronized ContactDirectory getInstance(Context context) {
+        if (instance == null) {
+            instance = new ContactDirectory(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ContactDirectory(Context context) {
+        this.context = context;
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+        this.contactNormalizer = new ContactNormalizer(defaultRegion(context), CONTACT_CACHE_CAPACITY);
+    }
+
+    /*
+     * The region national phone numbers are read in: the one of the SIM, else of the network, else of the locale
+     */
+    private static String defaultRegion(Context context) {
+        TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        if (telephonyManager != null) {
+            String simRegion = telephonyManager.getSimCountryIso();
+            if (ContactNormalizer.isSupportedRegion(simRegion)) {
+                return simRegion;
+            }
+            String networkRegion = telephonyManager.getNetworkCountryIso();
+            if (ContactNormalizer.isSupportedRegion(networkRegion)) {
+                return networkRegion;
+            }
+        }
+        return Locale.getDefault().getCountry();
+    }
+
+    /*
+     * Normalizes contacts before they are dialed, as the directory does for the ones it indexes
+     */
+    public ContactNormalizer getContactNormalizer() {
+        return contactNormalizer;
+    }
+
+    /*
+     * Start loading the dial history and the address book, once. Must be called on the main thread.
+     */
+    public void loadAsync() {
+        if (loadStarted) {
+            return;
+        }
+        loadStarted = true;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadDialHistory();
+                loadAddressBook();
+            }
+        });
+    }
+
+    /*
+     * The best suggestions for what the user typed so far
+     */
+    public List<ContactIndex.Suggestion> search(CharSequence query, int limit) {
+        return contactIndex.search(query, limit);
+    }
+
+    /*
+     * Record that the contact was dialed, so it ranks higher next time. Phone numbers are expected
+     * normalized, as they are dialed.
+     */
+    public void recordAsync(final String contact, final boolean isPhoneNumber) {
+        final long nowMillis = System.currentTimeMillis();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadDialHistory();
+                DialHistory.Entry entry = dialHistory.record(contact, isPhoneNumber, nowMillis);
+                if (entry == null) {
+                    return;
+                }
+                // Outranks the suggestions indexed for earlier dials of the same contact
+                contactIndex.add(Collections.singletonList(new ContactIndex.Suggestion(labelOf(entry),
+                        entry.getContact(), entry.isPhoneNumber(), entry.getDialCount(), entry.getLastDialedMillis())));
+                persist();
+            }
+        });
+    }
+
+    private static ContactIndex.Suggestion toSuggestion(DialHistory.Entry entry) {
+        return new ContactIndex.Suggestion(entry.getContact(), entry.getContact(), entry.isPhoneNumber(),
+                entry.getDialCount(), entry.getLastDialedMillis());
+    }
+
+    /*
+     * The address book name of a dialed phone number, so it is still found by name
+     */
+    private String labelOf(DialHistory.Entry entry) {
+        if (entry.isPhoneNumber()) {
+            String digits = ContactIndex.digitsOf(entry.getContact());
+            for (ContactIndex.Suggestion suggestion : contactIndex.search(digits, LABEL_LOOKUP_LIMIT)) {
+                if (suggestion.isPhoneNumber() && !suggestion.getLabel().equals(suggestion.getContact())
+                        && ContactIndex.digitsOf(suggestion.getContact()).equals(digits)) {
+                    return suggestion.getLabel();
+                }
+            }
+        }
+        return entry.getContact();
+    }
+
+    /*
+     * The number in the form it is dialed and recorded in, or as saved if it cannot be dialed
+     */
+    private String canonicalNumber(String number) {
+        ContactNormalizer.Result result = contactNormalizer.normalizeUncached(number, true);
+        return result.isValid() ? result.getContact() : number.trim();
+    }
+
+    private void loadDialHistory() {
+        if (dialHistoryLoaded) {
+            return;
+        }
+        dialHistoryLoaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                dialHistory.readFrom(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to load dial history: " + e.toString());
+            return;
+        }
+        // Numbers dialed before they were normalized
+        if (dialHistory.normalizePhoneNumbers(contactNormalizer)) {
+            persist();
+        }
+        List<ContactIndex.Suggestion> suggestions = new ArrayList<ContactIndex.Suggestion>(dialHistory.size());
+        for (DialHistory.Entry entry : dialHistory.getEntries()) {
+            suggestions.add(toSuggestion(entry));
+        }
+        contactIndex.add(suggestions);
+    }
+
+    /*
+     * Index the phone numbers of the address book, a page at a time. Pages are keyed on the row id
+     * rather than an offset, so each query starts where the previous one ended.
+     */
+    private void loadAddressBook() {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.READ_CONTACTS) != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        ContentResolver contentResolver = context.getContentResolver();
+        String[] projection = {
+                ContactsContract.CommonDataKinds.Phone._ID,
+                ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME,
+                ContactsContract.CommonDataKinds.Phone.NUMBER
+        };
+        String selection = ContactsContract.CommonDataKinds.Phone._ID + " > ?";
+        String sortOrder = ContactsContract.CommonDataKinds.Phone._ID + " ASC LIMIT " + PAGE_SIZE;
+
+        long lastId = -1;
+        int loaded = 0;
+        while (loaded < MAX_ADDRESS_BOOK) {
+            List<ContactIndex.Suggestion> page = new ArrayList<ContactIndex.Suggestion>(PAGE_SIZE);
+            Cursor cursor;
+            try {
+                cursor = contentResolver.query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI, projection,
+                        selection, new String[] { String.valueOf(lastId) }, sortOrder);
+            } catch (SecurityException e) {
+                Log.e(TAG, "Unable to read contacts: " + e.toString());
+                return;
+            }
+            if (cursor == null) {
+                return;
+            }
+            int rows = 0;
+            try {
+                int idColumn = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone._ID);
+                int nameColumn = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME);
+                int numberColumn = cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.NUMBER);
+                while (cursor.moveToNext()) {
+                    rows++;
+                    lastId = cursor.getLong(idColumn);
+                    String number = cursor.getString(numberColumn);
+                    if (number == null || number.trim().length() == 0) {
+                        continue;
+                    }
+                    String name = cursor.getString(nameColumn);
+                    String contact = canonicalNumber(number);
+                    // Ranked by how often the number was dialed, whatever its formatting then
+                    DialHistory.Entry dialed = dialHistory.get(contact, true);
+                    page.add(new ContactIndex.Suggestion(name != null ? name : number.trim(), contact, true,
+                            dialed != null ? dialed.getDialCount() : 0, dialed != null ? dialed.getLastDialedMillis() : 0));
+                }
+            } finally {
+                cursor.close();
+            }
+            contactIndex.add(page);
+            loaded += page.size();
+            if (rows < PAGE_SIZE) {
+                return;
+            }
+        }
+    }
+
+    private void persist() {
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                dialHistory.writeTo(out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to persist dial history: " + e.toString());
+        }
+    }
+}
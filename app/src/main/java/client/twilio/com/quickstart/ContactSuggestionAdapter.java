@@ -0,0 +1,94 @@
+package client.twilio.com.quickstart;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Suggestions of the call dialog, searched in the ContactDirectory as the user types. Searching runs
+ * on the filter thread, so typing never waits for the index.
+ */
+public class ContactSuggestionAdapter extends BaseAdapter implements Filterable {
+
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private final LayoutInflater layoutInflater;
+    private final ContactDirectory contactDirectory;
+    private List<ContactIndex.Suggestion> suggestions = Collections.emptyList();
+
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            List<ContactIndex.Suggestion> found = constraint != null
+                    ? contactDirectory.search(constraint, MAX_SUGGESTIONS)
+                    : Collections.<ContactIndex.Suggestion>emptyList();
+            results.values = found;
+            results.count = found.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            suggestions = (List<ContactIndex.Suggestion>) results.values;
+            if (results.count > 0) {
+                notifyDataSetChanged();
+            } else {
+                notifyDataSetInvalidated();
+            }
+        }
+
+        @Override
+        public CharSequence convertResultToString(Object resultValue) {
+            return ((ContactIndex.Suggestion) resultValue).getContact();
+        }
+    };
+
+    public ContactSuggestionAdapter(Context context, ContactDirectory contactDirectory) {
+        this.layoutInflater = LayoutInflater.from(context);
+        this.contactDirectory = contactDirectory;
+    }
+
+    @Override
+    public int getCount() {
+        return suggestions.size();
+    }
+
+    @Override
+    public ContactIndex.Suggestion getItem(int position) {
+        return suggestions.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView textView = (TextView) (convertView != null
+                ? convertView
+                : layoutInflater.inflate(android.R.layout.simple_dropdown_item_1line, parent, false));
+        ContactIndex.Suggestion suggestion = suggestions.get(position);
+        if (suggestion.getLabel().equals(suggestion.getContact())) {
+            textView.setText(suggestion.getContact());
+        } else {
+            textView.setText(suggestion.getLabel() + "  " + suggestion.getContact());
+        }
+        return textView;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+}
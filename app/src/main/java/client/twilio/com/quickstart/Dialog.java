@@ -9,6 +9,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
 import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.Spinner;
@@ -18,19 +19,17 @@ import android.widget.Spinner;
  */
 public class Dialog {
 
-    public static AlertDialog createRegisterDialog(DialogInterface.OnClickListener updateTokenClickListener, DialogInterface.OnClickListener cancelClickListener,
-                                                   ClientActivity.ClientProfile clientProfile, Context context){
-        AlertDialog.Builder alertDialogBuilder = new AlertDialog.Builder(context);
-
-        alertDialogBuilder.setIcon(R.drawable.ic_update_black_24dp);
-        alertDialogBuilder.setTitle("Register Client");
-        alertDialogBuilder.setPositiveButton("Register", updateTokenClickListener);
-        alertDialogBuilder.setNegativeButton("Cancel", cancelClickListener);
-        alertDialogBuilder.setCancelable(false);
+    /*
+     * Dialogs are built in two steps so DialogCache can do the expensive part ahead of time: the
+     * content view is inflated once, and bound to the current data each time the dialog is shown.
+     */
 
+    public static View inflateRegisterView(Context context) {
         LayoutInflater li = LayoutInflater.from(context);
-        View dialogView = li.inflate(R.layout.dialog_registration, null);
+        return li.inflate(R.layout.dialog_registration, null);
+    }
 
+    public static void bindRegisterView(View dialogView, ClientProfile clientProfile) {
         EditText clientNameEditText = (EditText) dialogView.findViewById(R.id.client_name_edittext);
         clientNameEditText.setText(clientProfile.getName());
         clientNameEditText.setSelection(clientNameEditText.getText().length());
@@ -40,26 +39,38 @@ public class Dialog {
 
         CheckBox allowIncomingCxBx = (CheckBox) dialogView.findViewById(R.id.incoming_checkbox);
         allowIncomingCxBx.setChecked(clientProfile.isAllowIncoming());
-
-        alertDialogBuilder.setView(dialogView);
-
-        return alertDialogBuilder.create();
     }
 
-    public static AlertDialog createCallDialog(DialogInterface.OnClickListener callClickListener, DialogInterface.OnClickListener cancelClickListener, final Context context){
+    public static AlertDialog createRegisterDialog(DialogInterface.OnClickListener updateTokenClickListener, DialogInterface.OnClickListener cancelClickListener,
+                                                   View dialogView, Context context){
         AlertDialog.Builder alertDialogBuilder = new AlertDialog.Builder(context);
 
-        alertDialogBuilder.setIcon(R.drawable.ic_call_black_24dp);
-        alertDialogBuilder.setTitle("Call");
-        alertDialogBuilder.setPositiveButton("Call", callClickListener);
+        alertDialogBuilder.setIcon(R.drawable.ic_update_black_24dp);
+        alertDialogBuilder.setTitle("Register Client");
+        alertDialogBuilder.setPositiveButton("Register", updateTokenClickListener);
         alertDialogBuilder.setNegativeButton("Cancel", cancelClickListener);
         alertDialogBuilder.setCancelable(false);
+        alertDialogBuilder.setView(dialogView);
+
+        return alertDialogBuilder.create();
+    }
 
+    /*
+     * The contact field suggests from `suggestionAdapter` as the user types; picking a suggestion
+     * also selects whether it is a client or a phone number
+     */
+    public static View inflateCallView(Context context, final ContactSuggestionAdapter suggestionAdapter) {
         LayoutInflater li = LayoutInflater.from(context);
         View dialogView = li.inflate(R.layout.dialog_call, null);
-        Spinner typeSpinner = (Spinner) dialogView.findViewById(R.id.typeSpinner);
-        final EditText contact = (EditText) dialogView.findViewById(R.id.contact);
-
+        final Spinner typeSpinner = (Spinner) dialogView.findViewById(R.id.typeSpinner);
+        final AutoCompleteTextView contact = (AutoCompleteTextView) dialogView.findViewById(R.id.contact);
+        contact.setAdapter(suggestionAdapter);
+        contact.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                typeSpinner.setSelection(suggestionAdapter.getItem(position).isPhoneNumber() ? 1 : 0);
+            }
+        });
 
         ArrayAdapter<CharSequence> adapter = ArrayAdapter.createFromResource(context, R.array.types, android.R.layout.simple_spinner_item);
         adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
@@ -80,7 +91,28 @@ public class Dialog {
             public void onNothingSelected(AdapterView<?> parent) {
             }
         });
+        return dialogView;
+    }
+
+    /*
+     * Clear the contact entered the last time the call dialog was shown
+     */
+    public static void resetCallView(View dialogView) {
+        EditText contact = (EditText) dialogView.findViewById(R.id.contact);
+        contact.setText("");
+        Spinner typeSpinner = (Spinner) dialogView.findViewById(R.id.typeSpinner);
+        typeSpinner.setSelection(0);
+    }
 
+    public static AlertDialog createCallDialog(DialogInterface.OnClickListener callClickListener, DialogInterface.OnClickListener cancelClickListener,
+                                               View dialogView, Context context){
+        AlertDialog.Builder alertDialogBuilder = new AlertDialog.Builder(context);
+
+        alertDialogBuilder.setIcon(R.drawable.ic_call_black_24dp);
+        alertDialogBuilder.setTitle("Call");
+        alertDialogBuilder.setPositiveButton("Call", callClickListener);
+        alertDialogBuilder.setNegativeButton("Cancel", cancelClickListener);
+        alertDialogBuilder.setCancelable(false);
         alertDialogBuilder.setView(dialogView);
 
         return alertDialogBuilder.create();
@@ -98,4 +130,36 @@ public class Dialog {
 
         return alertDialogBuilder.create();
     }
+
+    public static View inflateKeypadView(Context context) {
+        LayoutInflater li = LayoutInflater.from(context);
+        return li.inflate(R.layout.dialog_keypad, null);
+    }
+
+    public static AlertDialog createKeypadDialog(View dialogView, Context context) {
+        AlertDialog.Builder alertDialogBuilder = new AlertDialog.Builder(context);
+
+        alertDialogBuilder.setIcon(R.drawable.ic_dialpad_black_24dp);
+        alertDialogBuilder.setTitle("Keypad");
+        // Closing only dismisses the keypad, the call goes on
+        alertDialogBuilder.setNegativeButton("Close", null);
+        alertDialogBuilder.setView(dialogView);
+
+        return alertDialogBuilder.create();
+    }
+
+    /*
+     * Pick one of `clientNames`, the one registered being `checkedItem`
+     */
+    public static AlertDialog createSwitchClientDialog(CharSequence[] clientNames, int checkedItem,
+                                                       DialogInterface.OnClickListener switchClickListener, Context context) {
+        AlertDialog.Builder alertDialogBuilder = new AlertDialog.Builder(context);
+
+        alertDialogBuilder.setIcon(R.drawable.ic_update_black_24dp);
+        alertDialogBuilder.setTitle("Switch Client");
+        alertDialogBuilder.setSingleChoiceItems(clientNames, checkedItem, switchClickListener);
+        alertDialogBuilder.setNegativeButton("Cancel", null);
+
+        return alertDialogBuilder.create();
+    }
 }
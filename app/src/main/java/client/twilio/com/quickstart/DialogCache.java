@@ -0,0 +1,206 @@
+package client.twilio.com.quickstart;
+
+import android.content.Context;
+import android.content.DialogInterface;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v7.app.AlertDialog;
+import android.view.View;
+
+/*
+ * Builds the dialogs of an activity once and reuses them, so showing the incoming call prompt, the
+ * dialer, the registration form or the in-call keypad takes no inflation work.
+ *
+ * Dialogs are built one at a time while the main thread is idle, the incoming call dialog first as
+ * it is on the latency critical path, or on first use if that comes sooner. Their buttons forward to
+ * the listeners passed when the dialog is requested, and their views are rebound to the new data.
+ * Must be used on the main thread.
+ */
+public class DialogCache {
+
+    /*
+     * A dialog button listener that can be retargeted after the dialog was built
+     */
+    private static class ForwardingClickListener implements DialogInterface.OnClickListener {
+        private DialogInterface.OnClickListener target;
+
+        @Override
+        public void onClick(DialogInterface dialog, int which) {
+            if (target != null) {
+                target.onClick(dialog, which);
+            }
+        }
+    }
+
+    private final Context context;
+    private final ContactDirectory contactDirectory;
+
+    private AlertDialog incomingCallDialog;
+    private final ForwardingClickListener incomingAnswerClickListener = new ForwardingClickListener();
+    private final ForwardingClickListener incomingCancelClickListener = new ForwardingClickListener();
+
+    private AlertDialog callDialog;
+    private View callView;
+    private final ForwardingClickListener callClickListener = new ForwardingClickListener();
+    private final ForwardingClickListener callCancelClickListener = new ForwardingClickListener();
+    private PresenceIndicator callPresenceIndicator;
+    private PresenceRoster presenceRoster;
+
+    private AlertDialog registerDialog;
+    private View registerView;
+    private final ForwardingClickListener registerClickListener = new ForwardingClickListener();
+    private final ForwardingClickListener registerCancelClickListener = new ForwardingClickListener();
+
+    private AlertDialog keypadDialog;
+    private DtmfKeypad keypad;
+
+    private boolean idleHandlerAdded;
+    private final MessageQueue.IdleHandler idleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            // Build a single dialog per idle pass to keep each pass short
+            if (incomingCallDialog == null) {
+                buildIncomingCallDialog();
+            } else if (callDialog == null) {
+                buildCallDialog();
+            } else if (registerDialog == null) {
+                buildRegisterDialog();
+            } else if (keypadDialog == null) {
+                buildKeypadDialog();
+            }
+            idleHandlerAdded = incomingCallDialog == null || callDialog == null || registerDialog == null
+                    || keypadDialog == null;
+            return idleHandlerAdded;
+        }
+    };
+
+    public DialogCache(Context context, ContactDirectory contactDirectory) {
+        this.context = context;
+        this.contactDirectory = contactDirectory;
+    }
+
+    /*
+     * Build the dialogs the next times the main thread runs out of messages
+     */
+    public void prepareWhenIdle() {
+        if (!idleHandlerAdded) {
+            idleHandlerAdded = true;
+            Looper.myQueue().addIdleHandler(idleHandler);
+        }
+    }
+
+    /*
+     * Stop building dialogs and dismiss any that is showing, for example when the activity is destroyed
+     */
+    public void release() {
+        if (idleHandlerAdded) {
+            Looper.myQueue().removeIdleHandler(idleHandler);
+            idleHandlerAdded = false;
+        }
+        dismiss(incomingCallDialog);
+        dismiss(callDialog);
+        dismiss(registerDialog);
+        dismiss(keypadDialog);
+    }
+
+    private static void dismiss(AlertDialog dialog) {
+        if (dialog != null && dialog.isShowing()) {
+            dialog.dismiss();
+        }
+    }
+
+    /*
+     * Dismiss the incoming call dialog if it is showing, for example once the call was answered from
+     * the notification
+     */
+    public void dismissIncomingCallDialog() {
+        dismiss(incomingCallDialog);
+    }
+
+    public AlertDialog getIncomingCallDialog(DialogInterface.OnClickListener answerCallClickListener,
+                                             DialogInterface.OnClickListener cancelClickListener) {
+        if (incomingCallDialog == null) {
+            buildIncomingCallDialog();
+        }
+        incomingAnswerClickListener.target = answerCallClickListener;
+        incomingCancelClickListener.target = cancelClickListener;
+        return incomingCallDialog;
+    }
+
+    public AlertDialog getCallDialog(DialogInterface.OnClickListener callClickListener,
+                                     DialogInterface.OnClickListener cancelClickListener) {
+        if (callDialog == null) {
+            buildCallDialog();
+        } else {
+            Dialog.resetCallView(callView);
+        }
+        this.callClickListener.target = callClickListener;
+        callCancelClickListener.target = cancelClickListener;
+        return callDialog;
+    }
+
+    /*
+     * Presence changed, or is known for the first time: flag offline clients in the call dialog
+     */
+    public void onPresenceChanged(PresenceRoster presenceRoster) {
+        this.presenceRoster = presenceRoster;
+        if (callPresenceIndicator != null) {
+            callPresenceIndicator.setPresenceRoster(presenceRoster);
+        }
+    }
+
+    public AlertDialog getRegisterDialog(DialogInterface.OnClickListener updateTokenClickListener,
+                                         DialogInterface.OnClickListener cancelClickListener,
+                                         ClientProfile clientProfile) {
+        if (registerDialog == null) {
+            buildRegisterDialog();
+        }
+        Dialog.bindRegisterView(registerView, clientProfile);
+        registerClickListener.target = updateTokenClickListener;
+        registerCancelClickListener.target = cancelClickListener;
+        return registerDialog;
+    }
+
+    /*
+     * The keypad, cleared of the digits typed the last time. Keys go to `keyListener` as they are pressed.
+     */
+    public AlertDialog getKeypadDialog(DtmfKeypad.Listener keyListener) {
+        if (keypadDialog == null) {
+            buildKeypadDialog();
+        }
+        keypad.setListener(keyListener);
+        keypad.start();
+        return keypadDialog;
+    }
+
+    private void buildIncomingCallDialog() {
+        incomingCallDialog = Dialog.createIncomingCallDialog(incomingAnswerClickListener, incomingCancelClickListener, context);
+    }
+
+    private void buildCallDialog() {
+        // Suggestions are only needed from here on, so the contacts are not read before
+        contactDirectory.loadAsync();
+        callView = Dialog.inflateCallView(context, new ContactSuggestionAdapter(context, contactDirectory));
+        callDialog = Dialog.createCallDialog(callClickListener, callCancelClickListener, callView, context);
+        callPresenceIndicator = new PresenceIndicator(callView);
+        callPresenceIndicator.setPresenceRoster(presenceRoster);
+    }
+
+    private void buildRegisterDialog() {
+        registerView = Dialog.inflateRegisterView(context);
+        registerDialog = Dialog.createRegisterDialog(registerClickListener, registerCancelClickListener, registerView, context);
+    }
+
+    private void buildKeypadDialog() {
+        View keypadView = Dialog.inflateKeypadView(context);
+        keypad = new DtmfKeypad(keypadView);
+        keypadDialog = Dialog.createKeypadDialog(keypadView, context);
+        keypadDialog.setOnDismissListener(new DialogInterface.OnDismissListener() {
+            @Override
+            public void onDismiss(DialogInterface dialog) {
+                // Let go of the tone generator while the keypad is not showing
+                keypad.stop();
+            }
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package client.twilio.com.quickstart;
+
+import android.media.AudioManager;
+import android.media.ToneGenerator;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+/*
+ * The keys of the in-call keypad. A keypress is handed to the listener first, so it is queued for
+ * sending before anything else is done with it, then plays its tone locally and is appended to the
+ * digits shown. The tone generator is only held between start() and stop(), while the keypad is
+ * showing. Must be used on the main thread.
+ */
+public class DtmfKeypad implements View.OnClickListener {
+
+    private static final String TAG = DtmfKeypad.class.getName();
+
+    private static final int TONE_VOLUME = 80;
+    private static final int TONE_DURATION_MILLIS = 150;
+
+    public interface Listener {
+        void onKey(char key);
+    }
+
+    private final TextView digitsTextView;
+    private Listener listener;
+    private ToneGenerator toneGenerator;
+
+    /*
+     * Bind the buttons of `keypadView`, inflated from dialog_keypad, each tagged with its key
+     */
+    public DtmfKeypad(View keypadView) {
+        digitsTextView = (TextView) keypadView.findViewById(R.id.keypad_digits);
+        ViewGroup grid = (ViewGroup) keypadView.findViewById(R.id.keypad_grid);
+        for (int i = 0; i < grid.getChildCount(); i++) {
+            grid.getChildAt(i).setOnClickListener(this);
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /*
+     * Clear the digits typed the last time and get ready to play tones
+     */
+    public void start() {
+        digitsTextView.setText("");
+        if (toneGenerator == null) {
+            try {
+                toneGenerator = new ToneGenerator(AudioManager.STREAM_VOICE_CALL, TONE_VOLUME);
+            } catch (RuntimeException e) {
+                // Keys are still sent, only without local feedback
+                Log.e(TAG, "Unable to create the tone generator: " + e.getMessage());
+            }
+        }
+    }
+
+    public void stop() {
+        if (toneGenerator != null) {
+            toneGenerator.release();
+            toneGenerator = null;
+        }
+    }
+
+    @Override
+    public void onClick(View v) {
+        char key = ((String) v.getTag()).charAt(0);
+        if (listener != null) {
+            listener.onKey(key);
+        }
+        if (toneGenerator != null) {
+            toneGenerator.startTone(toneFor(key), TONE_DURATION_MILLIS);
+        }
+        digitsTextView.append(String.valueOf(key));
+    }
+
+    private static int toneFor(char key) {
+        switch (key) {
+            case '*':
+                return ToneGenerator.TONE_DTMF_S;
+            case '#':
+                return ToneGenerator.TONE_DTMF_P;
+            default:
+                // TONE_DTMF_0 to TONE_DTMF_9 are consecutive
+                return ToneGenerator.TONE_DTMF_0 + (key - '0');
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package client.twilio.com.quickstart;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.media.AudioManager;
+import android.media.Ringtone;
+import android.media.RingtoneManager;
+import android.os.Build;
+import android.support.v4.app.NotificationCompat;
+
+/*
+ * Rings and shows a full-screen notification with answer and decline actions for an incoming call,
+ * without waiting for ClientActivity to launch.
+ *
+ * The ringtone is resolved when the notifier is created, with the CallEngine, so that ringing only
+ * costs a play() once a call arrives. Must be used on the main thread.
+ */
+public class IncomingCallNotifier {
+
+    private static final int NOTIFICATION_ID = 2;
+    private static final String NOTIFICATION_CHANNEL_ID = "incoming_call";
+
+    private final Context context;
+    private final NotificationManager notificationManager;
+    private final Ringtone ringtone;
+    private final PendingIntent fullScreenIntent;
+    private final PendingIntent answerIntent;
+    private final PendingIntent declineIntent;
+    private boolean ringing;
+
+    public IncomingCallNotifier(Context context) {
+        this.context = context.getApplicationContext();
+        notificationManager = (NotificationManager) this.context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(NOTIFICATION_CHANNEL_ID,
+                    "Incoming calls", NotificationManager.IMPORTANCE_HIGH);
+            // The notifier plays the ringtone itself
+            channel.setSound(null, null);
+            notificationManager.createNotificationChannel(channel);
+        }
+
+        ringtone = RingtoneManager.getRingtone(this.context, RingtoneManager.getDefaultUri(RingtoneManager.TYPE_RINGTONE));
+        if (ringtone != null) {
+            ringtone.setStreamType(AudioManager.STREAM_RING);
+        }
+
+        Intent activityIntent = new Intent(this.context, ClientActivity.class);
+        activityIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        fullScreenIntent = PendingIntent.getActivity(this.context, 0, activityIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+        answerIntent = CallService.createActionIntent(this.context, CallService.ACTION_ANSWER);
+        declineIntent = CallService.createActionIntent(this.context, CallService.ACTION_DECLINE);
+    }
+
+    public boolean isRinging() {
+        return ringing;
+    }
+
+    /*
+     * Start ringing and post the notification for a call from `from`, which may be null
+     */
+    public void start(String from) {
+        if (!ringing && ringtone != null) {
+            ringtone.play();
+        }
+        ringing = true;
+
+        Notification notification = new NotificationCompat.Builder(context, NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_call_white_24px)
+                .setContentTitle("Incoming call")
+                .setContentText(from != null ? from : "Unknown caller")
+                .setPriority(NotificationCompat.PRIORITY_MAX)
+                .setCategory(NotificationCompat.CATEGORY_CALL)
+                .setFullScreenIntent(fullScreenIntent, true)
+                .setContentIntent(fullScreenIntent)
+                .addAction(R.drawable.ic_call_end_white_24px, "Decline", declineIntent)
+                .addAction(R.drawable.ic_call_white_24px, "Answer", answerIntent)
+                .setOngoing(true)
+                .build();
+        notificationManager.notify(NOTIFICATION_ID, notification);
+    }
+
+    /*
+     * Stop ringing and remove the notification once no call is waiting to be answered
+     */
+    public void stop() {
+        if (!ringing) {
+            return;
+        }
+        ringing = false;
+        if (ringtone != null) {
+            ringtone.stop();
+        }
+        notificationManager.cancel(NOTIFICATION_ID);
+    }
+}
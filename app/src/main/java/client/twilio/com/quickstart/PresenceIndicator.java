@@ -0,0 +1,99 @@
+package client.twilio.com.quickstart;
+
+import android.support.v4.view.ViewCompat;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.EditText;
+import android.widget.Spinner;
+
+/*
+ * Flags the client entered in the call dialog when the PresenceRoster reports it offline, so no call
+ * setup is wasted on it. Phone numbers have no presence and are never flagged.
+ *
+ * The flag is re-evaluated when the contact or its type changes and when the roster changes, at most
+ * once per animation frame however many presence events arrive. Must be used on the main thread.
+ */
+public class PresenceIndicator {
+
+    private static final int TYPE_CLIENT = 0;
+
+    private final EditText contact;
+    private final Spinner typeSpinner;
+    private final String offlineMessage;
+    private PresenceRoster presenceRoster;
+
+    private boolean flagged;
+    private boolean frameScheduled;
+    private final Runnable renderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            frameScheduled = false;
+            render();
+        }
+    };
+
+    public PresenceIndicator(View callView) {
+        contact = (EditText) callView.findViewById(R.id.contact);
+        typeSpinner = (Spinner) callView.findViewById(R.id.typeSpinner);
+        offlineMessage = callView.getContext().getString(R.string.client_offline);
+
+        contact.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                post();
+            }
+        });
+        final AdapterView.OnItemSelectedListener typeListener = typeSpinner.getOnItemSelectedListener();
+        typeSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                if (typeListener != null) {
+                    typeListener.onItemSelected(parent, view, position, id);
+                }
+                post();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+                if (typeListener != null) {
+                    typeListener.onNothingSelected(parent);
+                }
+            }
+        });
+    }
+
+    public void setPresenceRoster(PresenceRoster presenceRoster) {
+        this.presenceRoster = presenceRoster;
+        post();
+    }
+
+    /*
+     * Re-evaluate the flag on the next animation frame
+     */
+    public void post() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            ViewCompat.postOnAnimation(contact, renderRunnable);
+        }
+    }
+
+    private void render() {
+        boolean offline = presenceRoster != null
+                && typeSpinner.getSelectedItemPosition() == TYPE_CLIENT
+                && presenceRoster.getAvailability(contact.getText().toString()) == PresenceRoster.UNAVAILABLE;
+        if (offline != flagged) {
+            flagged = offline;
+            contact.setError(offline ? offlineMessage : null);
+        }
+    }
+}
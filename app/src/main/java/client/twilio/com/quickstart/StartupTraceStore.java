@@ -0,0 +1,75 @@
+package client.twilio.com.quickstart;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Persists the launches recorded by the StartupTracer across processes and logs the startup
+ * summary of the current build. All file access happens off the main thread, in order on a single
+ * background thread, so two persists never write the file at once.
+ */
+public class StartupTraceStore {
+
+    private static final String TAG = StartupTraceStore.class.getName();
+
+    private static final String FILE_NAME = "startup_traces.bin";
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /*
+     * Merge the launches stored on disk with the launch just completed, write them back and log
+     * the p50/p95/p99 of every span for this build
+     */
+    public static void persistAsync(Context context, final StartupTracer startupTracer) {
+        final File file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (file.exists()) {
+                        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                        try {
+                            startupTracer.readFrom(in);
+                        } finally {
+                            in.close();
+                        }
+                    }
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                    try {
+                        startupTracer.writeTo(out);
+                    } finally {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Unable to persist startup traces: " + e.toString());
+                }
+                if (BuildConfig.DEBUG) {
+                    logSummary(startupTracer);
+                }
+            }
+        });
+    }
+
+    private static void logSummary(StartupTracer startupTracer) {
+        for (int span = 0; span < StartupTracer.SPAN_COUNT; span++) {
+            long[] summary = startupTracer.summarize(span, BuildConfig.VERSION_CODE);
+            if (summary != null) {
+                Log.d(TAG, String.format("Startup %s: last=%dms p50=%dms p95=%dms p99=%dms",
+                        StartupTracer.getSpanName(span),
+                        startupTracer.getCurrentSpanNanos(span) / 1000000,
+                        summary[0] / 1000000, summary[1] / 1000000, summary[2] / 1000000));
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package client.twilio.com.quickstart;
+
+import com.twilio.client.Connection;
+
+/*
+ * CallConnection backed by a Twilio Connection. Two instances are equal if they wrap the same Connection.
+ */
+public class TwilioCallConnection implements CallConnection {
+
+    private final Connection connection;
+
+    public TwilioCallConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void accept() {
+        connection.accept();
+    }
+
+    @Override
+    public void reject() {
+        connection.reject();
+    }
+
+    @Override
+    public void disconnect() {
+        connection.disconnect();
+    }
+
+    @Override
+    public void setMuted(boolean muted) {
+        connection.setMuted(muted);
+    }
+
+    @Override
+    public void sendDigits(String digits) {
+        connection.sendDigits(digits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TwilioCallConnection && ((TwilioCallConnection) o).connection == connection;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(connection);
+    }
+}
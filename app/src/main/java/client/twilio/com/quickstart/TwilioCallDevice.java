@@ -0,0 +1,34 @@
+package client.twilio.com.quickstart;
+
+import com.twilio.client.ConnectionListener;
+import com.twilio.client.Device;
+
+import java.util.Map;
+
+/*
+ * CallDevice backed by a Twilio Device. Outgoing connections report to the given ConnectionListener.
+ */
+public class TwilioCallDevice implements CallDevice {
+
+    private final Device device;
+    private final ConnectionListener connectionListener;
+
+    public TwilioCallDevice(Device device, ConnectionListener connectionListener) {
+        this.device = device;
+        this.connectionListener = connectionListener;
+    }
+
+    public Device getDevice() {
+        return device;
+    }
+
+    @Override
+    public CallConnection connect(Map<String, String> params) {
+        return new TwilioCallConnection(device.connect(params, connectionListener));
+    }
+
+    @Override
+    public void updateCapabilityToken(String capabilityToken) {
+        device.updateCapabilityToken(capabilityToken);
+    }
+}
@@ -0,0 +1,232 @@
+package client.twilio.com.quickstart;
+
+import android.content.DialogInterface;
+import android.support.design.widget.FloatingActionButton;
+import android.view.View;
+import android.widget.ArrayAdapter;
+import android.widget.Chronometer;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/*
+ * Wall time and allocations of the call screen on a plain JVM, checked against the baselines in
+ * perf-baselines.properties. Robolectric numbers are not device numbers, but they move together:
+ * a screen that gets slower or allocates more here does on the phone as well.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ClientActivityPerfTest {
+
+    private static final DialogInterface.OnClickListener NO_OP_CLICK_LISTENER = new DialogInterface.OnClickListener() {
+        @Override
+        public void onClick(DialogInterface dialog, int which) {
+        }
+    };
+
+    private static final CallDevice DEVICE = new CallDevice() {
+        @Override
+        public CallConnection connect(Map<String, String> params) {
+            return new CallConnection() {
+                @Override
+                public void accept() {
+                }
+
+                @Override
+                public void reject() {
+                }
+
+                @Override
+                public void disconnect() {
+                }
+
+                @Override
+                public void setMuted(boolean muted) {
+                }
+
+                @Override
+                public void sendDigits(String digits) {
+                }
+            };
+        }
+
+        @Override
+        public void updateCapabilityToken(String capabilityToken) {
+        }
+    };
+
+    private static PerfBaselines baselines;
+
+    private ClientActivity activity;
+
+    @BeforeClass
+    public static void loadBaselines() throws IOException {
+        baselines = new PerfBaselines();
+    }
+
+    @AfterClass
+    public static void saveBaselines() throws IOException {
+        baselines.save();
+    }
+
+    @Before
+    public void setUp() {
+        activity = Robolectric.buildActivity(ClientActivity.class).create().get();
+    }
+
+    @Test
+    public void onCreate() {
+        PerfScenario scenario = new PerfScenario() {
+            private ActivityController<ClientActivity> controller;
+
+            @Override
+            public void setUp() {
+                controller = Robolectric.buildActivity(ClientActivity.class);
+            }
+
+            @Override
+            public void run() {
+                controller.create();
+            }
+
+            @Override
+            public void tearDown() {
+                controller.destroy();
+            }
+        };
+        check("activity.onCreate", scenario.measure(5, 15));
+    }
+
+    /*
+     * Entering the call screen, adding a call on hold, muting and going back to the idle screen:
+     * what resetUI() and setCallUI() used to do, now applied by CallScreenRenderer
+     */
+    @Test
+    public void callScreenTransitions() {
+        CallStateMachine callStateMachine = new CallStateMachine();
+        callStateMachine.connect(DEVICE, "alice", false);
+        final CallViewState oneCall = CallViewState.from(callStateMachine.getSnapshot(), false);
+        callStateMachine.connect(DEVICE, "+15555550100", true);
+        final CallViewState twoCalls = CallViewState.from(callStateMachine.getSnapshot(), false);
+        callStateMachine.setMuted(true);
+        final CallViewState muted = CallViewState.from(callStateMachine.getSnapshot(), true);
+
+        View capabilityPropertiesView = activity.findViewById(R.id.capability_properties);
+        ListView callListView = (ListView) activity.findViewById(R.id.call_list);
+        @SuppressWarnings("unchecked")
+        ArrayAdapter<String> callListAdapter = (ArrayAdapter<String>) callListView.getAdapter();
+        final CallScreenRenderer renderer = new CallScreenRenderer(activity, activity.findViewById(android.R.id.content),
+                capabilityPropertiesView, activity.findViewById(R.id.call_layout), callListView, callListAdapter,
+                (Chronometer) activity.findViewById(R.id.chronometer),
+                (FloatingActionButton) activity.findViewById(R.id.hangup_action_fab),
+                (FloatingActionButton) activity.findViewById(R.id.mute_action_fab),
+                (FloatingActionButton) activity.findViewById(R.id.speaker_action_fab));
+        renderer.renderNow(CallViewState.IDLE);
+
+        PerfScenario scenario = new PerfScenario() {
+            @Override
+            public void run() {
+                renderer.renderNow(oneCall);
+                renderer.renderNow(twoCalls);
+                renderer.renderNow(muted);
+                renderer.renderNow(CallViewState.IDLE);
+            }
+        };
+        check("screen.callTransitions", scenario.measure(20, 50));
+        assertEquals(View.VISIBLE, capabilityPropertiesView.getVisibility());
+    }
+
+    /*
+     * Binding a newly registered profile to the capability views, as createDevice() does through
+     * onDeviceRegistered(). Two profiles alternate so every run changes the text.
+     */
+    @Test
+    public void registrationBinding() {
+        final ClientProfile alice = new ClientProfile("alice", true, true);
+        final ClientProfile bob = new ClientProfile("bob", false, true);
+
+        PerfScenario scenario = new PerfScenario() {
+            @Override
+            public void run() {
+                activity.onDeviceRegistered(alice);
+                activity.onDeviceRegistered(bob);
+            }
+        };
+        check("registration.bind", scenario.measure(20, 50));
+        TextView clientNameTextView = (TextView) activity.findViewById(R.id.client_name_registered_text);
+        assertEquals("Client Name: bob", clientNameTextView.getText().toString());
+    }
+
+    /*
+     * Building the incoming call, dialer and registration dialogs from scratch, as DialogCache does
+     * while the main thread is idle
+     */
+    @Test
+    public void buildDialogs() {
+        PerfScenario scenario = new PerfScenario() {
+            private DialogCache dialogCache;
+
+            @Override
+            public void setUp() {
+                dialogCache = new DialogCache(activity, ContactDirectory.getInstance(activity));
+            }
+
+            @Override
+            public void run() {
+                getDialogs(dialogCache);
+            }
+
+            @Override
+            public void tearDown() {
+                dialogCache.release();
+            }
+        };
+        check("dialogs.build", scenario.measure(5, 20));
+    }
+
+    /*
+     * Getting the dialogs again once built, which rebinds their views to the current data
+     */
+    @Test
+    public void rebindDialogs() {
+        final DialogCache dialogCache = new DialogCache(activity, ContactDirectory.getInstance(activity));
+        getDialogs(dialogCache);
+
+        PerfScenario scenario = new PerfScenario() {
+            @Override
+            public void run() {
+                getDialogs(dialogCache);
+            }
+        };
+        check("dialogs.rebind", scenario.measure(20, 50));
+        dialogCache.release();
+    }
+
+    private static void getDialogs(DialogCache dialogCache) {
+        assertNotNull(dialogCache.getIncomingCallDialog(NO_OP_CLICK_LISTENER, NO_OP_CLICK_LISTENER));
+        assertNotNull(dialogCache.getCallDialog(NO_OP_CLICK_LISTENER, NO_OP_CLICK_LISTENER));
+        assertNotNull(dialogCache.getRegisterDialog(NO_OP_CLICK_LISTENER, NO_OP_CLICK_LISTENER,
+                new ClientProfile("alice", true, true)));
+    }
+
+    private static void check(String scenario, PerfScenario.Result result) {
+        String regressions = baselines.check(scenario, result);
+        if (regressions != null) {
+            fail(regressions);
+        }
+    }
+}
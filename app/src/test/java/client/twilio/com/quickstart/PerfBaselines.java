@@ -0,0 +1,131 @@
+package client.twilio.com.quickstart;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/*
+ * The checked-in budgets of the performance suite, in src/test/resources/perf-baselines.properties.
+ *
+ * Each scenario has a median wall time in milliseconds and a median allocation in kilobytes. A
+ * result fails when it exceeds its baseline by more than the tolerance of that metric, so the unit
+ * tests, and with them the build, fail on a regression. Running the tests with
+ * `./gradlew :app:testDebugUnitTest -PupdatePerfBaselines` records the measured values instead;
+ * commit the rewritten file along with the change that moved them. A scenario without recorded
+ * baselines fails too, so a new scenario is never left unchecked and values are never written by hand.
+ */
+public class PerfBaselines {
+
+    private static final String FILE_PROPERTY = "perf.baselines";
+    private static final String UPDATE_PROPERTY = "perf.updateBaselines";
+    private static final String RESOURCE_NAME = "/perf-baselines.properties";
+
+    private static final String WALL_MILLIS = "wallMillis";
+    private static final String ALLOCATED_KB = "allocatedKb";
+    private static final String TOLERANCE = "tolerance.";
+
+    private static final String HEADER = "# Performance baselines of the JVM test suite, checked by PerfBaselines.\n"
+            + "# Median wall time in milliseconds and median allocation in kilobytes per scenario. A test fails\n"
+            + "# when a scenario exceeds its baseline by more than the tolerance of the metric, or has no\n"
+            + "# baseline yet. Only commit values recorded from a run with:\n"
+            + "# ./gradlew :app:testDebugUnitTest -PupdatePerfBaselines\n"
+            + "#\n"
+            + "# Allocation barely depends on the machine, only on the code and the JVM, so its tolerance is\n"
+            + "# tight, so that a scenario building even one more view or dialog shows. Wall time depends on\n"
+            + "# the load and speed of the machine and on JIT timing even as a median, so its tolerance is wide\n"
+            + "# enough that only a change in the work done, not in the machine, exceeds it. Record wall times\n"
+            + "# on the kind of machine that runs the build.\n";
+
+    private final Properties baselines = new Properties();
+    private final Map<String, String> recorded = new TreeMap<String, String>();
+    private final File file;
+    private final boolean update;
+
+    public PerfBaselines() throws IOException {
+        String path = System.getProperty(FILE_PROPERTY);
+        file = path != null ? new File(path) : null;
+        update = Boolean.getBoolean(UPDATE_PROPERTY) && file != null;
+        InputStream in = file != null ? new FileInputStream(file) : PerfBaselines.class.getResourceAsStream(RESOURCE_NAME);
+        if (in == null) {
+            throw new IOException(RESOURCE_NAME + " not found");
+        }
+        try {
+            baselines.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    public boolean isUpdating() {
+        return update;
+    }
+
+    /*
+     * Compare a result with the baselines of `scenario`. Returns the regressions found, or null if
+     * there are none or the baselines are being updated.
+     */
+    public String check(String scenario, PerfScenario.Result result) {
+        long wallMillis = (result.getWallNanos() + 999999) / 1000000;
+        long allocatedKb = result.getAllocatedBytes() >= 0 ? (result.getAllocatedBytes() + 1023) / 1024 : -1;
+        if (update) {
+            recorded.put(scenario + "." + WALL_MILLIS, Long.toString(wallMillis));
+            if (allocatedKb >= 0) {
+                recorded.put(scenario + "." + ALLOCATED_KB, Long.toString(allocatedKb));
+            }
+            return null;
+        }
+        StringBuilder regressions = new StringBuilder();
+        checkMetric(scenario, WALL_MILLIS, wallMillis, regressions);
+        if (allocatedKb >= 0) {
+            checkMetric(scenario, ALLOCATED_KB, allocatedKb, regressions);
+        }
+        return regressions.length() > 0 ? regressions.toString() : null;
+    }
+
+    private void checkMetric(String scenario, String metric, long measured, StringBuilder regressions) {
+        String key = scenario + "." + metric;
+        String baseline = baselines.getProperty(key);
+        if (baseline == null) {
+            regressions.append(key).append(" has no baseline, measured ").append(measured)
+                    .append(": record it with -PupdatePerfBaselines\n");
+            return;
+        }
+        long budget = Long.parseLong(baseline.trim());
+        double tolerance = Double.parseDouble(baselines.getProperty(TOLERANCE + metric, "0").trim());
+        if (measured > budget * (1 + tolerance)) {
+            regressions.append(key).append(" regressed: measured ").append(measured).append(", baseline ")
+                    .append(budget).append(" + ").append(Math.round(tolerance * 100)).append("%\n");
+        }
+    }
+
+    /*
+     * Write the recorded values, keeping the tolerances and the baselines of scenarios not run
+     */
+    public void save() throws IOException {
+        if (!update) {
+            return;
+        }
+        Map<String, String> merged = new TreeMap<String, String>();
+        for (String key : baselines.stringPropertyNames()) {
+            merged.put(key, baselines.getProperty(key).trim());
+        }
+        merged.putAll(recorded);
+
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+        try {
+            out.write(HEADER);
+            for (Map.Entry<String, String> entry : merged.entrySet()) {
+                out.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
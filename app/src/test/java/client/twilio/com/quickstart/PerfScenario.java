@@ -0,0 +1,91 @@
+package client.twilio.com.quickstart;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/*
+ * An operation timed by the performance suite. Each run calls setUp(), run() and tearDown(); only
+ * run() is measured, for wall time and for the bytes it allocates on the calling thread.
+ */
+public abstract class PerfScenario {
+
+    public static final class Result {
+        private final long wallNanos;
+        private final long allocatedBytes;
+
+        private Result(long wallNanos, long allocatedBytes) {
+            this.wallNanos = wallNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /*
+         * Median wall time of a run
+         */
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        /*
+         * Median bytes allocated by a run, or -1 if the JVM cannot count allocations
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    public void setUp() {
+    }
+
+    public abstract void run();
+
+    public void tearDown() {
+    }
+
+    /*
+     * Run the scenario `warmupRuns` times unmeasured so classes are loaded and code is compiled,
+     * then `runs` times measured. Medians keep a single GC pause or scheduling hiccup out of the result.
+     */
+    public Result measure(int warmupRuns, int runs) {
+        for (int i = 0; i < warmupRuns; i++) {
+            setUp();
+            run();
+            tearDown();
+        }
+        long[] wallNanos = new long[runs];
+        long[] allocatedBytes = new long[runs];
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < runs; i++) {
+            setUp();
+            long allocatedBefore = allocatedBytes(threadId);
+            long startNanos = System.nanoTime();
+            run();
+            wallNanos[i] = System.nanoTime() - startNanos;
+            long allocatedAfter = allocatedBytes(threadId);
+            allocatedBytes[i] = allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1;
+            tearDown();
+        }
+        return new Result(median(wallNanos), median(allocatedBytes));
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /*
+     * Bytes allocated so far by the thread, on JVMs that count them (HotSpot and OpenJDK)
+     */
+    private static long allocatedBytes(long threadId) {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return allocationBean.getThreadAllocatedBytes(threadId);
+    }
+}
@@ -0,0 +1,61 @@
+package client.twilio.com.quickstart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Posting a burst of SDK callbacks and delivering it to four subscribers. Loop wake-ups are queued
+ * and run by the benchmark thread itself; neither side should allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CallEventDispatcherBenchmark {
+
+    private static final int BURST = 16;
+
+    private final List<Runnable> wakeUps = new ArrayList<Runnable>();
+    private final CallEventDispatcher dispatcher = new CallEventDispatcher(new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            wakeUps.add(runnable);
+        }
+    }, 64);
+    private final Object connection = new Object();
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        for (int i = 0; i < 4; i++) {
+            dispatcher.subscribe(new CallEventDispatcher.Subscriber() {
+                @Override
+                public void onEvent(CallEventDispatcher.Event event) {
+                    blackhole.consume(event.getSubject());
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public int postAndDeliverBurst() {
+        for (int i = 0; i < BURST; i++) {
+            dispatcher.postConnected(connection);
+        }
+        int delivered = wakeUps.size();
+        for (int i = 0; i < wakeUps.size(); i++) {
+            wakeUps.get(i).run();
+        }
+        wakeUps.clear();
+        return delivered;
+    }
+}
@@ -0,0 +1,110 @@
+package client.twilio.com.quickstart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * State machine transitions for a full outgoing and incoming call cycle, and a consult call
+ * swapped with the call it interrupted
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CallStateMachineBenchmark {
+
+    private static final CallConnection NO_OP_CONNECTION = new CallConnection() {
+        @Override
+        public void accept() {
+        }
+
+        @Override
+        public void reject() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void setMuted(boolean muted) {
+        }
+
+        @Override
+        public void sendDigits(String digits) {
+        }
+    };
+
+    private static final CallConnection CONSULT_CONNECTION = new CallConnection() {
+        @Override
+        public void accept() {
+        }
+
+        @Override
+        public void reject() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void setMuted(boolean muted) {
+        }
+
+        @Override
+        public void sendDigits(String digits) {
+        }
+    };
+
+    private CallStateMachine callStateMachine;
+    private CallDevice device;
+
+    @Setup
+    public void setUp() {
+        callStateMachine = new CallStateMachine();
+        device = new CallDevice() {
+            @Override
+            public CallConnection connect(Map<String, String> params) {
+                return NO_OP_CONNECTION;
+            }
+
+            @Override
+            public void updateCapabilityToken(String capabilityToken) {
+            }
+        };
+    }
+
+    @Benchmark
+    public int outgoingCall() {
+        callStateMachine.connect(device, "bob", false);
+        callStateMachine.setMuted(true);
+        callStateMachine.onConnected(NO_OP_CONNECTION);
+        return callStateMachine.onDisconnected(NO_OP_CONNECTION);
+    }
+
+    @Benchmark
+    public int incomingCall() {
+        callStateMachine.onIncoming(NO_OP_CONNECTION, "client:bob");
+        callStateMachine.answer();
+        return callStateMachine.onDisconnected(NO_OP_CONNECTION);
+    }
+
+    @Benchmark
+    public int consultAndSwap() {
+        callStateMachine.onIncoming(NO_OP_CONNECTION, "client:bob");
+        callStateMachine.answer();
+        callStateMachine.onIncoming(CONSULT_CONNECTION, "client:alice");
+        callStateMachine.answer();
+        callStateMachine.swap(NO_OP_CONNECTION);
+        callStateMachine.onDisconnected(CONSULT_CONNECTION);
+        return callStateMachine.onDisconnected(NO_OP_CONNECTION);
+    }
+}
@@ -0,0 +1,32 @@
+package client.twilio.com.quickstart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Contact formatting for outgoing calls
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContactFormatterBenchmark {
+
+    private String clientName = "  bob  ";
+    private String phoneNumber = "+15555550100";
+
+    @Benchmark
+    public String client() {
+        return ContactFormatter.toAddress(clientName, false);
+    }
+
+    @Benchmark
+    public String phoneNumber() {
+        return ContactFormatter.toAddress(phoneNumber, true);
+    }
+}
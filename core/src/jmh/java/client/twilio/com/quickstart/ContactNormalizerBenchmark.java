@@ -0,0 +1,46 @@
+package client.twilio.com.quickstart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Contact normalization for outgoing calls, parsing each time and from the cache
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContactNormalizerBenchmark {
+
+    private String phoneNumber = "+44 (20) 7946-0018";
+    private String nationalNumber = "(555) 555-0100";
+    private String clientName = "  bob  ";
+
+    private ContactNormalizer uncached = new ContactNormalizer("US", 0);
+    private ContactNormalizer cached = new ContactNormalizer("US", 64);
+
+    @Benchmark
+    public ContactNormalizer.Result parsePhoneNumber() {
+        return uncached.normalize(phoneNumber, true);
+    }
+
+    @Benchmark
+    public ContactNormalizer.Result parseNationalNumber() {
+        return uncached.normalize(nationalNumber, true);
+    }
+
+    @Benchmark
+    public ContactNormalizer.Result parseClientName() {
+        return uncached.normalize(clientName, false);
+    }
+
+    @Benchmark
+    public ContactNormalizer.Result cachedPhoneNumber() {
+        return cached.normalize(phoneNumber, true);
+    }
+}
@@ -0,0 +1,32 @@
+package client.twilio.com.quickstart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Logging a listener callback, kept and filtered out by level; both should allocate nothing
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventLogBenchmark {
+
+    private final EventLog eventLog = new EventLog(EventLog.LEVEL_INFO, 512);
+    private int subject;
+
+    @Benchmark
+    public void recordKept() {
+        eventLog.record(EventLog.LEVEL_INFO, EventLog.EVENT_CONNECTED, ++subject, 0, 0);
+    }
+
+    @Benchmark
+    public void recordFiltered() {
+        eventLog.record(EventLog.LEVEL_DEBUG, EventLog.EVENT_CONNECTING, ++subject, 0, 0);
+    }
+}
@@ -0,0 +1,33 @@
+package client.twilio.com.quickstart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Recording into and querying the call setup histograms
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LatencyHistogramBenchmark {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long value;
+
+    @Benchmark
+    public void record() {
+        value = (value + 37) & 0xFFFF;
+        histogram.record(value);
+    }
+
+    @Benchmark
+    public long p99() {
+        return histogram.getValueAtPercentile(99);
+    }
+}
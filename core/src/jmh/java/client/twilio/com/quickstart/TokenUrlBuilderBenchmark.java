@@ -0,0 +1,32 @@
+package client.twilio.com.quickstart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Profile-to-URI building for the Capability Token request
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenUrlBuilderBenchmark {
+
+    private final ClientProfile asciiProfile = new ClientProfile("jenny", true, true);
+    private final ClientProfile escapedProfile = new ClientProfile("support agent #42 (\u00e9quipe)", true, true);
+
+    @Benchmark
+    public String asciiName() {
+        return TokenUrlBuilder.build("https://example.com/token", asciiProfile);
+    }
+
+    @Benchmark
+    public String escapedName() {
+        return TokenUrlBuilder.build("https://example.com/token", escapedProfile);
+    }
+}
@@ -0,0 +1,22 @@
+package client.twilio.com.quickstart;
+
+/*
+ * The operations the application performs on a single call. Wraps a Twilio Connection on Android
+ * so that call bookkeeping can run and be benchmarked on a plain JVM.
+ *
+ * Implementations must define equals() by the identity of the call they wrap.
+ */
+public interface CallConnection {
+    void accept();
+
+    void reject();
+
+    void disconnect();
+
+    void setMuted(boolean muted);
+
+    /*
+     * Play DTMF digits to the remote party, in order
+     */
+    void sendDigits(String digits);
+}
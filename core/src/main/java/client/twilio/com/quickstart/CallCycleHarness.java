@@ -0,0 +1,270 @@
+package client.twilio.com.quickstart;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Load harness for the call flow: runs call cycles against a SimulatedCallBackend through the same
+ * bookkeeping CallEngine does on Android, the CallStateMachine, CallTimings, CallViewState and the
+ * EventLog, and reports throughput, objects left behind and the time spent in each callback.
+ *
+ * A cycle places or answers a call, hangs up once it is connected and ends when the disconnect is
+ * reported, or when setting it up failed. `concurrency` cycles run at a time, overlapping the way
+ * calls on hold do. All bookkeeping runs on the backend's callback thread, as it runs on the SDK's.
+ *
+ * Run from the command line with: cycles concurrency incomingRatio failureRate maxLatencyMillis
+ */
+public class CallCycleHarness implements SimulatedCallBackend.Listener {
+
+    public static final class Report {
+        private final int cycles;
+        private final int failedCycles;
+        private final long elapsedNanos;
+        private final int leakedCalls;
+        private final int leakedTimings;
+        private final int leakedConnections;
+        private final LatencyHistogram callbackMicros;
+
+        private Report(int cycles, int failedCycles, long elapsedNanos, int leakedCalls, int leakedTimings,
+                       int leakedConnections, LatencyHistogram callbackMicros) {
+            this.cycles = cycles;
+            this.failedCycles = failedCycles;
+            this.elapsedNanos = elapsedNanos;
+            this.leakedCalls = leakedCalls;
+            this.leakedTimings = leakedTimings;
+            this.leakedConnections = leakedConnections;
+            this.callbackMicros = callbackMicros;
+        }
+
+        public int getCycles() {
+            return cycles;
+        }
+
+        /*
+         * Cycles whose call failed to set up
+         */
+        public int getFailedCycles() {
+            return failedCycles;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getCyclesPerSecond() {
+            return elapsedNanos > 0 ? cycles * 1e9 / elapsedNanos : 0;
+        }
+
+        /*
+         * Calls still in the CallStateMachine once every cycle ended
+         */
+        public int getLeakedCalls() {
+            return leakedCalls;
+        }
+
+        /*
+         * Calls still being timed by CallTimings once every cycle ended
+         */
+        public int getLeakedTimings() {
+            return leakedTimings;
+        }
+
+        /*
+         * Connections never disconnected nor rejected
+         */
+        public int getLeakedConnections() {
+            return leakedConnections;
+        }
+
+        /*
+         * Time spent handling each callback, recorded in microseconds rather than milliseconds
+         */
+        public LatencyHistogram getCallbackMicros() {
+            return callbackMicros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d cycles (%d failed) in %dms: %.0f cycles/s, callback p50=%dus p99=%dus max=%dus, "
+                            + "leaked calls=%d timings=%d connections=%d",
+                    cycles, failedCycles, elapsedNanos / 1000000, getCyclesPerSecond(),
+                    callbackMicros.getValueAtPercentile(50), callbackMicros.getValueAtPercentile(99),
+                    callbackMicros.getMaxMillis(), leakedCalls, leakedTimings, leakedConnections);
+        }
+    }
+
+    private final SimulatedCallBackend backend;
+    private final double incomingRatio;
+    private final CallStateMachine callStateMachine = new CallStateMachine();
+    private final CallTimings callTimings = new CallTimings();
+    private final EventLog eventLog = new EventLog(EventLog.LEVEL_DEBUG, 512);
+    private final LatencyHistogram callbackMicros = new LatencyHistogram();
+
+    private final AtomicInteger startedCycles = new AtomicInteger();
+    private final AtomicInteger failedCycles = new AtomicInteger();
+    private int totalCycles;
+    private CountDownLatch done;
+
+    /*
+     * Cycles answer an incoming call with probability `incomingRatio`, and place a call otherwise
+     */
+    public CallCycleHarness(SimulatedCallBackend backend, double incomingRatio) {
+        this.backend = backend;
+        this.incomingRatio = incomingRatio;
+        backend.setListener(this);
+    }
+
+    /*
+     * Run `cycles` call cycles, `concurrency` at a time. Returns null if they did not all end
+     * within the timeout.
+     */
+    public Report run(int cycles, int concurrency, long timeoutMillis) throws InterruptedException {
+        totalCycles = cycles;
+        done = new CountDownLatch(cycles);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < Math.min(concurrency, cycles); i++) {
+            backend.execute(new Runnable() {
+                @Override
+                public void run() {
+                    startCycle();
+                }
+            });
+        }
+        if (!done.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            return null;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        // Read the leftovers on the callback thread, after anything it was still running
+        final int[] leaks = new int[3];
+        final CountDownLatch counted = new CountDownLatch(1);
+        backend.execute(new Runnable() {
+            @Override
+            public void run() {
+                leaks[0] = callStateMachine.getSnapshot().getCalls().size();
+                leaks[1] = callTimings.getTrackedCallCount();
+                leaks[2] = backend.getOpenConnectionCount();
+                counted.countDown();
+            }
+        });
+        counted.await();
+        return new Report(cycles, failedCycles.get(), elapsedNanos, leaks[0], leaks[1], leaks[2], callbackMicros);
+    }
+
+    private void startCycle() {
+        int cycle = startedCycles.getAndIncrement();
+        if (cycle >= totalCycles) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        // Same spread as the (cycle * golden ratio) sequence, so the ratio holds at any cycle count
+        double draw = (cycle * 0.6180339887) % 1;
+        if (draw < incomingRatio) {
+            backend.simulateIncoming("caller" + cycle);
+        } else {
+            CallConnection connection = callStateMachine.connect(backend, "client" + cycle, false);
+            callTimings.onConnect(connection, CallTimings.NETWORK_OTHER, startNanos);
+            render();
+        }
+        recordCallback(startNanos);
+    }
+
+    private void endCycle(boolean failed) {
+        if (failed) {
+            failedCycles.incrementAndGet();
+        }
+        done.countDown();
+        startCycle();
+    }
+
+    /*
+     * What the screen would show, built on every change as ClientActivity does
+     */
+    private void render() {
+        CallViewState.from(callStateMachine.getSnapshot(), false);
+    }
+
+    private void recordCallback(long startNanos) {
+        callbackMicros.record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    @Override
+    public void onIncoming(CallConnection connection, String from) {
+        long startNanos = System.nanoTime();
+        callTimings.onIncoming(connection, CallTimings.NETWORK_OTHER, startNanos);
+        callStateMachine.onIncoming(connection, from);
+        callTimings.onRinging(connection);
+        render();
+
+        // Answered right away
+        CallConnection answered = callStateMachine.answer();
+        callTimings.onAccept(answered);
+        render();
+        recordCallback(startNanos);
+    }
+
+    @Override
+    public void onConnecting(CallConnection connection) {
+        long startNanos = System.nanoTime();
+        callTimings.onConnecting(connection);
+        eventLog.record(EventLog.LEVEL_DEBUG, EventLog.EVENT_CONNECTING, System.identityHashCode(connection), 0, 0);
+        recordCallback(startNanos);
+    }
+
+    @Override
+    public void onConnected(CallConnection connection) {
+        long startNanos = System.nanoTime();
+        callStateMachine.onConnected(connection);
+        callTimings.onConnected(connection);
+        eventLog.record(EventLog.LEVEL_DEBUG, EventLog.EVENT_CONNECTED, System.identityHashCode(connection), 0, 0);
+        render();
+
+        // Hung up as soon as it connects
+        callStateMachine.disconnect(connection);
+        render();
+        recordCallback(startNanos);
+    }
+
+    @Override
+    public void onDisconnected(CallConnection connection) {
+        long startNanos = System.nanoTime();
+        onConnectionDisconnected(connection);
+        eventLog.record(EventLog.LEVEL_DEBUG, EventLog.EVENT_DISCONNECTED, System.identityHashCode(connection), 0, 0);
+        recordCallback(startNanos);
+        endCycle(false);
+    }
+
+    @Override
+    public void onDisconnected(CallConnection connection, int errorCode, String error) {
+        long startNanos = System.nanoTime();
+        onConnectionDisconnected(connection);
+        eventLog.record(EventLog.LEVEL_ERROR, EventLog.EVENT_DISCONNECTED, System.identityHashCode(connection), errorCode, 0);
+        recordCallback(startNanos);
+        endCycle(true);
+    }
+
+    private void onConnectionDisconnected(CallConnection connection) {
+        callTimings.onEnded(connection);
+        callStateMachine.onDisconnected(connection);
+        render();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int cycles = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        double incomingRatio = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+        double failureRate = args.length > 3 ? Double.parseDouble(args[3]) : 0.05;
+        long maxLatencyMillis = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+        SimulatedCallBackend backend = new SimulatedCallBackend(42);
+        backend.setLatency(0, maxLatencyMillis);
+        backend.setFailureRate(failureRate);
+        try {
+            Report report = new CallCycleHarness(backend, incomingRatio).run(cycles, concurrency, 10 * 60 * 1000);
+            System.out.println(report != null ? report.toString() : "Timed out");
+        } finally {
+            backend.shutdown();
+        }
+    }
+}
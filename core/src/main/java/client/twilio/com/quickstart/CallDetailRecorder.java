@@ -0,0 +1,110 @@
+package client.twilio.com.quickstart;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * Collects the details of each call while it is live and turns them into a CallRecord when it ends.
+ *
+ * Like CallTimings, calls are tracked by identity, so any object representing a call can be used.
+ * Finished records are appended to a lock-free queue and handed out in batches by drainTo(), so the
+ * threads reporting calls never wait for whoever persists them. Wall clock times are taken once
+ * when a call starts; later events are placed relative to it with System.nanoTime(), so a clock
+ * change during a call does not distort its duration.
+ */
+public class CallDetailRecorder {
+
+    private static class LiveCall {
+        private final int direction;
+        private final String address;
+        private final long startedAtMillis;
+        private final long startedNanos;
+        private long connectedNanos;
+        private int flags;
+
+        private LiveCall(int direction, String address, long startedAtMillis, long startedNanos) {
+            this.direction = direction;
+            this.address = address;
+            this.startedAtMillis = startedAtMillis;
+            this.startedNanos = startedNanos;
+        }
+
+        private long toMillis(long nanos) {
+            return startedAtMillis + (nanos - startedNanos) / 1000000;
+        }
+    }
+
+    private final Map<Object, LiveCall> calls = new IdentityHashMap<Object, LiveCall>();
+    private final Queue<CallRecord> finished = new ConcurrentLinkedQueue<CallRecord>();
+
+    /*
+     * A call was placed or started ringing, at `startedAtMillis` wall clock time and `startedNanos`
+     * in System.nanoTime()
+     */
+    public synchronized void onStarted(Object call, int direction, String address, long startedAtMillis, long startedNanos) {
+        calls.put(call, new LiveCall(direction, address, startedAtMillis, startedNanos));
+    }
+
+    public synchronized void onConnected(Object call, long connectedNanos) {
+        LiveCall liveCall = calls.get(call);
+        if (liveCall != null && liveCall.connectedNanos == 0) {
+            liveCall.connectedNanos = connectedNanos;
+        }
+    }
+
+    /*
+     * A CallRecord feature was used, such as FLAG_MUTED
+     */
+    public synchronized void onFlag(Object call, int flag) {
+        LiveCall liveCall = calls.get(call);
+        if (liveCall != null) {
+            liveCall.flags |= flag;
+        }
+    }
+
+    /*
+     * The call ended at `endedNanos`, with a Twilio error code or 0. Queues and returns its record,
+     * or returns null if the call was not tracked or already ended.
+     */
+    public CallRecord onEnded(Object call, int errorCode, long endedNanos) {
+        LiveCall liveCall;
+        synchronized (this) {
+            liveCall = calls.remove(call);
+        }
+        if (liveCall == null) {
+            return null;
+        }
+        long connectedAtMillis = liveCall.connectedNanos != 0 ? liveCall.toMillis(liveCall.connectedNanos) : 0;
+        CallRecord record = new CallRecord(0, liveCall.direction, liveCall.address, liveCall.startedAtMillis,
+                connectedAtMillis, liveCall.toMillis(endedNanos), errorCode, liveCall.flags);
+        finished.offer(record);
+        return record;
+    }
+
+    /*
+     * Move up to `maxRecords` finished records, oldest first, to `out`. Returns the number moved.
+     */
+    public int drainTo(Collection<CallRecord> out, int maxRecords) {
+        int drained = 0;
+        CallRecord record;
+        while (drained < maxRecords && (record = finished.poll()) != null) {
+            out.add(record);
+            drained++;
+        }
+        return drained;
+    }
+
+    public boolean hasFinishedRecords() {
+        return !finished.isEmpty();
+    }
+
+    /*
+     * Calls started and not ended yet
+     */
+    public synchronized int getLiveCallCount() {
+        return calls.size();
+    }
+}
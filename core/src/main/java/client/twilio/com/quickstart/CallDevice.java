@@ -0,0 +1,15 @@
+package client.twilio.com.quickstart;
+
+import java.util.Map;
+
+/*
+ * The operations the application performs on a registered device. Wraps a Twilio Device on Android.
+ */
+public interface CallDevice {
+    /*
+     * Create an outgoing call with the given parameters, such as "To"
+     */
+    CallConnection connect(Map<String, String> params);
+
+    void updateCapabilityToken(String capabilityToken);
+}
@@ -0,0 +1,252 @@
+package client.twilio.com.quickstart;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Hands Device and Connection callbacks over from the SDK threads to a single event loop, such as
+ * the main thread, and fans each one out to every subscriber there.
+ *
+ * Posting copies the callback's arguments into a preallocated ring of slots, so it allocates
+ * nothing unless a burst outgrows the ring, and never waits on a subscriber. The loop is woken at
+ * most once per burst; it then delivers the events in the order they were posted, each to every
+ * subscriber in the order they subscribed, before moving on to the next. Subscribers can be added
+ * and removed from any thread.
+ */
+public class CallEventDispatcher {
+
+    public static final int EVENT_START_LISTENING = 0;
+    public static final int EVENT_STOP_LISTENING = 1;
+    public static final int EVENT_PRESENCE_CHANGED = 2;
+    public static final int EVENT_CONNECTING = 3;
+    public static final int EVENT_CONNECTED = 4;
+    public static final int EVENT_DISCONNECTED = 5;
+
+    public interface Subscriber {
+        /*
+         * Called on the event loop. The event is only valid for the duration of the call.
+         */
+        void onEvent(Event event);
+    }
+
+    /*
+     * The event being delivered. A single instance is reused for every event.
+     */
+    public static final class Event {
+        private int type;
+        private Object subject;
+        private int errorCode;
+        private String text;
+        private boolean flag;
+        private long postedNanos;
+
+        private Event() {
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        /*
+         * The Device of listening and presence events, the Connection of the others
+         */
+        public Object getSubject() {
+            return subject;
+        }
+
+        /*
+         * True if listening stopped or the connection ended because of an error
+         */
+        public boolean hasError() {
+            return (type == EVENT_STOP_LISTENING || type == EVENT_DISCONNECTED) && flag;
+        }
+
+        public int getErrorCode() {
+            return errorCode;
+        }
+
+        public String getError() {
+            return type != EVENT_PRESENCE_CHANGED ? text : null;
+        }
+
+        /*
+         * The client a presence event is about, and whether it is online
+         */
+        public String getClientName() {
+            return type == EVENT_PRESENCE_CHANGED ? text : null;
+        }
+
+        public boolean isAvailable() {
+            return type == EVENT_PRESENCE_CHANGED && flag;
+        }
+
+        /*
+         * When the SDK reported the event, in System.nanoTime()
+         */
+        public long getPostedNanos() {
+            return postedNanos;
+        }
+    }
+
+    private final Executor loop;
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<Subscriber>();
+    private final Event event = new Event();
+
+    /*
+     * Pending events, a ring of parallel arrays guarded by `this`
+     */
+    private int[] types;
+    private Object[] subjects;
+    private int[] errorCodes;
+    private String[] texts;
+    private boolean[] flags;
+    private long[] postedNanos;
+    private int head;
+    private int size;
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Runnable drainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /*
+     * Deliver events on `loop`, which must run its tasks one at a time on a single thread
+     */
+    public CallEventDispatcher(Executor loop, int initialCapacity) {
+        this.loop = loop;
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    public void subscribe(Subscriber subscriber) {
+        subscribers.addIfAbsent(subscriber);
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public void postStartListening(Object device) {
+        post(EVENT_START_LISTENING, device, 0, null, false);
+    }
+
+    /*
+     * Listening stopped, because of an error if `error` is not null
+     */
+    public void postStopListening(Object device, int errorCode, String error) {
+        post(EVENT_STOP_LISTENING, device, errorCode, error, error != null);
+    }
+
+    public void postPresenceChanged(Object device, String clientName, boolean available) {
+        post(EVENT_PRESENCE_CHANGED, device, 0, clientName, available);
+    }
+
+    public void postConnecting(Object connection) {
+        post(EVENT_CONNECTING, connection, 0, null, false);
+    }
+
+    public void postConnected(Object connection) {
+        post(EVENT_CONNECTED, connection, 0, null, false);
+    }
+
+    /*
+     * The connection ended, because of an error if `error` is not null
+     */
+    public void postDisconnected(Object connection, int errorCode, String error) {
+        post(EVENT_DISCONNECTED, connection, errorCode, error, error != null);
+    }
+
+    /*
+     * Events posted and not delivered yet
+     */
+    public synchronized int getPendingCount() {
+        return size;
+    }
+
+    private void post(int type, Object subject, int errorCode, String text, boolean flag) {
+        long nowNanos = System.nanoTime();
+        synchronized (this) {
+            if (size == types.length) {
+                grow();
+            }
+            int slot = (head + size) % types.length;
+            types[slot] = type;
+            subjects[slot] = subject;
+            errorCodes[slot] = errorCode;
+            texts[slot] = text;
+            flags[slot] = flag;
+            postedNanos[slot] = nowNanos;
+            size++;
+        }
+        if (drainScheduled.compareAndSet(false, true)) {
+            loop.execute(drainRunnable);
+        }
+    }
+
+    /*
+     * Deliver everything pending, including events posted while delivering. Runs on the loop.
+     */
+    private void drain() {
+        // Cleared first: an event posted from here on schedules another pass, at worst an empty one
+        drainScheduled.set(false);
+        for (;;) {
+            synchronized (this) {
+                if (size == 0) {
+                    return;
+                }
+                event.type = types[head];
+                event.subject = subjects[head];
+                event.errorCode = errorCodes[head];
+                event.text = texts[head];
+                event.flag = flags[head];
+                event.postedNanos = postedNanos[head];
+                // Do not keep Connections reachable from the ring once delivered
+                subjects[head] = null;
+                texts[head] = null;
+                head = (head + 1) % types.length;
+                size--;
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.onEvent(event);
+            }
+            event.subject = null;
+            event.text = null;
+        }
+    }
+
+    private void allocate(int capacity) {
+        types = new int[capacity];
+        subjects = new Object[capacity];
+        errorCodes = new int[capacity];
+        texts = new String[capacity];
+        flags = new boolean[capacity];
+        postedNanos = new long[capacity];
+    }
+
+    /*
+     * Double the ring, keeping the pending events in order from slot 0
+     */
+    private void grow() {
+        int[] oldTypes = types;
+        Object[] oldSubjects = subjects;
+        int[] oldErrorCodes = errorCodes;
+        String[] oldTexts = texts;
+        boolean[] oldFlags = flags;
+        long[] oldPostedNanos = postedNanos;
+        int oldCapacity = oldTypes.length;
+        allocate(oldCapacity * 2);
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % oldCapacity;
+            types[i] = oldTypes[slot];
+            subjects[i] = oldSubjects[slot];
+            errorCodes[i] = oldErrorCodes[slot];
+            texts[i] = oldTexts[slot];
+            flags[i] = oldFlags[slot];
+            postedNanos[i] = oldPostedNanos[slot];
+        }
+        head = 0;
+    }
+}
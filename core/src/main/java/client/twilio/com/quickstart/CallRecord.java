@@ -0,0 +1,116 @@
+package client.twilio.com.quickstart;
+
+/*
+ * The details of one finished call, as kept in the call history. Times are wall clock milliseconds.
+ */
+public final class CallRecord {
+
+    public static final int DIRECTION_OUTGOING = 0;
+    public static final int DIRECTION_INCOMING = 1;
+
+    /*
+     * Features used at any point during the call
+     */
+    public static final int FLAG_MUTED = 1;
+    public static final int FLAG_SPEAKER_PHONE = 1 << 1;
+
+    private final long id;
+    private final int direction;
+    private final String address;
+    private final long startedAtMillis;
+    private final long connectedAtMillis;
+    private final long endedAtMillis;
+    private final int errorCode;
+    private final int flags;
+
+    public CallRecord(long id, int direction, String address, long startedAtMillis, long connectedAtMillis,
+                      long endedAtMillis, int errorCode, int flags) {
+        this.id = id;
+        this.direction = direction;
+        this.address = address;
+        this.startedAtMillis = startedAtMillis;
+        this.connectedAtMillis = connectedAtMillis;
+        this.endedAtMillis = endedAtMillis;
+        this.errorCode = errorCode;
+        this.flags = flags;
+    }
+
+    /*
+     * Row id once stored, 0 before
+     */
+    public long getId() {
+        return id;
+    }
+
+    public int getDirection() {
+        return direction;
+    }
+
+    public boolean isIncoming() {
+        return direction == DIRECTION_INCOMING;
+    }
+
+    /*
+     * The contact dialed, or who called. May be null for an incoming call without caller id.
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /*
+     * When the call was placed or started ringing
+     */
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    /*
+     * When the call connected, or 0 if it never did
+     */
+    public long getConnectedAtMillis() {
+        return connectedAtMillis;
+    }
+
+    public long getEndedAtMillis() {
+        return endedAtMillis;
+    }
+
+    public boolean wasConnected() {
+        return connectedAtMillis != 0;
+    }
+
+    /*
+     * Time spent connected, or 0 if the call never connected
+     */
+    public long getDurationMillis() {
+        return wasConnected() ? Math.max(0, endedAtMillis - connectedAtMillis) : 0;
+    }
+
+    /*
+     * Twilio error code the call ended with, or 0 if it ended normally
+     */
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CallRecord{" +
+                "id=" + id +
+                ", direction=" + direction +
+                ", address='" + address + '\'' +
+                ", startedAtMillis=" + startedAtMillis +
+                ", durationMillis=" + getDurationMillis() +
+                ", errorCode=" + errorCode +
+                ", flags=" + flags +
+                '}';
+    }
+}
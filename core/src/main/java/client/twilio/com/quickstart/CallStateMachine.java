@@ -0,0 +1,500 @@
+package client.twilio.com.quickstart;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * The registry of live calls on the Device: calls ringing, being set up, connected, on hold or
+ * being disconnected. Calls are keyed by their CallConnection, so a ConnectionListener callback
+ * finds its call with a single hash lookup.
+ *
+ * The UI thread and the SDK callback threads all drive this machine. Every transition computes a new
+ * immutable Snapshot from the current one and installs it with compareAndSet, retrying if another
+ * thread got there first, so callbacks never block and no update is lost. Side effects on a
+ * CallConnection (accept, reject, disconnect, mute) are only performed by the thread whose transition won.
+ * Mute side effects of transitions won back to back on different threads could reach the SDK in
+ * either order, so each applies the mute state of the latest snapshot under a lock: whatever the
+ * order, the SDK ends up with the mute state of the final snapshot.
+ *
+ * At most one call is active, that is has the microphone. Placing or answering a call puts the
+ * active call on hold, and swap() brings a held call back. The Client SDK has no notion of hold, so a
+ * held call is simply muted; its own mute setting is restored when it becomes active again.
+ */
+public class CallStateMachine {
+
+    public enum State {
+        /* No active call and nothing ringing */
+        IDLE,
+        /* An incoming call is waiting to be answered */
+        RINGING,
+        /* The call was placed or accepted and is being set up */
+        CONNECTING,
+        /* The call is connected */
+        CONNECTED,
+        /* The call was disconnected locally and the SDK has yet to confirm it */
+        DISCONNECTING
+    }
+
+    /*
+     * Which call a disconnect reported by the SDK applied to
+     */
+    public static final int DISCONNECTED_OTHER = 0;
+    public static final int DISCONNECTED_PENDING = 1;
+    public static final int DISCONNECTED_ACTIVE = 2;
+    public static final int DISCONNECTED_LOCAL = 3;
+
+    /*
+     * An immutable view of one call and its audio settings
+     */
+    public static final class Call {
+        private final CallConnection connection;
+        private final String address;
+        private final State state;
+        private final boolean held;
+        private final boolean muted;
+        private final boolean speakerPhone;
+
+        private Call(CallConnection connection, String address, State state, boolean held, boolean muted, boolean speakerPhone) {
+            this.connection = connection;
+            this.address = address;
+            this.state = state;
+            this.held = held;
+            this.muted = muted;
+            this.speakerPhone = speakerPhone;
+        }
+
+        public CallConnection getConnection() {
+            return connection;
+        }
+
+        /*
+         * The remote party, as dialed or as reported by the incoming call
+         */
+        public String getAddress() {
+            return address;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public boolean isHeld() {
+            return held;
+        }
+
+        public boolean isMuted() {
+            return muted;
+        }
+
+        public boolean isSpeakerPhone() {
+            return speakerPhone;
+        }
+
+        /*
+         * True once the call was placed or answered and until it is disconnected locally
+         */
+        public boolean isLive() {
+            return state == State.CONNECTING || state == State.CONNECTED;
+        }
+
+        private Call withState(State state) {
+            return new Call(connection, address, state, held, muted, speakerPhone);
+        }
+
+        private Call withHeld(boolean held) {
+            return new Call(connection, address, state, held, muted, speakerPhone);
+        }
+
+        private Call withMuted(boolean muted) {
+            return new Call(connection, address, state, held, muted, speakerPhone);
+        }
+
+        private Call withSpeakerPhone(boolean speakerPhone) {
+            return new Call(connection, address, state, held, muted, speakerPhone);
+        }
+    }
+
+    /*
+     * An immutable view of the machine. Calls are listed in the order they were placed or received.
+     */
+    public static final class Snapshot {
+        private final Map<CallConnection, Call> calls;
+        private final CallConnection activeConnection;
+        private final CallConnection pendingConnection;
+
+        private Snapshot(Map<CallConnection, Call> calls, CallConnection activeConnection, CallConnection pendingConnection) {
+            this.calls = Collections.unmodifiableMap(calls);
+            this.activeConnection = activeConnection;
+            this.pendingConnection = pendingConnection;
+        }
+
+        /*
+         * The state of the active call, RINGING if only incoming calls are waiting, otherwise IDLE
+         */
+        public State getState() {
+            if (activeConnection != null) {
+                return calls.get(activeConnection).state;
+            }
+            return pendingConnection != null ? State.RINGING : State.IDLE;
+        }
+
+        public Collection<Call> getCalls() {
+            return calls.values();
+        }
+
+        public Call getCall(CallConnection connection) {
+            return calls.get(connection);
+        }
+
+        public Call getActiveCall() {
+            return activeConnection != null ? calls.get(activeConnection) : null;
+        }
+
+        /*
+         * The call with the microphone, if any. It is null while all calls are on hold.
+         */
+        public CallConnection getActiveConnection() {
+            return activeConnection;
+        }
+
+        /*
+         * The most recent incoming call still waiting to be answered
+         */
+        public CallConnection getPendingConnection() {
+            return pendingConnection;
+        }
+
+        /*
+         * True if any call was placed or answered and is not being disconnected
+         */
+        public boolean hasLiveCalls() {
+            for (Call call : calls.values()) {
+                if (call.isLive()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Map<CallConnection, Call> copyCalls() {
+            return new LinkedHashMap<CallConnection, Call>(calls);
+        }
+    }
+
+    private static final Snapshot IDLE = new Snapshot(new HashMap<CallConnection, Call>(), null, null);
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<Snapshot>(IDLE);
+    private final Object muteLock = new Object();
+
+    /*
+     * Tell the SDK whether the microphone of the call is muted, as the latest snapshot has it: muted
+     * by the user or on hold. Serialized so the last call to reach the SDK carries the final state.
+     */
+    private void applyMute(CallConnection connection) {
+        synchronized (muteLock) {
+            Call call = current.get().calls.get(connection);
+            if (call != null && call.isLive()) {
+                call.connection.setMuted(call.held || call.muted);
+            }
+        }
+    }
+
+    public Snapshot getSnapshot() {
+        return current.get();
+    }
+
+    public State getState() {
+        return current.get().getState();
+    }
+
+    public CallConnection getActiveConnection() {
+        return current.get().activeConnection;
+    }
+
+    public CallConnection getPendingConnection() {
+        return current.get().pendingConnection;
+    }
+
+    /*
+     * Put the active call of the snapshot on hold in calls. Returns the connection to mute, if any.
+     */
+    private static CallConnection holdActive(Snapshot snapshot, Map<CallConnection, Call> calls) {
+        Call activeCall = snapshot.getActiveCall();
+        if (activeCall == null || activeCall.state == State.DISCONNECTING) {
+            return null;
+        }
+        calls.put(activeCall.connection, activeCall.withHeld(true));
+        return activeCall.connection;
+    }
+
+    /*
+     * The most recent incoming call still ringing in calls
+     */
+    private static CallConnection latestRinging(Map<CallConnection, Call> calls) {
+        CallConnection ringing = null;
+        for (Call call : calls.values()) {
+            if (call.state == State.RINGING) {
+                ringing = call.connection;
+            }
+        }
+        return ringing;
+    }
+
+    /*
+     * Create an outgoing connection and make it the active call, putting the previously active call
+     * on hold. Returns null without a device.
+     */
+    public CallConnection connect(CallDevice device, String contact, boolean isPhoneNumber) {
+        if (device == null) {
+            return null;
+        }
+        String address = ContactFormatter.toAddress(contact, isPhoneNumber);
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("To", address);
+
+        CallConnection connection = device.connect(params);
+        for (;;) {
+            Snapshot snapshot = current.get();
+            Map<CallConnection, Call> calls = snapshot.copyCalls();
+            CallConnection heldConnection = holdActive(snapshot, calls);
+            // The new call keeps the audio route of the call it takes over from
+            Call activeCall = snapshot.getActiveCall();
+            boolean speakerPhone = activeCall != null && activeCall.speakerPhone;
+            calls.put(connection, new Call(connection, address, State.CONNECTING, false, false, speakerPhone));
+            if (current.compareAndSet(snapshot, new Snapshot(calls, connection, snapshot.pendingConnection))) {
+                if (heldConnection != null) {
+                    applyMute(heldConnection);
+                }
+                return connection;
+            }
+        }
+    }
+
+    /*
+     * An incoming connection was handed to the application. It rings alongside any live calls.
+     */
+    public void onIncoming(CallConnection connection, String address) {
+        for (;;) {
+            Snapshot snapshot = current.get();
+            Map<CallConnection, Call> calls = snapshot.copyCalls();
+            calls.put(connection, new Call(connection, address, State.RINGING, false, false, false));
+            if (current.compareAndSet(snapshot, new Snapshot(calls, snapshot.activeConnection, connection))) {
+                return;
+            }
+        }
+    }
+
+    /*
+     * Accept the pending connection, putting the active call on hold. Returns the newly active
+     * connection, or null if nothing was pending.
+     */
+    public CallConnection answer() {
+        for (;;) {
+            Snapshot snapshot = current.get();
+            CallConnection pendingConnection = snapshot.pendingConnection;
+            if (pendingConnection == null) {
+                return null;
+            }
+            Map<CallConnection, Call> calls = snapshot.copyCalls();
+            CallConnection heldConnection = holdActive(snapshot, calls);
+            Call activeCall = snapshot.getActiveCall();
+            boolean speakerPhone = activeCall != null && activeCall.speakerPhone;
+            calls.put(pendingConnection, calls.get(pendingConnection).withState(State.CONNECTING).withSpeakerPhone(speakerPhone));
+            if (current.compareAndSet(snapshot, new Snapshot(calls, pendingConnection, latestRinging(calls)))) {
+                if (heldConnection != null) {
+                    applyMute(heldConnection);
+                }
+                pendingConnection.accept();
+                return pendingConnection;
+            }
+        }
+    }
+
+    /*
+     * Reject the pending connection. Returns the rejected connection, if any.
+     */
+    public CallConnection reject() {
+        for (;;) {
+            Snapshot snapshot = current.get();
+            CallConnection pendingConnection = snapshot.pendingConnection;
+            if (pendingConnection == null) {
+                return null;
+            }
+            Map<CallConnection, Call> calls = snapshot.copyCalls();
+            calls.remove(pendingConnection);
+            if (current.compareAndSet(snapshot, new Snapshot(calls, snapshot.activeConnection, latestRinging(calls)))) {
+                pendingConnection.reject();
+                return pendingConnection;
+            }
+        }
+    }
+
+    /*
+     * Put the active call on hold, leaving no call active. Returns false if there was no active call.
+     */
+    public boolean hold() {
+        for (;;) {
+            Snapshot snapshot = current.get();
+            Map<CallConnection, Call> calls = snapshot.copyCalls();
+            CallConnection heldConnection = holdActive(snapshot, calls);
+            if (heldConnection == null) {
+                return false;
+            }
+            if (current.compareAndSet(snapshot, new Snapshot(calls, null, snapshot.pendingConnection))) {
+                applyMute(heldConnection);
+                return true;
+            }
+        }
+    }
+
+    /*
+     * Make a held call the active one, putting the active call on hold. Returns the call now
+     * active, or null if the connection is not a held call.
+     */
+    public Call swap(CallConnection connection) {
+        for (;;) {
+            Snapshot snapshot = current.get();
+            Call call = snapshot.calls.get(connection);
+            if (call == null || !call.held || !call.isLive()) {
+                return null;
+            }
+            Map<CallConnection, Call> calls = snapshot.copyCalls();
+            CallConnection heldConnection = holdActive(snapshot, calls);
+            Call resumedCall = call.withHeld(false);
+            calls.put(call.connection, resumedCall);
+            if (current.compareAndSet(snapshot, new Snapshot(calls, call.connection, snapshot.pendingConnection))) {
+                if (heldConnection != null) {
+                    applyMute(heldConnection);
+                }
+                applyMute(call.connection);
+                return resumedCall;
+            }
+        }
+    }
+
+    /*
+     * Disconnect the active call. Returns false if there was nothing to disconnect.
+     */
+    public boolean disconnect() {
+        return disconnect(current.get().activeConnection);
+    }
+
+    /*
+     * Disconnect a call that was placed or answered, whether active or on hold. Returns false if
+     * there was nothing to disconnect.
+     */
+    public boolean disconnect(CallConnection connection) {
+        if (connection == null) {
+            return false;
+        }
+        for (;;) {
+            Snapshot snapshot = current.get();
+            Call call = snapshot.calls.get(connection);
+            if (call == null || !call.isLive()) {
+                return false;
+            }
+            Map<CallConnection, Call> calls = snapshot.copyCalls();
+            calls.put(call.connection, call.withState(State.DISCONNECTING));
+            if (current.compareAndSet(snapshot, new Snapshot(calls, snapshot.activeConnection, snapshot.pendingConnection))) {
+                call.connection.disconnect();
+                return true;
+            }
+        }
+    }
+
+    /*
+     * Mute/unmute the microphone on the active call. Returns false if there was no active call.
+     */
+    public boolean setMuted(boolean muted) {
+        for (;;) {
+            Snapshot snapshot = current.get();
+            Call activeCall = snapshot.getActiveCall();
+            if (activeCall == null) {
+                return false;
+            }
+            Map<CallConnection, Call> calls = snapshot.copyCalls();
+            calls.put(activeCall.connection, activeCall.withMuted(muted));
+            if (current.compareAndSet(snapshot, new Snapshot(calls, snapshot.activeConnection, snapshot.pendingConnection))) {
+                applyMute(activeCall.connection);
+                return true;
+            }
+        }
+    }
+
+    /*
+     * Remember the audio route of the active call, restored when the call is swapped back in.
+     * Returns false if there was no active call.
+     */
+    public boolean setSpeakerPhone(boolean speakerPhone) {
+        for (;;) {
+            Snapshot snapshot = current.get();
+            Call activeCall = snapshot.getActiveCall();
+            if (activeCall == null) {
+                return false;
+            }
+            Map<CallConnection, Call> calls = snapshot.copyCalls();
+            calls.put(activeCall.connection, activeCall.withSpeakerPhone(speakerPhone));
+            if (current.compareAndSet(snapshot, new Snapshot(calls, snapshot.activeConnection, snapshot.pendingConnection))) {
+                return true;
+            }
+        }
+    }
+
+    /*
+     * The SDK reported the connection as connected
+     */
+    public boolean onConnected(CallConnection connection) {
+        if (connection == null) {
+            return false;
+        }
+        for (;;) {
+            Snapshot snapshot = current.get();
+            Call call = snapshot.calls.get(connection);
+            if (call == null || call.state != State.CONNECTING) {
+                return false;
+            }
+            Map<CallConnection, Call> calls = snapshot.copyCalls();
+            calls.put(connection, call.withState(State.CONNECTED));
+            if (current.compareAndSet(snapshot, new Snapshot(calls, snapshot.activeConnection, snapshot.pendingConnection))) {
+                return true;
+            }
+        }
+    }
+
+    /*
+     * A connection was disconnected by the remote side, by an error, or in response to a local
+     * disconnect. The remote participant may have disconnected an incoming call before the local
+     * participant was able to respond. A call on hold that is disconnected remotely is reported
+     * as DISCONNECTED_ACTIVE.
+     */
+    public int onDisconnected(CallConnection connection) {
+        if (connection == null) {
+            return DISCONNECTED_OTHER;
+        }
+        for (;;) {
+            Snapshot snapshot = current.get();
+            Call call = snapshot.calls.get(connection);
+            if (call == null) {
+                return DISCONNECTED_OTHER;
+            }
+            Map<CallConnection, Call> calls = snapshot.copyCalls();
+            calls.remove(connection);
+            CallConnection activeConnection = connection.equals(snapshot.activeConnection) ? null : snapshot.activeConnection;
+            CallConnection pendingConnection = connection.equals(snapshot.pendingConnection) ? latestRinging(calls) : snapshot.pendingConnection;
+            if (current.compareAndSet(snapshot, new Snapshot(calls, activeConnection, pendingConnection))) {
+                switch (call.state) {
+                    case RINGING:
+                        return DISCONNECTED_PENDING;
+                    case DISCONNECTING:
+                        return DISCONNECTED_LOCAL;
+                    default:
+                        return DISCONNECTED_ACTIVE;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package client.twilio.com.quickstart;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/*
+ * Measures call setup latency and keeps it in one LatencyHistogram per network type and metric.
+ *
+ * Outgoing calls are timed from Device.connect() to onConnecting() and from onConnecting() to
+ * onConnected(). Incoming calls are timed from the incoming intent to the ringtone starting, from
+ * the incoming intent to accept() and from accept() to onConnected(). Calls are tracked by identity,
+ * so any object representing a call can be used. The time the Device spent not listening for calls
+ * before an automatic re-registration brought it back, and the time from a keypad press to its DTMF
+ * digit being sent, are kept alongside.
+ */
+public class CallTimings {
+
+    public static final int NETWORK_WIFI = 0;
+    public static final int NETWORK_MOBILE = 1;
+    public static final int NETWORK_OTHER = 2;
+    public static final int NETWORK_COUNT = 3;
+
+    public static final int METRIC_CONNECT_TO_CONNECTING = 0;
+    public static final int METRIC_CONNECTING_TO_CONNECTED = 1;
+    public static final int METRIC_INCOMING_TO_ACCEPT = 2;
+    public static final int METRIC_ACCEPT_TO_CONNECTED = 3;
+    public static final int METRIC_INCOMING_TO_RING = 4;
+    public static final int METRIC_NOT_LISTENING = 5;
+    public static final int METRIC_KEYPRESS_TO_SEND = 6;
+    public static final int METRIC_COUNT = 7;
+
+    private static final String[] NETWORK_NAMES = {"wifi", "mobile", "other"};
+    private static final String[] METRIC_NAMES = {
+            "connect_to_connecting", "connecting_to_connected", "incoming_to_accept", "accept_to_connected", "incoming_to_ring",
+            "not_listening", "keypress_to_send"};
+
+    private static final int FILE_VERSION = 4;
+
+    /*
+     * Timestamps of one call in System.nanoTime()
+     */
+    private static class CallTiming {
+        private final boolean incoming;
+        private final int networkType;
+        private long startedNanos;
+        private long connectingNanos;
+        private long acceptedNanos;
+
+        private CallTiming(boolean incoming, int networkType, long startedNanos) {
+            this.incoming = incoming;
+            this.networkType = networkType;
+            this.startedNanos = startedNanos;
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[NETWORK_COUNT * METRIC_COUNT];
+    private final Map<Object, CallTiming> calls = new IdentityHashMap<Object, CallTiming>();
+
+    public CallTimings() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /*
+     * An outgoing call was requested at `connectNanos`
+     */
+    public synchronized void onConnect(Object call, int networkType, long connectNanos) {
+        calls.put(call, new CallTiming(false, networkType, connectNanos));
+    }
+
+    /*
+     * An incoming call was handed to the application at `receivedNanos`
+     */
+    public synchronized void onIncoming(Object call, int networkType, long receivedNanos) {
+        calls.put(call, new CallTiming(true, networkType, receivedNanos));
+    }
+
+    /*
+     * The incoming call started ringing. Returns the time since the incoming intent in nanoseconds,
+     * or -1 if the call is unknown.
+     */
+    public synchronized long onRinging(Object call) {
+        CallTiming timing = calls.get(call);
+        if (timing == null || !timing.incoming) {
+            return -1;
+        }
+        long nanos = System.nanoTime() - timing.startedNanos;
+        record(timing.networkType, METRIC_INCOMING_TO_RING, nanos);
+        return nanos;
+    }
+
+    public void onConnecting(Object call) {
+        onConnecting(call, System.nanoTime());
+    }
+
+    /*
+     * The outgoing call reported connecting at `connectingNanos`
+     */
+    public synchronized void onConnecting(Object call, long connectingNanos) {
+        CallTiming timing = calls.get(call);
+        if (timing != null && !timing.incoming && timing.connectingNanos == 0) {
+            timing.connectingNanos = connectingNanos;
+            record(timing.networkType, METRIC_CONNECT_TO_CONNECTING, timing.connectingNanos - timing.startedNanos);
+        }
+    }
+
+    public synchronized void onAccept(Object call) {
+        CallTiming timing = calls.get(call);
+        if (timing != null && timing.incoming && timing.acceptedNanos == 0) {
+            timing.acceptedNanos = System.nanoTime();
+            record(timing.networkType, METRIC_INCOMING_TO_ACCEPT, timing.acceptedNanos - timing.startedNanos);
+        }
+    }
+
+    public void onConnected(Object call) {
+        onConnected(call, System.nanoTime());
+    }
+
+    /*
+     * The call reported connected at `connectedNanos`
+     */
+    public synchronized void onConnected(Object call, long connectedNanos) {
+        CallTiming timing = calls.remove(call);
+        if (timing == null) {
+            return;
+        }
+        if (timing.incoming && timing.acceptedNanos != 0) {
+            record(timing.networkType, METRIC_ACCEPT_TO_CONNECTED, connectedNanos - timing.acceptedNanos);
+        } else if (!timing.incoming && timing.connectingNanos != 0) {
+            record(timing.networkType, METRIC_CONNECTING_TO_CONNECTED, connectedNanos - timing.connectingNanos);
+        }
+    }
+
+    /*
+     * The call ended before it connected, or was rejected
+     */
+    public synchronized void onEnded(Object call) {
+        calls.remove(call);
+    }
+
+    /*
+     * The Device listens for incoming calls again after `notListeningNanos` without
+     */
+    public synchronized void onListeningRestored(int networkType, long notListeningNanos) {
+        record(networkType, METRIC_NOT_LISTENING, notListeningNanos);
+    }
+
+    /*
+     * A DTMF digit was sent `keypressToSendNanos` after its key was pressed
+     */
+    public synchronized void onDigitSent(int networkType, long keypressToSendNanos) {
+        record(networkType, METRIC_KEYPRESS_TO_SEND, keypressToSendNanos);
+    }
+
+    /*
+     * Calls being timed, which have neither connected nor ended yet
+     */
+    public synchronized int getTrackedCallCount() {
+        return calls.size();
+    }
+
+    private void record(int networkType, int metric, long nanos) {
+        histograms[networkType * METRIC_COUNT + metric].record(nanos / 1000000);
+    }
+
+    public LatencyHistogram getHistogram(int networkType, int metric) {
+        return histograms[networkType * METRIC_COUNT + metric];
+    }
+
+    public static String getNetworkName(int networkType) {
+        return NETWORK_NAMES[networkType];
+    }
+
+    public static String getMetricName(int metric) {
+        return METRIC_NAMES[metric];
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeInt(histograms.length);
+        for (LatencyHistogram histogram : histograms) {
+            histogram.writeTo(out);
+        }
+    }
+
+    /*
+     * Add previously persisted histograms to the ones recorded by this process
+     */
+    public void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != FILE_VERSION || in.readInt() != histograms.length) {
+            return;
+        }
+        for (LatencyHistogram histogram : histograms) {
+            histogram.readFrom(in);
+        }
+    }
+}
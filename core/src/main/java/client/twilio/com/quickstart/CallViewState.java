@@ -0,0 +1,117 @@
+package client.twilio.com.quickstart;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Everything the call screen shows, as an immutable value. The screen is re-rendered from a new
+ * CallViewState whenever the calls change, and the renderer compares it with the last one it
+ * applied to only touch the views that differ.
+ */
+public final class CallViewState {
+
+    public static final CallViewState IDLE = new CallViewState(false, false, false,
+            Collections.<String>emptyList(), Collections.<CallConnection>emptyList());
+
+    private final boolean inCall;
+    private final boolean muted;
+    private final boolean speakerPhone;
+    private final List<String> callLabels;
+    private final List<CallConnection> callConnections;
+
+    private CallViewState(boolean inCall, boolean muted, boolean speakerPhone,
+                          List<String> callLabels, List<CallConnection> callConnections) {
+        this.inCall = inCall;
+        this.muted = muted;
+        this.speakerPhone = speakerPhone;
+        this.callLabels = callLabels;
+        this.callConnections = callConnections;
+    }
+
+    /*
+     * The view of the calls in the snapshot. `speakerPhone` is the current audio route, used while
+     * every call is on hold.
+     */
+    public static CallViewState from(CallStateMachine.Snapshot snapshot, boolean speakerPhone) {
+        if (!snapshot.hasLiveCalls()) {
+            return IDLE;
+        }
+        List<String> callLabels = new ArrayList<String>();
+        List<CallConnection> callConnections = new ArrayList<CallConnection>();
+        for (CallStateMachine.Call call : snapshot.getCalls()) {
+            // Ringing calls are offered by the incoming call dialog
+            if (call.getState() != CallStateMachine.State.RINGING) {
+                callLabels.add(describe(call));
+                callConnections.add(call.getConnection());
+            }
+        }
+        CallStateMachine.Call activeCall = snapshot.getActiveCall();
+        return new CallViewState(true,
+                activeCall != null && activeCall.isMuted(),
+                activeCall != null ? activeCall.isSpeakerPhone() : speakerPhone,
+                Collections.unmodifiableList(callLabels),
+                Collections.unmodifiableList(callConnections));
+    }
+
+    static String describe(CallStateMachine.Call call) {
+        String address = call.getAddress() != null ? call.getAddress() : "Unknown";
+        if (call.getState() == CallStateMachine.State.DISCONNECTING) {
+            return address + " - Ending";
+        } else if (call.isHeld()) {
+            return address + " - On hold";
+        } else if (call.getState() == CallStateMachine.State.CONNECTING) {
+            return address + " - Connecting";
+        }
+        return address + " - Connected";
+    }
+
+    /*
+     * True while any call was placed or answered and is not being disconnected
+     */
+    public boolean isInCall() {
+        return inCall;
+    }
+
+    public boolean isMuted() {
+        return muted;
+    }
+
+    public boolean isSpeakerPhone() {
+        return speakerPhone;
+    }
+
+    /*
+     * One line per listed call, in the order of getCallConnections()
+     */
+    public List<String> getCallLabels() {
+        return callLabels;
+    }
+
+    public List<CallConnection> getCallConnections() {
+        return callConnections;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CallViewState)) {
+            return false;
+        }
+        CallViewState that = (CallViewState) o;
+        return inCall == that.inCall && muted == that.muted && speakerPhone == that.speakerPhone
+                && callLabels.equals(that.callLabels) && callConnections.equals(that.callConnections);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = inCall ? 1 : 0;
+        result = 31 * result + (muted ? 1 : 0);
+        result = 31 * result + (speakerPhone ? 1 : 0);
+        result = 31 * result + callLabels.hashCode();
+        result = 31 * result + callConnections.hashCode();
+        return result;
+    }
+}
@@ -0,0 +1,161 @@
+package client.twilio.com.quickstart;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Coalesces Capability Token requests so that only one fetch per ClientProfile is in flight.
+ *
+ * Callers asking for a profile that is already being fetched join the in-flight request instead of
+ * issuing a new one. Only the most recently requested profile is delivered; a response for a profile
+ * that has since been superseded is dropped so it can never overwrite the newer registration.
+ * Prefetches share fetches the same way but neither supersede nor get superseded, as they only keep
+ * a token at hand instead of registering it.
+ */
+public class CapabilityTokenCoalescer {
+
+    /*
+     * Performs the actual token request and reports back exactly once
+     */
+    public interface Fetcher {
+        void fetch(ClientProfile clientProfile, Callback callback);
+    }
+
+    public interface Callback {
+        void onToken(ClientProfile clientProfile, String capabilityToken);
+
+        void onError(ClientProfile clientProfile, Exception e);
+    }
+
+    /*
+     * The callers waiting on one fetch, and the generation of the latest request that joined it
+     */
+    private static class InFlightRequest {
+        private final List<Callback> callbacks = new ArrayList<Callback>();
+        private final List<Callback> prefetchCallbacks = new ArrayList<Callback>();
+        private long generation;
+    }
+
+    private final Fetcher fetcher;
+    private final Map<ClientProfile, InFlightRequest> inFlightRequests = new HashMap<ClientProfile, InFlightRequest>();
+
+    private long generation;
+    private int fetchCount;
+    private int deduplicatedCount;
+    private int staleDroppedCount;
+
+    public CapabilityTokenCoalescer(Fetcher fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    /*
+     * Request a token for the profile. The same callback registered twice on one fetch is only notified once.
+     */
+    public void request(ClientProfile clientProfile, Callback callback) {
+        join(clientProfile, callback, false);
+    }
+
+    /*
+     * Request a token for a profile that is not being registered, such as a saved profile kept ready
+     * to switch to. Shares a fetch in flight for the profile, or starts one, without superseding the
+     * latest request; the callback gets the response even if a newer profile was requested meanwhile.
+     */
+    public void prefetch(ClientProfile clientProfile, Callback callback) {
+        join(clientProfile, callback, true);
+    }
+
+    private void join(final ClientProfile clientProfile, Callback callback, boolean prefetch) {
+        boolean startFetch;
+        synchronized (this) {
+            InFlightRequest inFlightRequest = inFlightRequests.get(clientProfile);
+            startFetch = inFlightRequest == null;
+            if (startFetch) {
+                inFlightRequest = new InFlightRequest();
+                inFlightRequests.put(clientProfile, inFlightRequest);
+                fetchCount++;
+            } else {
+                deduplicatedCount++;
+            }
+            List<Callback> callbacks = prefetch ? inFlightRequest.prefetchCallbacks : inFlightRequest.callbacks;
+            if (!callbacks.contains(callback)) {
+                callbacks.add(callback);
+            }
+            if (!prefetch) {
+                inFlightRequest.generation = ++generation;
+            } else if (startFetch) {
+                inFlightRequest.generation = generation;
+            }
+        }
+
+        if (startFetch) {
+            fetcher.fetch(clientProfile, new Callback() {
+                @Override
+                public void onToken(ClientProfile profile, String capabilityToken) {
+                    for (Callback waiting : complete(clientProfile)) {
+                        waiting.onToken(clientProfile, capabilityToken);
+                    }
+                }
+
+                @Override
+                public void onError(ClientProfile profile, Exception e) {
+                    for (Callback waiting : complete(clientProfile)) {
+                        waiting.onError(clientProfile, e);
+                    }
+                }
+            });
+        }
+    }
+
+    /*
+     * Remove the finished fetch and return the callbacks to notify: the prefetches, and the requests
+     * unless the response is stale
+     */
+    private synchronized List<Callback> complete(ClientProfile clientProfile) {
+        InFlightRequest inFlightRequest = inFlightRequests.remove(clientProfile);
+        if (inFlightRequest == null) {
+            return new ArrayList<Callback>();
+        }
+        List<Callback> callbacks = new ArrayList<Callback>(inFlightRequest.prefetchCallbacks);
+        if (inFlightRequest.generation == generation) {
+            callbacks.addAll(0, inFlightRequest.callbacks);
+        } else if (!inFlightRequest.callbacks.isEmpty()) {
+            staleDroppedCount++;
+        }
+        return callbacks;
+    }
+
+    /*
+     * Drop the responses of every fetch in flight, for example once a profile was registered with a
+     * token that was already at hand
+     */
+    public synchronized void supersede() {
+        generation++;
+    }
+
+    public synchronized boolean isInFlight(ClientProfile clientProfile) {
+        return inFlightRequests.containsKey(clientProfile);
+    }
+
+    /*
+     * Number of fetches actually issued
+     */
+    public synchronized int getFetchCount() {
+        return fetchCount;
+    }
+
+    /*
+     * Number of requests that joined a fetch already in flight instead of issuing their own
+     */
+    public synchronized int getDeduplicatedCount() {
+        return deduplicatedCount;
+    }
+
+    /*
+     * Number of responses dropped because a newer profile was requested while they were in flight
+     */
+    public synchronized int getStaleDroppedCount() {
+        return staleDroppedCount;
+    }
+}
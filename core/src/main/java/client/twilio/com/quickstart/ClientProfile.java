@@ -0,0 +1,51 @@
+package client.twilio.com.quickstart;
+
+/*
+ * A representation of the current properties of a client token
+ */
+public class ClientProfile {
+    private String name;
+    private boolean allowOutgoing = true;
+    private boolean allowIncoming = true;
+
+
+    public ClientProfile(String name, boolean allowOutgoing, boolean allowIncoming) {
+        this.name = name;
+        this.allowOutgoing = allowOutgoing;
+        this.allowIncoming = allowIncoming;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isAllowOutgoing() {
+        return allowOutgoing;
+    }
+
+    public boolean isAllowIncoming() {
+        return allowIncoming;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ClientProfile)) {
+            return false;
+        }
+        ClientProfile other = (ClientProfile) o;
+        return allowOutgoing == other.allowOutgoing
+                && allowIncoming == other.allowIncoming
+                && (name == null ? other.name == null : name.equals(other.name));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = name != null ? name.hashCode() : 0;
+        result = 31 * result + (allowOutgoing ? 1 : 0);
+        result = 31 * result + (allowIncoming ? 1 : 0);
+        return result;
+    }
+}
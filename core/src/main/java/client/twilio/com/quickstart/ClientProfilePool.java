@@ -0,0 +1,192 @@
+package client.twilio.com.quickstart;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The saved ClientProfiles a device switches between, each with a Capability Token fetched ahead of
+ * time so that switching is a local token update instead of a round trip to the token service.
+ *
+ * At most `capacity` profiles are kept; using a profile makes it the most recently used, and adding
+ * one to a full pool evicts the least recently used. Tokens are refreshed `refreshMarginMillis`
+ * before they expire, as for the registered profile, and a failed fetch is retried after
+ * `retryDelayMillis`. The pool only decides what is due: fetching is left to the caller, which
+ * reports back with onToken() or onTokenFailed(). Tokens without a known expiry are kept but never
+ * handed out, as the token cache does. Not thread safe.
+ */
+public class ClientProfilePool {
+
+    public static final class Entry {
+        private final ClientProfile clientProfile;
+        private String capabilityToken;
+        private long expiresAtMillis;
+        private boolean refreshing;
+        private long retryAtMillis;
+
+        private Entry(ClientProfile clientProfile) {
+            this.clientProfile = clientProfile;
+        }
+
+        public ClientProfile getClientProfile() {
+            return clientProfile;
+        }
+
+        /*
+         * The last token fetched for the profile, or null if none was yet
+         */
+        public String getCapabilityToken() {
+            return capabilityToken;
+        }
+
+        /*
+         * When the token expires in wall clock milliseconds, or 0 if unknown
+         */
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+
+        public boolean isRefreshing() {
+            return refreshing;
+        }
+    }
+
+    private final int capacity;
+    private final long refreshMarginMillis;
+    private final long retryDelayMillis;
+
+    /*
+     * In least to most recently used order; only use() reorders
+     */
+    private final LinkedHashMap<ClientProfile, Entry> entries;
+
+    public ClientProfilePool(final int capacity, long refreshMarginMillis, long retryDelayMillis) {
+        this.capacity = capacity;
+        this.refreshMarginMillis = refreshMarginMillis;
+        this.retryDelayMillis = retryDelayMillis;
+        entries = new LinkedHashMap<ClientProfile, Entry>(capacity + 1, 1f) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ClientProfile, ClientProfilePool.Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean contains(ClientProfile clientProfile) {
+        return entries.containsKey(clientProfile);
+    }
+
+    /*
+     * Make the profile the most recently used, adding it if needed. Returns its entry.
+     */
+    public Entry use(ClientProfile clientProfile) {
+        Entry entry = entries.remove(clientProfile);
+        if (entry == null) {
+            entry = new Entry(clientProfile);
+        }
+        entries.put(clientProfile, entry);
+        return entry;
+    }
+
+    public boolean remove(ClientProfile clientProfile) {
+        return entries.remove(clientProfile) != null;
+    }
+
+    /*
+     * The token of the profile if it remains valid for at least the refresh margin at `nowMillis`,
+     * otherwise null
+     */
+    public String getValidToken(ClientProfile clientProfile, long nowMillis) {
+        Entry entry = entries.get(clientProfile);
+        if (entry == null || entry.capabilityToken == null || !isValid(entry, nowMillis)) {
+            return null;
+        }
+        return entry.capabilityToken;
+    }
+
+    /*
+     * A token was fetched for the profile. Returns false if the profile was evicted meanwhile.
+     */
+    public boolean onToken(ClientProfile clientProfile, String capabilityToken, long expiresAtMillis) {
+        Entry entry = entries.get(clientProfile);
+        if (entry == null) {
+            return false;
+        }
+        entry.capabilityToken = capabilityToken;
+        entry.expiresAtMillis = expiresAtMillis;
+        entry.refreshing = false;
+        entry.retryAtMillis = 0;
+        return true;
+    }
+
+    public void onTokenFailed(ClientProfile clientProfile, long nowMillis) {
+        Entry entry = entries.get(clientProfile);
+        if (entry != null) {
+            entry.refreshing = false;
+            entry.retryAtMillis = nowMillis + retryDelayMillis;
+        }
+    }
+
+    /*
+     * The profiles other than `excluded` whose token is missing or about to expire at `nowMillis`,
+     * most recently used first. They are marked as refreshing until onToken() or onTokenFailed().
+     */
+    public List<ClientProfile> takeDueRefreshes(long nowMillis, ClientProfile excluded) {
+        List<ClientProfile> due = new ArrayList<ClientProfile>();
+        for (Entry entry : entries.values()) {
+            if (!entry.clientProfile.equals(excluded) && !entry.refreshing && getRefreshAtMillis(entry) <= nowMillis) {
+                entry.refreshing = true;
+                due.add(0, entry.clientProfile);
+            }
+        }
+        return due;
+    }
+
+    /*
+     * When the next token of a profile other than `excluded` falls due, or Long.MAX_VALUE if none will
+     */
+    public long getNextRefreshAtMillis(ClientProfile excluded) {
+        long nextRefreshAtMillis = Long.MAX_VALUE;
+        for (Entry entry : entries.values()) {
+            if (!entry.clientProfile.equals(excluded) && !entry.refreshing) {
+                nextRefreshAtMillis = Math.min(nextRefreshAtMillis, getRefreshAtMillis(entry));
+            }
+        }
+        return nextRefreshAtMillis;
+    }
+
+    /*
+     * The entries, most recently used first
+     */
+    public List<Entry> getEntries() {
+        List<Entry> mostRecentFirst = new ArrayList<Entry>(entries.size());
+        for (Entry entry : entries.values()) {
+            mostRecentFirst.add(0, entry);
+        }
+        return mostRecentFirst;
+    }
+
+    private boolean isValid(Entry entry, long nowMillis) {
+        return entry.expiresAtMillis != 0 && entry.expiresAtMillis - nowMillis > refreshMarginMillis;
+    }
+
+    private long getRefreshAtMillis(Entry entry) {
+        if (entry.capabilityToken == null) {
+            return entry.retryAtMillis;
+        }
+        if (entry.expiresAtMillis == 0) {
+            // Refreshing would not tell when it expires either
+            return Long.MAX_VALUE;
+        }
+        return Math.max(entry.retryAtMillis, entry.expiresAtMillis - refreshMarginMillis);
+    }
+}
@@ -0,0 +1,23 @@
+package client.twilio.com.quickstart;
+
+/*
+ * Builds the "To" parameter of an outgoing call from what was typed in the call dialog
+ */
+public final class ContactFormatter {
+
+    private static final String CLIENT_PREFIX = "client:";
+
+    private ContactFormatter() {
+    }
+
+    /*
+     * Determine if you're calling another client or a phone number. Client names are trimmed and
+     * prefixed with "client:", phone numbers are passed through as typed.
+     */
+    public static String toAddress(String contact, boolean isPhoneNumber) {
+        if (isPhoneNumber) {
+            return contact;
+        }
+        return CLIENT_PREFIX.concat(contact.trim());
+    }
+}
@@ -0,0 +1,281 @@
+package client.twilio.com.quickstart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Prefix index over dialed contacts and address book entries, for suggestions in the call dialog.
+ *
+ * Every suggestion is indexed under a few search keys: the words of its name in lower case, and the
+ * digits of a phone number, with and without the country code of a number in E.164. Keys are kept
+ * in a sorted array, so a search is a binary search for the prefix followed by a bounded scan of
+ * the matching range.
+ *
+ * The index is immutable once published: add() merges a batch into new arrays and swaps them in, so
+ * searches from any thread never lock and always see a complete index. Batches must be added from a
+ * single thread. Memory is bounded by `maxSuggestions`; further suggestions are dropped.
+ */
+public class ContactIndex {
+
+    /*
+     * Keys per suggestion and matching keys examined per search
+     */
+    private static final int MAX_KEYS_PER_SUGGESTION = 4;
+    private static final int MAX_SCAN = 4096;
+
+    public static final class Suggestion {
+        private final String label;
+        private final String contact;
+        private final boolean phoneNumber;
+        private final int dialCount;
+        private final long lastDialedMillis;
+
+        /*
+         * `label` is shown to the user, `contact` is what gets dialed
+         */
+        public Suggestion(String label, String contact, boolean phoneNumber, int dialCount, long lastDialedMillis) {
+            this.label = label;
+            this.contact = contact;
+            this.phoneNumber = phoneNumber;
+            this.dialCount = dialCount;
+            this.lastDialedMillis = lastDialedMillis;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getContact() {
+            return contact;
+        }
+
+        public boolean isPhoneNumber() {
+            return phoneNumber;
+        }
+
+        public int getDialCount() {
+            return dialCount;
+        }
+
+        public long getLastDialedMillis() {
+            return lastDialedMillis;
+        }
+
+        private boolean sameContact(Suggestion other) {
+            if (phoneNumber != other.phoneNumber) {
+                return false;
+            }
+            return phoneNumber ? digitsOf(contact).equals(digitsOf(other.contact)) : contact.equals(other.contact);
+        }
+    }
+
+    /*
+     * Most dialed first, then most recently dialed, then alphabetically
+     */
+    static final Comparator<Suggestion> RANK = new Comparator<Suggestion>() {
+        @Override
+        public int compare(Suggestion a, Suggestion b) {
+            if (a.dialCount != b.dialCount) {
+                return a.dialCount > b.dialCount ? -1 : 1;
+            }
+            if (a.lastDialedMillis != b.lastDialedMillis) {
+                return a.lastDialedMillis > b.lastDialedMillis ? -1 : 1;
+            }
+            return a.label.compareToIgnoreCase(b.label);
+        }
+    };
+
+    /*
+     * Sorted search keys and the suggestion each one belongs to
+     */
+    private static final class Table {
+        private final String[] keys;
+        private final Suggestion[] suggestions;
+        private final int suggestionCount;
+
+        private Table(String[] keys, Suggestion[] suggestions, int suggestionCount) {
+            this.keys = keys;
+            this.suggestions = suggestions;
+            this.suggestionCount = suggestionCount;
+        }
+    }
+
+    private static final class KeyedSuggestion {
+        private final String key;
+        private final Suggestion suggestion;
+
+        private KeyedSuggestion(String key, Suggestion suggestion) {
+            this.key = key;
+            this.suggestion = suggestion;
+        }
+    }
+
+    private static final Comparator<KeyedSuggestion> BY_KEY = new Comparator<KeyedSuggestion>() {
+        @Override
+        public int compare(KeyedSuggestion a, KeyedSuggestion b) {
+            return a.key.compareTo(b.key);
+        }
+    };
+
+    private final int maxSuggestions;
+    private volatile Table table = new Table(new String[0], new Suggestion[0], 0);
+
+    public ContactIndex(int maxSuggestions) {
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    public int size() {
+        return table.suggestionCount;
+    }
+
+    public boolean isFull() {
+        return table.suggestionCount >= maxSuggestions;
+    }
+
+    /*
+     * The search keys of a suggestion: name words, the contact itself, and phone number digits
+     */
+    static List<String> keysOf(Suggestion suggestion) {
+        List<String> keys = new ArrayList<String>(MAX_KEYS_PER_SUGGESTION);
+        for (String word : suggestion.label.toLowerCase(Locale.US).split("[\\s,.\\-()]+")) {
+            addKey(keys, word);
+        }
+        if (suggestion.phoneNumber) {
+            addKey(keys, digitsOf(suggestion.contact));
+            String nationalNumber = ContactNormalizer.nationalNumberOf(suggestion.contact);
+            if (nationalNumber != null) {
+                addKey(keys, nationalNumber);
+            }
+        } else {
+            addKey(keys, suggestion.contact.toLowerCase(Locale.US));
+        }
+        return keys;
+    }
+
+    private static void addKey(List<String> keys, String key) {
+        if (key.length() > 0 && keys.size() < MAX_KEYS_PER_SUGGESTION && !keys.contains(key)) {
+            keys.add(key);
+        }
+    }
+
+    static String digitsOf(String s) {
+        StringBuilder digits = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    /*
+     * What the user typed, in the form of the search keys: the digits of something that looks like a
+     * phone number, otherwise lower case text
+     */
+    static String normalizeQuery(CharSequence query) {
+        String trimmed = query.toString().trim();
+        boolean phoneLike = trimmed.length() > 0;
+        for (int i = 0; i < trimmed.length() && phoneLike; i++) {
+            char c = trimmed.charAt(i);
+            phoneLike = (c >= '0' && c <= '9') || c == '+' || c == ' ' || c == '-' || c == '(' || c == ')' || c == '.';
+        }
+        return phoneLike ? digitsOf(trimmed) : trimmed.toLowerCase(Locale.US);
+    }
+
+    /*
+     * Add a batch of suggestions, merged into a new table which then replaces the current one
+     */
+    public void add(List<Suggestion> batch) {
+        Table current = table;
+        int room = maxSuggestions - current.suggestionCount;
+        if (room <= 0 || batch.isEmpty()) {
+            return;
+        }
+        List<KeyedSuggestion> keyed = new ArrayList<KeyedSuggestion>(batch.size() * 2);
+        int added = 0;
+        for (Suggestion suggestion : batch) {
+            if (added == room) {
+                break;
+            }
+            for (String key : keysOf(suggestion)) {
+                keyed.add(new KeyedSuggestion(key, suggestion));
+            }
+            added++;
+        }
+        Collections.sort(keyed, BY_KEY);
+
+        // Merge the sorted batch with the sorted table
+        int size = current.keys.length + keyed.size();
+        String[] keys = new String[size];
+        Suggestion[] suggestions = new Suggestion[size];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < size; k++) {
+            if (j == keyed.size() || (i < current.keys.length && current.keys[i].compareTo(keyed.get(j).key) <= 0)) {
+                keys[k] = current.keys[i];
+                suggestions[k] = current.suggestions[i];
+                i++;
+            } else {
+                keys[k] = keyed.get(j).key;
+                suggestions[k] = keyed.get(j).suggestion;
+                j++;
+            }
+        }
+        table = new Table(keys, suggestions, current.suggestionCount + added);
+    }
+
+    /*
+     * Up to `limit` suggestions with a key starting with the query, best ranked first. A contact
+     * present more than once, for example dialed and in the address book, is suggested once.
+     */
+    public List<Suggestion> search(CharSequence query, int limit) {
+        String prefix = normalizeQuery(query);
+        if (prefix.length() == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Table current = table;
+        int start = Arrays.binarySearch(current.keys, prefix);
+        if (start < 0) {
+            start = -start - 1;
+        }
+
+        // Keep the best `limit` matches in rank order
+        List<Suggestion> best = new ArrayList<Suggestion>(limit + 1);
+        int end = Math.min(current.keys.length, start + MAX_SCAN);
+        for (int k = start; k < end && current.keys[k].startsWith(prefix); k++) {
+            offer(best, current.suggestions[k], limit);
+        }
+        return best;
+    }
+
+    private static void offer(List<Suggestion> best, Suggestion suggestion, int limit) {
+        for (int i = 0; i < best.size(); i++) {
+            Suggestion other = best.get(i);
+            if (other == suggestion) {
+                return;
+            }
+            if (other.sameContact(suggestion)) {
+                if (RANK.compare(suggestion, other) >= 0) {
+                    return;
+                }
+                best.remove(i);
+                break;
+            }
+        }
+        int position = best.size();
+        while (position > 0 && RANK.compare(suggestion, best.get(position - 1)) < 0) {
+            position--;
+        }
+        if (position < limit) {
+            best.add(position, suggestion);
+            if (best.size() > limit) {
+                best.remove(limit);
+            }
+        }
+    }
+}
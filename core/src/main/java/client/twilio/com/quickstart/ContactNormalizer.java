@@ -0,0 +1,336 @@
+package client.twilio.com.quickstart;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Normalizes what was typed in the call dialog before a call is placed, so a contact that cannot be
+ * reached is rejected locally instead of after a full call setup.
+ *
+ * Phone numbers are turned into E.164, "+" and the country code followed by the national number.
+ * Formatting characters are dropped, an international dialing prefix is replaced with "+", and a
+ * national number gets the trunk prefix of the default region removed and its country code added.
+ * The length of the national number is checked against the region tables below; a country code
+ * missing from the tables only gets the E.164 length check. When the default region is not in the
+ * tables either, a national number cannot be given its country code: its digits are dialed as
+ * typed, with only the character and length checks.
+ *
+ * Client names are trimmed, may be typed with the "client:" prefix, and may only hold the
+ * characters allowed in a client name.
+ *
+ * Results are kept in least recently used caches, one per contact type, so retyping or redialing a
+ * contact costs a map lookup. Thread safe.
+ */
+public class ContactNormalizer {
+
+    public static final int ERROR_NONE = 0;
+    public static final int ERROR_EMPTY = 1;
+    public static final int ERROR_INVALID_CHARACTER = 2;
+    public static final int ERROR_INVALID_LENGTH = 3;
+
+    public static final int MAX_CLIENT_NAME_LENGTH = 121;
+
+    private static final String CLIENT_PREFIX = "client:";
+
+    /*
+     * E.164 allows at most 15 digits, country code included
+     */
+    private static final int MIN_E164_DIGITS = 7;
+    private static final int MAX_E164_DIGITS = 15;
+
+    /*
+     * Shortest number dialed as typed in a region missing from the tables, such as a short code
+     */
+    private static final int MIN_DIALED_DIGITS = 3;
+
+    /*
+     * Region tables, one column per region: ISO 3166 code, country calling code, international
+     * dialing prefix, national trunk prefix, and the shortest and longest national significant number
+     */
+    private static final String[] REGIONS = {
+            "US", "CA", "GB", "IE", "FR", "DE", "NL", "ES", "IT", "SE",
+            "IN", "CN", "JP", "SG", "AU", "NZ", "ZA", "BR", "MX"};
+    private static final int[] COUNTRY_CODES = {
+            1, 1, 44, 353, 33, 49, 31, 34, 39, 46,
+            91, 86, 81, 65, 61, 64, 27, 55, 52};
+    private static final String[] INTERNATIONAL_PREFIXES = {
+            "011", "011", "00", "00", "00", "00", "00", "00", "00", "00",
+            "00", "00", "010", "000", "0011", "00", "00", "00", "00"};
+    private static final String[] TRUNK_PREFIXES = {
+            "1", "1", "0", "0", "0", "0", "0", "", "", "0",
+            "0", "0", "0", "", "0", "0", "0", "0", ""};
+    private static final byte[] MIN_NATIONAL_LENGTHS = {
+            10, 10, 9, 7, 9, 5, 9, 9, 6, 7,
+            10, 9, 9, 8, 9, 8, 9, 10, 10};
+    private static final byte[] MAX_NATIONAL_LENGTHS = {
+            10, 10, 10, 9, 9, 13, 9, 9, 11, 10,
+            10, 11, 10, 8, 9, 10, 9, 11, 10};
+
+    /*
+     * Country calling codes are prefix free and at most three digits: the region of each, or -1.
+     * Where regions share a code, the first one in the tables is kept, as they share its rules.
+     */
+    private static final byte[] REGION_BY_COUNTRY_CODE = new byte[1000];
+
+    static {
+        Arrays.fill(REGION_BY_COUNTRY_CODE, (byte) -1);
+        for (int region = REGIONS.length - 1; region >= 0; region--) {
+            REGION_BY_COUNTRY_CODE[COUNTRY_CODES[region]] = (byte) region;
+        }
+    }
+
+    /*
+     * The outcome of normalizing one contact
+     */
+    public static final class Result {
+        private final String contact;
+        private final boolean phoneNumber;
+        private final int error;
+
+        private Result(String contact, boolean phoneNumber, int error) {
+            this.contact = contact;
+            this.phoneNumber = phoneNumber;
+            this.error = error;
+        }
+
+        public boolean isValid() {
+            return error == ERROR_NONE;
+        }
+
+        /*
+         * One of the ERROR_ constants, ERROR_NONE if the contact can be called
+         */
+        public int getError() {
+            return error;
+        }
+
+        public boolean isPhoneNumber() {
+            return phoneNumber;
+        }
+
+        /*
+         * The phone number in E.164 or the bare client name, or null if the contact is not valid
+         */
+        public String getContact() {
+            return contact;
+        }
+    }
+
+    private final int defaultRegion;
+    private final Map<String, Result> phoneNumbers;
+    private final Map<String, Result> clientNames;
+
+    private int hitCount;
+    private int missCount;
+
+    /*
+     * Read national numbers as numbers of `defaultRegionCode`, an ISO 3166 code such as "US". If the
+     * region is not in the tables, national numbers are dialed as typed.
+     */
+    public ContactNormalizer(String defaultRegionCode, int cacheCapacity) {
+        this.defaultRegion = indexOfRegion(defaultRegionCode);
+        phoneNumbers = newCache(cacheCapacity);
+        clientNames = newCache(cacheCapacity);
+    }
+
+    private static Map<String, Result> newCache(final int capacity) {
+        return new LinkedHashMap<String, Result>(capacity + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /*
+     * True if the tables know the region, ISO 3166 code such as "US"
+     */
+    public static boolean isSupportedRegion(String regionCode) {
+        return indexOfRegion(regionCode) >= 0;
+    }
+
+    private static int indexOfRegion(String regionCode) {
+        for (int region = 0; region < REGIONS.length; region++) {
+            if (REGIONS[region].equalsIgnoreCase(regionCode)) {
+                return region;
+            }
+        }
+        return -1;
+    }
+
+    public Result normalize(String contact, boolean isPhoneNumber) {
+        Map<String, Result> cache = isPhoneNumber ? phoneNumbers : clientNames;
+        synchronized (this) {
+            Result cached = cache.get(contact);
+            if (cached != null) {
+                hitCount++;
+                return cached;
+            }
+            missCount++;
+        }
+        Result result = normalizeUncached(contact, isPhoneNumber);
+        synchronized (this) {
+            cache.put(contact, result);
+        }
+        return result;
+    }
+
+    /*
+     * As normalize(), bypassing the caches: for contacts read in bulk, such as the address book, which
+     * would otherwise evict the ones being dialed
+     */
+    public Result normalizeUncached(String contact, boolean isPhoneNumber) {
+        return isPhoneNumber ? normalizePhoneNumber(contact) : normalizeClientName(contact);
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    private Result normalizePhoneNumber(String contact) {
+        // The digits, without formatting; '+' is only allowed first
+        StringBuilder digits = new StringBuilder(MAX_E164_DIGITS + 1);
+        boolean international = false;
+        for (int i = 0; i < contact.length(); i++) {
+            char c = contact.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c == '+' && digits.length() == 0 && !international) {
+                international = true;
+            } else if (c != ' ' && c != '-' && c != '.' && c != '(' && c != ')' && c != '/') {
+                return new Result(null, true, ERROR_INVALID_CHARACTER);
+            }
+            if (digits.length() > MAX_E164_DIGITS + 4) {
+                // Longer than any number with its longest dialing prefix
+                return new Result(null, true, ERROR_INVALID_LENGTH);
+            }
+        }
+        if (digits.length() == 0) {
+            return new Result(null, true, international ? ERROR_INVALID_LENGTH : ERROR_EMPTY);
+        }
+
+        if (!international && defaultRegion >= 0 && startsWith(digits, INTERNATIONAL_PREFIXES[defaultRegion])) {
+            digits.delete(0, INTERNATIONAL_PREFIXES[defaultRegion].length());
+            international = true;
+        }
+        if (international) {
+            return internationalNumber(digits);
+        }
+        if (defaultRegion < 0) {
+            // Left to the carrier to read, as before numbers were normalized
+            if (digits.length() < MIN_DIALED_DIGITS) {
+                return new Result(null, true, ERROR_INVALID_LENGTH);
+            }
+            return new Result(digits.toString(), true, ERROR_NONE);
+        }
+        return nationalNumber(digits, defaultRegion);
+    }
+
+    /*
+     * `digits` starts with the country code
+     */
+    private static Result internationalNumber(StringBuilder digits) {
+        if (digits.length() < MIN_E164_DIGITS || digits.length() > MAX_E164_DIGITS || digits.charAt(0) == '0') {
+            return new Result(null, true, ERROR_INVALID_LENGTH);
+        }
+        int countryCode = 0;
+        for (int length = 1; length <= 3; length++) {
+            countryCode = countryCode * 10 + (digits.charAt(length - 1) - '0');
+            int region = REGION_BY_COUNTRY_CODE[countryCode];
+            if (region >= 0) {
+                return checkedNumber(digits, length, region);
+            }
+        }
+        return new Result("+" + digits, true, ERROR_NONE);
+    }
+
+    private static Result nationalNumber(StringBuilder digits, int region) {
+        String trunkPrefix = TRUNK_PREFIXES[region];
+        // Only dropped if what is left is long enough, as "0" can also start a number in some regions
+        if (trunkPrefix.length() > 0 && startsWith(digits, trunkPrefix)
+                && digits.length() - trunkPrefix.length() >= MIN_NATIONAL_LENGTHS[region]) {
+            digits.delete(0, trunkPrefix.length());
+        }
+        String countryCode = Integer.toString(COUNTRY_CODES[region]);
+        digits.insert(0, countryCode);
+        return checkedNumber(digits, countryCode.length(), region);
+    }
+
+    /*
+     * `digits` is the country code of `region`, `countryCodeLength` digits long, and the national number
+     */
+    private static Result checkedNumber(StringBuilder digits, int countryCodeLength, int region) {
+        int nationalLength = digits.length() - countryCodeLength;
+        if (nationalLength < MIN_NATIONAL_LENGTHS[region] || nationalLength > MAX_NATIONAL_LENGTHS[region]
+                || digits.length() > MAX_E164_DIGITS) {
+            return new Result(null, true, ERROR_INVALID_LENGTH);
+        }
+        return new Result("+" + digits, true, ERROR_NONE);
+    }
+
+    /*
+     * The digits of a phone number in E.164 after its country code, so it can also be found by the
+     * number as dialed at home, or null if the number is not in E.164 or its country code is not in
+     * the tables
+     */
+    public static String nationalNumberOf(String phoneNumber) {
+        if (!phoneNumber.startsWith("+")) {
+            return null;
+        }
+        int countryCode = 0;
+        for (int length = 1; length <= 3 && length < phoneNumber.length(); length++) {
+            char c = phoneNumber.charAt(length);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            countryCode = countryCode * 10 + (c - '0');
+            if (REGION_BY_COUNTRY_CODE[countryCode] >= 0) {
+                return phoneNumber.substring(length + 1);
+            }
+        }
+        return null;
+    }
+
+    private static Result normalizeClientName(String contact) {
+        String name = contact.trim();
+        if (name.regionMatches(true, 0, CLIENT_PREFIX, 0, CLIENT_PREFIX.length())) {
+            name = name.substring(CLIENT_PREFIX.length()).trim();
+        }
+        if (name.length() == 0) {
+            return new Result(null, false, ERROR_EMPTY);
+        }
+        if (name.length() > MAX_CLIENT_NAME_LENGTH) {
+            return new Result(null, false, ERROR_INVALID_LENGTH);
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!isClientNameCharacter(name.charAt(i))) {
+                return new Result(null, false, ERROR_INVALID_CHARACTER);
+            }
+        }
+        return new Result(name, false, ERROR_NONE);
+    }
+
+    /*
+     * Client names are made of ASCII letters, digits and underscores
+     */
+    public static boolean isClientNameCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean startsWith(StringBuilder digits, String prefix) {
+        if (digits.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (digits.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,168 @@
+package client.twilio.com.quickstart;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The contacts dialed from this device, how often and how recently. Bounded to the most recently
+ * dialed `capacity` contacts. Not thread safe.
+ */
+public class DialHistory {
+
+    private static final int FILE_VERSION = 1;
+
+    public static final class Entry {
+        private final String contact;
+        private final boolean phoneNumber;
+        private final int dialCount;
+        private final long lastDialedMillis;
+
+        public Entry(String contact, boolean phoneNumber, int dialCount, long lastDialedMillis) {
+            this.contact = contact;
+            this.phoneNumber = phoneNumber;
+            this.dialCount = dialCount;
+            this.lastDialedMillis = lastDialedMillis;
+        }
+
+        public String getContact() {
+            return contact;
+        }
+
+        public boolean isPhoneNumber() {
+            return phoneNumber;
+        }
+
+        public int getDialCount() {
+            return dialCount;
+        }
+
+        public long getLastDialedMillis() {
+            return lastDialedMillis;
+        }
+    }
+
+    private final int capacity;
+
+    /*
+     * Entries by key, least recently dialed first
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    public DialHistory(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /*
+     * Phone numbers are keyed on their digits, so differently formatted dials of a number add up
+     */
+    private static String key(String contact, boolean phoneNumber) {
+        return phoneNumber ? "p:" + ContactIndex.digitsOf(contact) : "c:" + contact;
+    }
+
+    /*
+     * Record a dial of the contact at `nowMillis`. Returns the updated entry, or null if the contact is blank.
+     */
+    public Entry record(String contact, boolean phoneNumber, long nowMillis) {
+        String trimmed = contact != null ? contact.trim() : "";
+        if (trimmed.length() == 0) {
+            return null;
+        }
+        String key = key(trimmed, phoneNumber);
+        Entry previous = entries.remove(key);
+        Entry entry = new Entry(trimmed, phoneNumber, previous != null ? previous.dialCount + 1 : 1, nowMillis);
+        entries.put(key, entry);
+        if (entries.size() > capacity) {
+            Iterator<Entry> eldest = entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return entry;
+    }
+
+    /*
+     * The entry of the contact, or null if it was never dialed
+     */
+    public Entry get(String contact, boolean phoneNumber) {
+        return entries.get(key(contact.trim(), phoneNumber));
+    }
+
+    /*
+     * Rewrite phone numbers recorded before dialed numbers were normalized into the form
+     * `contactNormalizer` gives them, merging the entries that turn out to be the same number.
+     * Returns true if any entry changed.
+     */
+    public boolean normalizePhoneNumbers(ContactNormalizer contactNormalizer) {
+        boolean changed = false;
+        // Entries stay least recently dialed first: a merged entry takes the place of the later one
+        LinkedHashMap<String, Entry> normalized = new LinkedHashMap<String, Entry>();
+        for (Entry entry : entries.values()) {
+            if (entry.phoneNumber) {
+                ContactNormalizer.Result result = contactNormalizer.normalizeUncached(entry.contact, true);
+                if (result.isValid() && !result.getContact().equals(entry.contact)) {
+                    entry = new Entry(result.getContact(), true, entry.dialCount, entry.lastDialedMillis);
+                    changed = true;
+                }
+            }
+            String key = key(entry.contact, entry.phoneNumber);
+            Entry previous = normalized.remove(key);
+            if (previous != null) {
+                entry = new Entry(entry.contact, entry.phoneNumber, previous.dialCount + entry.dialCount,
+                        Math.max(previous.lastDialedMillis, entry.lastDialedMillis));
+            }
+            normalized.put(key, entry);
+        }
+        entries.clear();
+        entries.putAll(normalized);
+        return changed;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /*
+     * The entries, least recently dialed first
+     */
+    public List<Entry> getEntries() {
+        return new ArrayList<Entry>(entries.values());
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeInt(entries.size());
+        for (Entry entry : entries.values()) {
+            out.writeUTF(entry.contact);
+            out.writeBoolean(entry.phoneNumber);
+            out.writeInt(entry.dialCount);
+            out.writeLong(entry.lastDialedMillis);
+        }
+    }
+
+    /*
+     * Replace the entries with previously persisted ones
+     */
+    public void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != FILE_VERSION) {
+            return;
+        }
+        int count = in.readInt();
+        Map<String, Entry> loaded = new LinkedHashMap<String, Entry>();
+        for (int i = 0; i < count; i++) {
+            Entry entry = new Entry(in.readUTF(), in.readBoolean(), in.readInt(), in.readLong());
+            loaded.put(key(entry.contact, entry.phoneNumber), entry);
+        }
+        entries.clear();
+        entries.putAll(loaded);
+        while (entries.size() > capacity) {
+            Iterator<Entry> eldest = entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package client.twilio.com.quickstart;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Sends DTMF digits to calls in the order they were typed, off the caller's thread.
+ *
+ * Keys are queued per call with the time of the keypress. A task on the executor drains the queue
+ * of a call, sending each run of consecutive digits with one sendDigits(), so fast typing or a
+ * pasted sequence goes out in order without a round trip per digit. Pause characters hold back the
+ * keys queued behind them for the same call only: ',' for PAUSE_MILLIS and 'w' for
+ * SHORT_PAUSE_MILLIS, as in dialer and Twilio digit strings. A pause typed on one call never delays
+ * digits typed on another that became active meanwhile.
+ */
+public class DtmfSender {
+
+    public static final long PAUSE_MILLIS = 2000;
+    public static final long SHORT_PAUSE_MILLIS = 500;
+
+    public interface Callback {
+        /*
+         * A digit was handed to its call `keypressToSendNanos` after it was typed. Called on the executor.
+         */
+        void onDigitSent(long keypressToSendNanos);
+    }
+
+    private static class Key {
+        private final char key;
+        private final long keypressNanos;
+
+        private Key(char key, long keypressNanos) {
+            this.key = key;
+            this.keypressNanos = keypressNanos;
+        }
+    }
+
+    /*
+     * The keys queued for one call. `keys` and `draining` are guarded by the sender; `draining` is
+     * set while a drain of the call is queued, running or waiting out a pause. The run buffers are
+     * only used by that drain.
+     */
+    private class Queue implements Runnable {
+        private final CallConnection target;
+        private final ArrayDeque<Key> keys = new ArrayDeque<Key>();
+        private boolean draining;
+
+        private final StringBuilder run = new StringBuilder();
+        private long[] runKeypressNanos = new long[16];
+
+        private Queue(CallConnection target) {
+            this.target = target;
+        }
+
+        @Override
+        public void run() {
+            drain(this);
+        }
+    }
+
+    private final ScheduledExecutorService executor;
+    private final Callback callback;
+
+    /*
+     * Guarded by `this`. A queue is removed once drained.
+     */
+    private final Map<CallConnection, Queue> queues = new HashMap<CallConnection, Queue>();
+
+    public DtmfSender(ScheduledExecutorService executor, Callback callback) {
+        this.executor = executor;
+        this.callback = callback;
+    }
+
+    /*
+     * True for the keys of a DTMF keypad
+     */
+    public static boolean isDigit(char key) {
+        return (key >= '0' && key <= '9') || key == '*' || key == '#';
+    }
+
+    public static boolean isPause(char key) {
+        return key == ',' || key == 'w' || key == 'W';
+    }
+
+    /*
+     * Queue a single keypress for `target`. Returns false if the key is neither a digit nor a pause.
+     */
+    public boolean send(CallConnection target, char key) {
+        if (!isDigit(key) && !isPause(key)) {
+            return false;
+        }
+        long nowNanos = System.nanoTime();
+        Queue queue;
+        synchronized (this) {
+            queue = queueOf(target);
+            queue.keys.add(new Key(key, nowNanos));
+        }
+        scheduleDrain(queue);
+        return true;
+    }
+
+    /*
+     * Queue a sequence such as a conference PIN, "1234#,,5678#". Characters other than digits and
+     * pauses, such as spaces and dashes of a pasted number, are skipped. Returns the keys queued.
+     */
+    public int sendSequence(CallConnection target, CharSequence sequence) {
+        long nowNanos = System.nanoTime();
+        int queued = 0;
+        Queue queue;
+        synchronized (this) {
+            queue = queueOf(target);
+            for (int i = 0; i < sequence.length(); i++) {
+                char key = sequence.charAt(i);
+                if (isDigit(key) || isPause(key)) {
+                    queue.keys.add(new Key(key, nowNanos));
+                    queued++;
+                }
+            }
+        }
+        if (queued > 0) {
+            scheduleDrain(queue);
+        }
+        return queued;
+    }
+
+    /*
+     * Drop the keys not sent yet to `target`, for example once it is disconnected or put on hold
+     */
+    public synchronized int cancel(CallConnection target) {
+        Queue queue = queues.get(target);
+        if (queue == null) {
+            return 0;
+        }
+        int cancelled = queue.keys.size();
+        queue.keys.clear();
+        return cancelled;
+    }
+
+    /*
+     * Keys queued and not sent yet, pauses included
+     */
+    public synchronized int getPendingCount() {
+        int pending = 0;
+        for (Queue queue : queues.values()) {
+            pending += queue.keys.size();
+        }
+        return pending;
+    }
+
+    /*
+     * Must be called holding the lock
+     */
+    private Queue queueOf(CallConnection target) {
+        Queue queue = queues.get(target);
+        if (queue == null) {
+            queue = new Queue(target);
+            queues.put(target, queue);
+        }
+        return queue;
+    }
+
+    private void scheduleDrain(Queue queue) {
+        synchronized (this) {
+            if (queue.draining) {
+                return;
+            }
+            queue.draining = true;
+        }
+        executor.execute(queue);
+    }
+
+    private void drain(Queue queue) {
+        StringBuilder run = queue.run;
+        for (;;) {
+            long pauseMillis = 0;
+            run.setLength(0);
+            synchronized (this) {
+                Key head = queue.keys.peek();
+                if (head == null) {
+                    queue.draining = false;
+                    queues.remove(queue.target);
+                    return;
+                }
+                if (isPause(head.key)) {
+                    queue.keys.poll();
+                    pauseMillis = head.key == ',' ? PAUSE_MILLIS : SHORT_PAUSE_MILLIS;
+                } else {
+                    // The run of digits up to the next pause
+                    while (head != null && isDigit(head.key)) {
+                        queue.keys.poll();
+                        if (run.length() == queue.runKeypressNanos.length) {
+                            long[] grown = new long[queue.runKeypressNanos.length * 2];
+                            System.arraycopy(queue.runKeypressNanos, 0, grown, 0, queue.runKeypressNanos.length);
+                            queue.runKeypressNanos = grown;
+                        }
+                        queue.runKeypressNanos[run.length()] = head.keypressNanos;
+                        run.append(head.key);
+                        head = queue.keys.peek();
+                    }
+                }
+            }
+            if (pauseMillis > 0) {
+                // Still draining: keys queued meanwhile for this call wait for the pause to end
+                executor.schedule(queue, pauseMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            queue.target.sendDigits(run.toString());
+            long sentNanos = System.nanoTime();
+            for (int i = 0; i < run.length(); i++) {
+                callback.onDigitSent(sentNanos - queue.runKeypressNanos[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package client.twilio.com.quickstart;
+
+import java.io.IOException;
+
+/*
+ * Structured log of Device and Connection events, cheap enough to leave on in production.
+ *
+ * An event is a fixed-size binary record: a System.nanoTime() timestamp, its level and type, the
+ * identity of the call or device it is about, an error code and one numeric value. record() checks
+ * the level first and then copies those fields into a preallocated ring buffer, overwriting the
+ * oldest record when full, so logging allocates nothing and builds no strings. Records are only
+ * decoded to text by export().
+ */
+public class EventLog {
+
+    /*
+     * Levels, with the values of android.util.Log
+     */
+    public static final int LEVEL_DEBUG = 3;
+    public static final int LEVEL_INFO = 4;
+    public static final int LEVEL_WARN = 5;
+    public static final int LEVEL_ERROR = 6;
+
+    public static final int EVENT_START_LISTENING = 0;
+    public static final int EVENT_STOP_LISTENING = 1;
+    public static final int EVENT_PRESENCE_CHANGED = 2;
+    public static final int EVENT_CONNECTING = 3;
+    public static final int EVENT_CONNECTED = 4;
+    public static final int EVENT_DISCONNECTED = 5;
+    public static final int EVENT_TOKEN_RECEIVED = 6;
+    public static final int EVENT_TOKEN_FAILED = 7;
+    public static final int EVENT_RECOVERY_SCHEDULED = 8;
+    public static final int EVENT_SLOW_RING = 9;
+    public static final int EVENT_PROFILE_SWITCHED = 10;
+    private static final int EVENT_COUNT = 11;
+
+    private static final String[] EVENT_NAMES = {
+            "start_listening", "stop_listening", "presence_changed", "connecting", "connected",
+            "disconnected", "token_received", "token_failed", "recovery_scheduled", "slow_ring",
+            "profile_switched"};
+    private static final char[] LEVEL_NAMES = {'V', 'V', 'V', 'D', 'I', 'W', 'E'};
+
+    /*
+     * Record layout in longs: timestamp, level and event, subject and code, value
+     */
+    private static final int RECORD_LONGS = 4;
+
+    private final int minLevel;
+    private final int capacity;
+    private final long[] records;
+    private long count;
+
+    /*
+     * Keeps the last `capacity` events at `minLevel` or above
+     */
+    public EventLog(int minLevel, int capacity) {
+        this.minLevel = minLevel;
+        this.capacity = capacity;
+        this.records = new long[capacity * RECORD_LONGS];
+    }
+
+    public boolean isLoggable(int level) {
+        return level >= minLevel;
+    }
+
+    /*
+     * Record an event about `subject`, for example System.identityHashCode() of its Connection
+     */
+    public void record(int level, int event, int subject, int code, long value) {
+        if (level < minLevel) {
+            return;
+        }
+        long nowNanos = System.nanoTime();
+        synchronized (this) {
+            int offset = (int) (count % capacity) * RECORD_LONGS;
+            records[offset] = nowNanos;
+            records[offset + 1] = ((long) level << 32) | event;
+            records[offset + 2] = ((long) subject << 32) | (code & 0xFFFFFFFFL);
+            records[offset + 3] = value;
+            count++;
+        }
+    }
+
+    /*
+     * Number of events held, at most the capacity
+     */
+    public synchronized int size() {
+        return (int) Math.min(count, capacity);
+    }
+
+    /*
+     * Number of events recorded since creation, including those overwritten
+     */
+    public synchronized long getRecordedCount() {
+        return count;
+    }
+
+    /*
+     * Decode the events held, oldest first, one line each. Times are relative to the oldest event.
+     */
+    public void export(Appendable out) throws IOException {
+        long[] snapshot;
+        long first;
+        int size;
+        synchronized (this) {
+            snapshot = records.clone();
+            size = (int) Math.min(count, capacity);
+            first = count - size;
+        }
+        long baseNanos = size > 0 ? snapshot[(int) (first % capacity) * RECORD_LONGS] : 0;
+        for (long i = first; i < first + size; i++) {
+            int offset = (int) (i % capacity) * RECORD_LONGS;
+            int level = (int) (snapshot[offset + 1] >>> 32);
+            int event = (int) snapshot[offset + 1];
+            out.append('+').append(String.valueOf((snapshot[offset] - baseNanos) / 1000000)).append("ms ")
+                    .append(level < LEVEL_NAMES.length ? LEVEL_NAMES[level] : '?').append(' ')
+                    .append(getEventName(event))
+                    .append(" subject=").append(Integer.toHexString((int) (snapshot[offset + 2] >>> 32)))
+                    .append(" code=").append(String.valueOf((int) snapshot[offset + 2]))
+                    .append(" value=").append(String.valueOf(snapshot[offset + 3]))
+                    .append('\n');
+        }
+    }
+
+    public static String getEventName(int event) {
+        return event >= 0 && event < EVENT_COUNT ? EVENT_NAMES[event] : "event_" + event;
+    }
+}
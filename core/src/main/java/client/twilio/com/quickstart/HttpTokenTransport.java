@@ -0,0 +1,156 @@
+package client.twilio.com.quickstart;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+
+/*
+ * TokenTransport over HttpURLConnection.
+ *
+ * Requests run one at a time on a single background thread. Every response body is read to the end
+ * and its stream closed rather than the connection disconnected, which hands the socket back to the
+ * platform's keep-alive pool: the next token refresh to the same host reuses the open connection,
+ * and its TLS session, instead of paying a new handshake. Responses are requested gzip compressed,
+ * and the last token is revalidated with its ETag so an unchanged token is not downloaded again.
+ *
+ * Callbacks are invoked on the background thread.
+ */
+public class HttpTokenTransport implements TokenTransport {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 10000;
+
+    private static final int BUFFER_SIZE = 2048;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "HttpTokenTransport");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /*
+     * The last successful response, for conditional requests. Only used on the background thread.
+     */
+    private String cachedUrl;
+    private String cachedETag;
+    private String cachedBody;
+
+    private volatile int requestCount;
+    private volatile int notModifiedCount;
+
+    public HttpTokenTransport() {
+        this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    public HttpTokenTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public void get(final String url, final Callback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String body;
+                try {
+                    body = fetch(url);
+                } catch (IOException e) {
+                    callback.onFailure(e);
+                    return;
+                }
+                callback.onResponse(body);
+            }
+        });
+    }
+
+    private String fetch(String url) throws IOException {
+        requestCount++;
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        int responseCode;
+        try {
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
+            connection.setUseCaches(false);
+            // Set explicitly, so the body is decompressed below rather than by the platform
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            boolean conditional = url.equals(cachedUrl) && cachedETag != null;
+            if (conditional) {
+                connection.setRequestProperty("If-None-Match", cachedETag);
+            }
+
+            responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && conditional) {
+                notModifiedCount++;
+                drain(connection.getInputStream());
+                return cachedBody;
+            }
+            if (responseCode >= 200 && responseCode < 300) {
+                InputStream in = connection.getInputStream();
+                if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                    in = new GZIPInputStream(in);
+                }
+                String body = new String(readFully(in), "UTF-8");
+                String eTag = connection.getHeaderField("ETag");
+                cachedUrl = eTag != null ? url : null;
+                cachedETag = eTag;
+                cachedBody = eTag != null ? body : null;
+                return body;
+            }
+            drain(connection.getErrorStream());
+        } catch (IOException e) {
+            // The connection may be half read, so it must not go back to the pool
+            connection.disconnect();
+            throw e;
+        }
+        throw new IOException("Token service responded " + responseCode);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+     * Read and discard a body so the connection can be reused
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in != null) {
+            readFully(in);
+        }
+    }
+
+    /*
+     * Number of requests sent
+     */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /*
+     * Number of requests answered with the cached token because it was not modified
+     */
+    public int getNotModifiedCount() {
+        return notModifiedCount;
+    }
+}
@@ -0,0 +1,145 @@
+package client.twilio.com.quickstart;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/*
+ * A fixed-size latency histogram in milliseconds with HDR-style log-linear buckets.
+ *
+ * Values below 16ms get a bucket each. Above that every power of two is split into 16 linear
+ * sub-buckets, so any recorded value is reported within ~6% of its true value up to the maximum
+ * trackable value of about two minutes. Recording is a single array increment.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 16;
+
+    public static final long MAX_TRACKABLE_MILLIS = (1L << (MAX_MAGNITUDE + 1)) - 1;
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long maxMillis;
+
+    public synchronized void record(long millis) {
+        if (millis < 0) {
+            return;
+        }
+        counts[bucketIndex(Math.min(millis, MAX_TRACKABLE_MILLIS))]++;
+        totalCount++;
+        maxMillis = Math.max(maxMillis, millis);
+    }
+
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    public synchronized long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /*
+     * The value at the given percentile (0-100), reported as the midpoint of its bucket, or 0 if empty
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return Math.min(bucketMidpoint(i), maxMillis);
+            }
+        }
+        return maxMillis;
+    }
+
+    /*
+     * Add the counts of another histogram to this one
+     */
+    public void add(LatencyHistogram other) {
+        long[] otherCounts;
+        long otherTotal;
+        long otherMax;
+        synchronized (other) {
+            otherCounts = other.counts.clone();
+            otherTotal = other.totalCount;
+            otherMax = other.maxMillis;
+        }
+        synchronized (this) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += otherCounts[i];
+            }
+            totalCount += otherTotal;
+            maxMillis = Math.max(maxMillis, otherMax);
+        }
+    }
+
+    static int bucketIndex(long millis) {
+        if (millis < SUB_BUCKET_COUNT) {
+            return (int) millis;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(millis);
+        int subBucket = (int) (millis >> (magnitude - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + (magnitude - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int magnitude = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS;
+        int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket) << (magnitude - SUB_BUCKET_BITS);
+    }
+
+    private static long bucketMidpoint(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        long lower = bucketLowerBound(index);
+        long width = index + 1 < BUCKET_COUNT ? bucketLowerBound(index + 1) - lower : lower / SUB_BUCKET_COUNT;
+        return lower + width / 2;
+    }
+
+    /*
+     * Only non-empty buckets are written
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        int nonEmpty = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] != 0) {
+                nonEmpty++;
+            }
+        }
+        out.writeLong(maxMillis);
+        out.writeInt(nonEmpty);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] != 0) {
+                out.writeShort(i);
+                out.writeLong(counts[i]);
+            }
+        }
+    }
+
+    /*
+     * Add previously written counts to this histogram
+     */
+    public synchronized void readFrom(DataInput in) throws IOException {
+        maxMillis = Math.max(maxMillis, in.readLong());
+        int nonEmpty = in.readInt();
+        for (int i = 0; i < nonEmpty; i++) {
+            int index = in.readShort();
+            long count = in.readLong();
+            if (index >= 0 && index < BUCKET_COUNT) {
+                counts[index] += count;
+                totalCount += count;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package client.twilio.com.quickstart;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Which clients of the account are online, by client name, as last reported by presence events.
+ *
+ * Each event updates one entry in place; getVersion() changes whenever an update changed anything,
+ * so a reader can tell cheaply whether it needs to refresh. Updated on the main thread, where the
+ * CallEventDispatcher delivers presence events, and readable from any thread without locking.
+ *
+ * A client that never appeared in an event is UNKNOWN rather than offline: presence is only
+ * reported for clients that come online or go offline while the Device is listening.
+ */
+public class PresenceRoster {
+
+    public static final int UNKNOWN = 0;
+    public static final int AVAILABLE = 1;
+    public static final int UNAVAILABLE = 2;
+
+    private final ConcurrentHashMap<String, Boolean> availability = new ConcurrentHashMap<String, Boolean>();
+    private final AtomicLong version = new AtomicLong();
+
+    /*
+     * Apply a presence event. Returns true if the roster changed.
+     */
+    public boolean update(String clientName, boolean available) {
+        if (clientName == null) {
+            return false;
+        }
+        Boolean previous = availability.put(clientName, available);
+        if (previous != null && previous == available) {
+            return false;
+        }
+        version.incrementAndGet();
+        return true;
+    }
+
+    /*
+     * Forget every client, for example when the Device stops listening and events stop arriving.
+     * Returns true if the roster changed.
+     */
+    public boolean clear() {
+        if (availability.isEmpty()) {
+            return false;
+        }
+        availability.clear();
+        version.incrementAndGet();
+        return true;
+    }
+
+    public int getAvailability(String clientName) {
+        Boolean available = clientName != null ? availability.get(clientName.trim()) : null;
+        if (available == null) {
+            return UNKNOWN;
+        }
+        return available ? AVAILABLE : UNAVAILABLE;
+    }
+
+    public int getAvailableCount() {
+        int count = 0;
+        for (Boolean available : availability.values()) {
+            if (available) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+}
@@ -0,0 +1,134 @@
+package client.twilio.com.quickstart;
+
+import java.util.Random;
+
+/*
+ * Decides when and how to re-register a Device that stopped listening for incoming calls.
+ *
+ * Each failure is classified by its Twilio Client error code: an expired or invalid Capability Token
+ * needs a fresh token, a transport or service error is retried with the current one, and an account
+ * error is not retried at all. Retries back off exponentially from BASE_DELAY_MILLIS up to
+ * MAX_DELAY_MILLIS, and each delay is randomized between half and all of its value so that many
+ * devices dropped by the same outage do not all come back at once.
+ *
+ * The time from the first failure to the Device listening again is reported by onRecovered().
+ * Not thread safe.
+ */
+public class RecoveryScheduler {
+
+    public static final int ACTION_NONE = 0;
+    public static final int ACTION_RETRY = 1;
+    public static final int ACTION_REFRESH_TOKEN = 2;
+
+    /*
+     * Pseudo error code of a failed Capability Token request
+     */
+    public static final int ERROR_TOKEN_REQUEST_FAILED = -1;
+
+    static final long BASE_DELAY_MILLIS = 1000;
+    static final long MAX_DELAY_MILLIS = 60000;
+
+    private static final int MAX_DOUBLINGS = 16;
+
+    private final Random random;
+
+    private int attempts;
+    private int pendingAction = ACTION_NONE;
+    private long outageStartedNanos;
+
+    public RecoveryScheduler() {
+        this(new Random());
+    }
+
+    RecoveryScheduler(Random random) {
+        this.random = random;
+    }
+
+    /*
+     * What it takes to recover from a Twilio Client error
+     */
+    public static int classify(int errorCode) {
+        switch (errorCode) {
+            case ERROR_TOKEN_REQUEST_FAILED:
+            case 31202: // JWT signature validation failed
+            case 31204: // JWT token is invalid
+            case 31205: // JWT token expired
+            case 31207: // JWT token expiration too long
+                return ACTION_REFRESH_TOKEN;
+            case 31203: // No valid account
+                return ACTION_NONE;
+            default:
+                // Connection, transport, rate limiting and unknown errors are worth another attempt
+                return ACTION_RETRY;
+        }
+    }
+
+    /*
+     * Record a failure at `nowNanos`. Returns how long to wait before the next attempt, or -1 if the
+     * error cannot be recovered from automatically.
+     */
+    public long onFailure(int errorCode, long nowNanos) {
+        int action = classify(errorCode);
+        if (action == ACTION_NONE) {
+            pendingAction = ACTION_NONE;
+            return -1;
+        }
+        if (attempts == 0) {
+            outageStartedNanos = nowNanos;
+        }
+        attempts++;
+        // A token refresh asked for earlier is still needed even if a later error is transient
+        if (pendingAction != ACTION_REFRESH_TOKEN) {
+            pendingAction = action;
+        }
+        return nextDelayMillis(attempts);
+    }
+
+    long nextDelayMillis(int attempt) {
+        long delayMillis = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt - 1, MAX_DOUBLINGS));
+        long halfMillis = delayMillis / 2;
+        return halfMillis + (long) (random.nextDouble() * (delayMillis - halfMillis));
+    }
+
+    /*
+     * The action the next attempt must take. Clears it, so the attempt after that only retries again
+     * unless it fails with a token error.
+     */
+    public int takePendingAction() {
+        int action = pendingAction;
+        pendingAction = ACTION_NONE;
+        return action;
+    }
+
+    /*
+     * Number of failures since the Device last listened
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public boolean isRecovering() {
+        return attempts > 0;
+    }
+
+    /*
+     * Forget the failures recorded without measuring an outage, as the Device never stopped listening
+     */
+    public void reset() {
+        attempts = 0;
+        pendingAction = ACTION_NONE;
+    }
+
+    /*
+     * The Device listens again at `nowNanos`. Returns how long it was not listening, or -1 if it was
+     * not recovering.
+     */
+    public long onRecovered(long nowNanos) {
+        if (attempts == 0) {
+            return -1;
+        }
+        attempts = 0;
+        pendingAction = ACTION_NONE;
+        return nowNanos - outageStartedNanos;
+    }
+}
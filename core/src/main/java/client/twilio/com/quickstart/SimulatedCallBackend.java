@@ -0,0 +1,233 @@
+package client.twilio.com.quickstart;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * A stand-in for the Twilio service that runs on a plain JVM, for exercising the call flow without
+ * a network.
+ *
+ * Connections follow the lifecycle of Twilio Connections: an outgoing connection reports connecting
+ * and then connected, an accepted incoming connection reports connected, and a disconnect reports
+ * disconnected. Each step takes a random latency between the configured bounds, and a connection
+ * being set up fails with probability `failureRate`, reporting disconnected with FAILURE_ERROR_CODE
+ * instead. Like the SDK, every callback is delivered on a single background thread, which also runs
+ * anything passed to execute().
+ */
+public class SimulatedCallBackend implements CallDevice {
+
+    /*
+     * Reported for injected failures, as for a Twilio connection error
+     */
+    public static final int FAILURE_ERROR_CODE = 31005;
+
+    /*
+     * The callbacks of ConnectionListener, and the incoming connection the Device hands over
+     */
+    public interface Listener {
+        void onIncoming(CallConnection connection, String from);
+
+        void onConnecting(CallConnection connection);
+
+        void onConnected(CallConnection connection);
+
+        void onDisconnected(CallConnection connection);
+
+        void onDisconnected(CallConnection connection, int errorCode, String error);
+    }
+
+    private class SimulatedConnection implements CallConnection {
+        private final String address;
+        private volatile boolean ended;
+
+        private SimulatedConnection(String address) {
+            this.address = address;
+        }
+
+        @Override
+        public void accept() {
+            scheduleSetup(this, false);
+        }
+
+        @Override
+        public void reject() {
+            end(this);
+        }
+
+        @Override
+        public void disconnect() {
+            schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (end(SimulatedConnection.this)) {
+                        listener.onDisconnected(SimulatedConnection.this);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void setMuted(boolean muted) {
+            // There is no audio to mute
+        }
+
+        @Override
+        public void sendDigits(String digits) {
+            // Nor anyone to hear tones
+        }
+
+        @Override
+        public String toString() {
+            return "SimulatedConnection(" + address + ")";
+        }
+    }
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SimulatedCallBackend");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Random random;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger createdConnections = new AtomicInteger();
+
+    private volatile Listener listener;
+    private volatile long minLatencyMillis;
+    private volatile long maxLatencyMillis;
+    private volatile double failureRate;
+
+    public SimulatedCallBackend(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /*
+     * Delay of each step of a connection, picked uniformly between the bounds
+     */
+    public void setLatency(long minLatencyMillis, long maxLatencyMillis) {
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = Math.max(minLatencyMillis, maxLatencyMillis);
+    }
+
+    /*
+     * Probability in [0, 1] that setting up a connection fails
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /*
+     * Run on the callback thread
+     */
+    public void execute(Runnable runnable) {
+        executor.execute(runnable);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public CallConnection connect(Map<String, String> params) {
+        final SimulatedConnection connection = open(params.get("To"));
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!connection.ended) {
+                    listener.onConnecting(connection);
+                    scheduleSetup(connection, true);
+                }
+            }
+        });
+        return connection;
+    }
+
+    @Override
+    public void updateCapabilityToken(String capabilityToken) {
+    }
+
+    /*
+     * Hand an incoming connection from `from` to the listener
+     */
+    public void simulateIncoming(final String from) {
+        final SimulatedConnection connection = open(from);
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                listener.onIncoming(connection, from);
+            }
+        });
+    }
+
+    /*
+     * Connections created and not disconnected or rejected yet
+     */
+    public int getOpenConnectionCount() {
+        return openConnections.get();
+    }
+
+    public int getCreatedConnectionCount() {
+        return createdConnections.get();
+    }
+
+    private SimulatedConnection open(String address) {
+        createdConnections.incrementAndGet();
+        openConnections.incrementAndGet();
+        return new SimulatedConnection(address);
+    }
+
+    /*
+     * Mark the connection as ended. Returns false if it already was.
+     */
+    private boolean end(SimulatedConnection connection) {
+        synchronized (connection) {
+            if (connection.ended) {
+                return false;
+            }
+            connection.ended = true;
+        }
+        openConnections.decrementAndGet();
+        return true;
+    }
+
+    private void scheduleSetup(final SimulatedConnection connection, final boolean outgoing) {
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (connection.ended) {
+                    return;
+                }
+                if (random.nextDouble() < failureRate) {
+                    end(connection);
+                    listener.onDisconnected(connection, FAILURE_ERROR_CODE,
+                            outgoing ? "Simulated connect failure" : "Simulated accept failure");
+                } else {
+                    listener.onConnected(connection);
+                }
+            }
+        });
+    }
+
+    private void schedule(Runnable runnable) {
+        long latencyMillis = minLatencyMillis;
+        if (maxLatencyMillis > minLatencyMillis) {
+            latencyMillis += (long) (random.nextDouble() * (maxLatencyMillis - minLatencyMillis));
+        }
+        if (latencyMillis == 0) {
+            executor.execute(runnable);
+        } else {
+            executor.schedule(runnable, latencyMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
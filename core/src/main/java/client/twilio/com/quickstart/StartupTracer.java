@@ -0,0 +1,219 @@
+package client.twilio.com.quickstart;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * Traces the startup critical path from ClientActivity.onCreate() to DeviceListener.onStartListening().
+ *
+ * Each stage boundary is recorded once per process with mark(), which only stores a monotonic
+ * System.nanoTime() timestamp into a preallocated array. Marks come from the main thread and the
+ * launch is completed from the SDK thread, so all state is guarded by the tracer's lock; it is never
+ * contended for longer than a few array accesses. Once the Device is listening, the span
+ * durations of the launch are copied into a bounded ring buffer of past launches, from which
+ * p50/p95/p99 summaries are computed.
+ */
+public class StartupTracer {
+
+    /*
+     * Stage boundaries. The permission prompt, SDK initialization and the token request overlap;
+     * device creation starts once both of the latter are done.
+     */
+    public static final int MARK_LAUNCH = 0;
+    public static final int MARK_PERMISSION_GRANTED = 1;
+    public static final int MARK_SDK_INIT_STARTED = 2;
+    public static final int MARK_SDK_INITIALIZED = 3;
+    public static final int MARK_TOKEN_REQUESTED = 4;
+    public static final int MARK_TOKEN_RECEIVED = 5;
+    public static final int MARK_CREATING_DEVICE = 6;
+    public static final int MARK_DEVICE_CREATED = 7;
+    public static final int MARK_LISTENING = 8;
+    private static final int MARK_COUNT = 9;
+
+    /*
+     * Spans between stage boundaries. A span is missing from a launch if one of its marks was
+     * never reached, for example the token request when a cached Capability Token was used.
+     */
+    public static final int SPAN_PERMISSION = 0;
+    public static final int SPAN_SDK_INIT = 1;
+    public static final int SPAN_TOKEN_FETCH = 2;
+    public static final int SPAN_CREATE_DEVICE = 3;
+    public static final int SPAN_LISTENING = 4;
+    public static final int SPAN_TOTAL = 5;
+    public static final int SPAN_COUNT = 6;
+
+    private static final int[] SPAN_START = {
+            MARK_LAUNCH, MARK_SDK_INIT_STARTED, MARK_TOKEN_REQUESTED, MARK_CREATING_DEVICE, MARK_DEVICE_CREATED, MARK_LAUNCH};
+    private static final int[] SPAN_END = {
+            MARK_PERMISSION_GRANTED, MARK_SDK_INITIALIZED, MARK_TOKEN_RECEIVED, MARK_DEVICE_CREATED, MARK_LISTENING, MARK_LISTENING};
+    private static final String[] SPAN_NAMES = {
+            "permission", "sdk_init", "token_fetch", "create_device", "listening", "total"};
+
+    private static final long MISSING = -1L;
+    private static final int FILE_VERSION = 1;
+
+    private static StartupTracer instance;
+
+    private final long[] marks = new long[MARK_COUNT];
+    private boolean complete;
+
+    /*
+     * Ring buffer of past launches: SPAN_COUNT durations in nanoseconds per launch, plus the build it ran on
+     */
+    private final int capacity;
+    private final long[] spans;
+    private final int[] versionCodes;
+    private int head;
+    private int size;
+
+    public static synchronized StartupTracer getInstance() {
+        if (instance == null) {
+            instance = new StartupTracer(64);
+        }
+        return instance;
+    }
+
+    public StartupTracer(int capacity) {
+        this.capacity = capacity;
+        this.spans = new long[capacity * SPAN_COUNT];
+        this.versionCodes = new int[capacity];
+    }
+
+    /*
+     * Record a stage boundary of the current launch. Only the first occurrence of each mark counts, and
+     * marks after the launch completed are ignored, so re-registration and recreated activities do not
+     * distort the trace.
+     */
+    public synchronized void mark(int mark) {
+        if (!complete && marks[mark] == 0) {
+            marks[mark] = System.nanoTime();
+        }
+    }
+
+    /*
+     * Mark the end of the critical path and copy the launch into the ring buffer. Returns false if the
+     * launch was already completed.
+     */
+    public synchronized boolean completeLaunch(int versionCode) {
+        if (complete) {
+            return false;
+        }
+        mark(MARK_LISTENING);
+        complete = true;
+        int offset = head * SPAN_COUNT;
+        for (int span = 0; span < SPAN_COUNT; span++) {
+            spans[offset + span] = getCurrentSpanNanos(span);
+        }
+        versionCodes[head] = versionCode;
+        advance();
+        return true;
+    }
+
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /*
+     * Duration of a span of the current launch in nanoseconds, or -1 if it was not reached
+     */
+    public synchronized long getCurrentSpanNanos(int span) {
+        long start = marks[SPAN_START[span]];
+        long end = marks[SPAN_END[span]];
+        if (start == 0 || end == 0 || end < start) {
+            return MISSING;
+        }
+        return end - start;
+    }
+
+    public static String getSpanName(int span) {
+        return SPAN_NAMES[span];
+    }
+
+    public synchronized int getLaunchCount() {
+        return size;
+    }
+
+    /*
+     * p50, p95 and p99 of a span in nanoseconds over the recorded launches of a build, or over all
+     * launches if versionCode is 0. Returns null if the span was never recorded.
+     */
+    public synchronized long[] summarize(int span, int versionCode) {
+        long[] values = new long[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int slot = (head - size + i + capacity) % capacity;
+            long value = spans[slot * SPAN_COUNT + span];
+            if (value != MISSING && (versionCode == 0 || versionCodes[slot] == versionCode)) {
+                values[count++] = value;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        Arrays.sort(values, 0, count);
+        return new long[]{percentile(values, count, 50), percentile(values, count, 95), percentile(values, count, 99)};
+    }
+
+    /*
+     * Nearest-rank percentile of the first `count` sorted values
+     */
+    private static long percentile(long[] sorted, int count, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private void advance() {
+        head = (head + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+    }
+
+    /*
+     * Persist the recorded launches, oldest first
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            int slot = (head - size + i + capacity) % capacity;
+            out.writeInt(versionCodes[slot]);
+            for (int span = 0; span < SPAN_COUNT; span++) {
+                out.writeLong(spans[slot * SPAN_COUNT + span]);
+            }
+        }
+    }
+
+    /*
+     * Load previously persisted launches in front of any launch recorded by this process
+     */
+    public synchronized void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != FILE_VERSION) {
+            return;
+        }
+        int count = in.readInt();
+        long[] current = null;
+        int currentVersionCode = 0;
+        if (size > 0) {
+            int slot = (head - 1 + capacity) % capacity;
+            current = Arrays.copyOfRange(spans, slot * SPAN_COUNT, slot * SPAN_COUNT + SPAN_COUNT);
+            currentVersionCode = versionCodes[slot];
+        }
+        head = 0;
+        size = 0;
+        for (int i = 0; i < count; i++) {
+            versionCodes[head] = in.readInt();
+            for (int span = 0; span < SPAN_COUNT; span++) {
+                spans[head * SPAN_COUNT + span] = in.readLong();
+            }
+            advance();
+        }
+        if (current != null) {
+            System.arraycopy(current, 0, spans, head * SPAN_COUNT, SPAN_COUNT);
+            versionCodes[head] = currentVersionCode;
+            advance();
+        }
+    }
+}
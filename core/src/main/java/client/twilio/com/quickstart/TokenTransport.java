@@ -0,0 +1,16 @@
+package client.twilio.com.quickstart;
+
+/*
+ * Fetches a Capability Token from the token service. The callback is invoked exactly once, on a
+ * thread chosen by the transport; callers that need a particular thread must hop to it themselves.
+ */
+public interface TokenTransport {
+
+    interface Callback {
+        void onResponse(String body);
+
+        void onFailure(Exception e);
+    }
+
+    void get(String url, Callback callback);
+}
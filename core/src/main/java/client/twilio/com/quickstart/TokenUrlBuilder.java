@@ -0,0 +1,79 @@
+package client.twilio.com.quickstart;
+
+/*
+ * Correlates the desired properties of the Device (from ClientProfile) to the query parameters
+ * of the Capability Token request.
+ *
+ * Parameters are percent-encoded the same way as android.net.Uri.Builder.appendQueryParameter(),
+ * leaving only RFC 3986 unreserved characters as they are.
+ */
+public final class TokenUrlBuilder {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private TokenUrlBuilder() {
+    }
+
+    public static String build(String tokenServiceUrl, ClientProfile clientProfile) {
+        StringBuilder url = new StringBuilder(tokenServiceUrl.length() + 64);
+        url.append(tokenServiceUrl);
+        boolean hasQuery = tokenServiceUrl.indexOf('?') >= 0;
+        if (clientProfile.isAllowOutgoing()) {
+            hasQuery = appendQueryParameter(url, hasQuery, "allowOutgoing", "true");
+        }
+        if (clientProfile.isAllowIncoming() && clientProfile.getName() != null) {
+            appendQueryParameter(url, hasQuery, "client", clientProfile.getName());
+        }
+        return url.toString();
+    }
+
+    private static boolean appendQueryParameter(StringBuilder url, boolean hasQuery, String key, String value) {
+        url.append(hasQuery ? '&' : '?');
+        encode(url, key);
+        url.append('=');
+        encode(url, value);
+        return true;
+    }
+
+    static void encode(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(out, c);
+            } else {
+                int codePoint = value.codePointAt(i);
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    i++;
+                }
+                appendUtf8(out, codePoint);
+            }
+        }
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '_' || c == '.' || c == '~';
+    }
+
+    private static void appendUtf8(StringBuilder out, int codePoint) {
+        if (codePoint < 0x800) {
+            appendEscaped(out, 0xC0 | (codePoint >> 6));
+            appendEscaped(out, 0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            appendEscaped(out, 0xE0 | (codePoint >> 12));
+            appendEscaped(out, 0x80 | ((codePoint >> 6) & 0x3F));
+            appendEscaped(out, 0x80 | (codePoint & 0x3F));
+        } else {
+            appendEscaped(out, 0xF0 | (codePoint >> 18));
+            appendEscaped(out, 0x80 | ((codePoint >> 12) & 0x3F));
+            appendEscaped(out, 0x80 | ((codePoint >> 6) & 0x3F));
+            appendEscaped(out, 0x80 | (codePoint & 0x3F));
+        }
+    }
+
+    private static void appendEscaped(StringBuilder out, int b) {
+        out.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+    }
+}
@@ -0,0 +1,44 @@
+package client.twilio.com.quickstart;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CallCycleHarnessTest {
+
+    private final SimulatedCallBackend backend = new SimulatedCallBackend(7);
+
+    @After
+    public void tearDown() {
+        backend.shutdown();
+    }
+
+    @Test
+    public void runsEveryCycleWithoutLeaking() throws InterruptedException {
+        CallCycleHarness.Report report = new CallCycleHarness(backend, 0.5).run(2000, 1, 30000);
+
+        assertNotNull(report);
+        assertEquals(2000, report.getCycles());
+        assertEquals(0, report.getFailedCycles());
+        assertEquals(2000, backend.getCreatedConnectionCount());
+        assertEquals(0, report.getLeakedCalls());
+        assertEquals(0, report.getLeakedTimings());
+        assertEquals(0, report.getLeakedConnections());
+        assertTrue(report.getCallbackMicros().getTotalCount() > 2000);
+    }
+
+    @Test
+    public void cleansUpFailedAndOverlappingCalls() throws InterruptedException {
+        backend.setLatency(0, 2);
+        backend.setFailureRate(0.2);
+        CallCycleHarness.Report report = new CallCycleHarness(backend, 0.3).run(1000, 8, 30000);
+
+        assertNotNull(report);
+        assertTrue(report.getFailedCycles() > 0);
+        assertTrue(report.getFailedCycles() < 1000);
+        assertEquals(0, report.getLeakedCalls());
+        assertEquals(0, report.getLeakedTimings());
+        assertEquals(0, report.getLeakedConnections());
+    }
+}
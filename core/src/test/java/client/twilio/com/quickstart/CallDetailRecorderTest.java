@@ -0,0 +1,97 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CallDetailRecorderTest {
+
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    public void recordsConnectedCall() {
+        CallDetailRecorder recorder = new CallDetailRecorder();
+        Object call = new Object();
+        recorder.onStarted(call, CallRecord.DIRECTION_OUTGOING, "alice", 1000000, 5000 * MILLIS);
+        recorder.onConnected(call, 5300 * MILLIS);
+        recorder.onFlag(call, CallRecord.FLAG_MUTED);
+        recorder.onFlag(call, CallRecord.FLAG_MUTED);
+        CallRecord record = recorder.onEnded(call, 0, 65300 * MILLIS);
+
+        assertNotNull(record);
+        assertFalse(record.isIncoming());
+        assertEquals("alice", record.getAddress());
+        assertEquals(1000000, record.getStartedAtMillis());
+        assertEquals(1000300, record.getConnectedAtMillis());
+        assertEquals(1060300, record.getEndedAtMillis());
+        assertEquals(60000, record.getDurationMillis());
+        assertTrue(record.hasFlag(CallRecord.FLAG_MUTED));
+        assertFalse(record.hasFlag(CallRecord.FLAG_SPEAKER_PHONE));
+        assertEquals(0, recorder.getLiveCallCount());
+    }
+
+    @Test
+    public void recordsFailedCallOnce() {
+        CallDetailRecorder recorder = new CallDetailRecorder();
+        Object call = new Object();
+        recorder.onStarted(call, CallRecord.DIRECTION_INCOMING, null, 1000, 0);
+        CallRecord record = recorder.onEnded(call, 31005, 2000 * MILLIS);
+
+        assertTrue(record.isIncoming());
+        assertFalse(record.wasConnected());
+        assertEquals(0, record.getDurationMillis());
+        assertEquals(31005, record.getErrorCode());
+        // A disconnect reported after the call was already recorded as ended
+        assertNull(recorder.onEnded(call, 0, 3000 * MILLIS));
+        assertNull(recorder.onEnded(new Object(), 0, 3000 * MILLIS));
+    }
+
+    @Test
+    public void drainsInBatchesOldestFirst() {
+        CallDetailRecorder recorder = new CallDetailRecorder();
+        for (int i = 0; i < 5; i++) {
+            Object call = new Object();
+            recorder.onStarted(call, CallRecord.DIRECTION_OUTGOING, "client" + i, i, 0);
+            recorder.onEnded(call, 0, MILLIS);
+        }
+
+        List<CallRecord> batch = new ArrayList<CallRecord>();
+        assertEquals(3, recorder.drainTo(batch, 3));
+        assertEquals("client0", batch.get(0).getAddress());
+        assertEquals(2, recorder.drainTo(batch, 3));
+        assertEquals("client4", batch.get(4).getAddress());
+        assertFalse(recorder.hasFinishedRecords());
+        assertEquals(0, recorder.drainTo(batch, 3));
+    }
+
+    @Test
+    public void recordsFromConcurrentThreads() throws InterruptedException {
+        final CallDetailRecorder recorder = new CallDetailRecorder();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        Object call = new Object();
+                        recorder.onStarted(call, CallRecord.DIRECTION_OUTGOING, "alice", 0, 0);
+                        recorder.onConnected(call, MILLIS);
+                        recorder.onEnded(call, 0, 2 * MILLIS);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        List<CallRecord> drained = new ArrayList<CallRecord>();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        while (recorder.drainTo(drained, 64) > 0) {
+        }
+        assertEquals(4000, drained.size());
+        assertEquals(0, recorder.getLiveCallCount());
+    }
+}
@@ -0,0 +1,167 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CallEventDispatcherTest {
+
+    /*
+     * Runs the loop's tasks only when asked, on the test thread
+     */
+    private static class ManualLoop implements Executor {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable runnable) {
+            tasks.add(runnable);
+        }
+
+        private int runAll() {
+            int ran = 0;
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+                ran++;
+            }
+            return ran;
+        }
+    }
+
+    private static class RecordingSubscriber implements CallEventDispatcher.Subscriber {
+        private final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void onEvent(CallEventDispatcher.Event event) {
+            events.add(event.getType() + ":" + event.getSubject() + ":" + event.getErrorCode()
+                    + (event.hasError() ? ":" + event.getError() : "")
+                    + (event.getClientName() != null ? ":" + event.getClientName() + "=" + event.isAvailable() : ""));
+        }
+    }
+
+    @Test
+    public void deliversInOrderToEverySubscriberOnTheLoop() {
+        ManualLoop loop = new ManualLoop();
+        CallEventDispatcher dispatcher = new CallEventDispatcher(loop, 4);
+        final List<String> order = new ArrayList<String>();
+        RecordingSubscriber first = new RecordingSubscriber() {
+            @Override
+            public void onEvent(CallEventDispatcher.Event event) {
+                super.onEvent(event);
+                order.add("first" + event.getType());
+            }
+        };
+        RecordingSubscriber second = new RecordingSubscriber() {
+            @Override
+            public void onEvent(CallEventDispatcher.Event event) {
+                super.onEvent(event);
+                order.add("second" + event.getType());
+            }
+        };
+        dispatcher.subscribe(first);
+        dispatcher.subscribe(second);
+
+        dispatcher.postConnecting("a");
+        dispatcher.postPresenceChanged("device", "bob", true);
+        dispatcher.postDisconnected("a", 31005, "Connection error");
+        assertTrue(first.events.isEmpty());
+        assertEquals(3, dispatcher.getPendingCount());
+
+        assertEquals(1, loop.runAll());
+        assertEquals(0, dispatcher.getPendingCount());
+        assertEquals("[3:a:0, 2:device:0:bob=true, 5:a:31005:Connection error]", first.events.toString());
+        assertEquals(first.events, second.events);
+        assertEquals("[first3, second3, first2, second2, first5, second5]", order.toString());
+    }
+
+    @Test
+    public void growsThroughABurstWithoutLosingEvents() {
+        ManualLoop loop = new ManualLoop();
+        CallEventDispatcher dispatcher = new CallEventDispatcher(loop, 2);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        dispatcher.subscribe(subscriber);
+
+        dispatcher.postConnecting("a");
+        dispatcher.postConnected("a");
+        loop.runAll();
+        // Wraps around the ring, then outgrows it
+        for (int i = 0; i < 5; i++) {
+            dispatcher.postConnected("c" + i);
+        }
+        dispatcher.postStopListening("device", 0, null);
+        loop.runAll();
+
+        assertEquals(8, subscriber.events.size());
+        assertEquals("4:c0:0", subscriber.events.get(2));
+        assertEquals("4:c4:0", subscriber.events.get(6));
+        assertEquals("1:device:0", subscriber.events.get(7));
+    }
+
+    @Test
+    public void stopsDeliveringToUnsubscribed() {
+        ManualLoop loop = new ManualLoop();
+        CallEventDispatcher dispatcher = new CallEventDispatcher(loop, 4);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        dispatcher.subscribe(subscriber);
+        dispatcher.subscribe(subscriber);
+        dispatcher.postStartListening("device");
+        loop.runAll();
+        dispatcher.unsubscribe(subscriber);
+        dispatcher.postStartListening("device");
+        loop.runAll();
+
+        assertEquals(1, subscriber.events.size());
+    }
+
+    @Test
+    public void deliversEventsFromManyThreadsOnOneThread() throws InterruptedException {
+        ExecutorService loopThread = Executors.newSingleThreadExecutor();
+        final CallEventDispatcher dispatcher = new CallEventDispatcher(loopThread, 8);
+        final int threads = 4;
+        final int eventsPerThread = 5000;
+        final CountDownLatch delivered = new CountDownLatch(threads * eventsPerThread);
+        final Thread[] deliveringThread = new Thread[1];
+        final boolean[] wrongThread = new boolean[1];
+        final int[] lastSeen = new int[threads];
+        final boolean[] outOfOrder = new boolean[1];
+        dispatcher.subscribe(new CallEventDispatcher.Subscriber() {
+            @Override
+            public void onEvent(CallEventDispatcher.Event event) {
+                if (deliveringThread[0] == null) {
+                    deliveringThread[0] = Thread.currentThread();
+                }
+                wrongThread[0] |= deliveringThread[0] != Thread.currentThread();
+                int[] sequence = (int[]) event.getSubject();
+                outOfOrder[0] |= sequence[1] != lastSeen[sequence[0]] + 1;
+                lastSeen[sequence[0]] = sequence[1];
+                delivered.countDown();
+            }
+        });
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 1; i <= eventsPerThread; i++) {
+                        dispatcher.postConnected(new int[] { thread, i });
+                    }
+                }
+            }).start();
+        }
+        try {
+            assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        } finally {
+            loopThread.shutdown();
+        }
+        assertFalse(wrongThread[0]);
+        assertFalse(outOfOrder[0]);
+    }
+}
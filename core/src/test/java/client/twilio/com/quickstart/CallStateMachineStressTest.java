@@ -0,0 +1,223 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/*
+ * Drives interleaved incoming/answer/reject/hold/swap/disconnect events from several threads, the way
+ * the UI thread and SDK callback threads do, and checks that no transition is lost or applied twice.
+ */
+public class CallStateMachineStressTest {
+
+    private static final int THREADS = 8;
+    private static final int EVENTS_PER_THREAD = 20000;
+
+    private static class CountingConnection implements CallConnection {
+        private final AtomicInteger accepted = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+        private final AtomicInteger disconnected = new AtomicInteger();
+
+        @Override
+        public void accept() {
+            accepted.incrementAndGet();
+        }
+
+        @Override
+        public void reject() {
+            rejected.incrementAndGet();
+        }
+
+        @Override
+        public void disconnect() {
+            disconnected.incrementAndGet();
+        }
+
+        @Override
+        public void setMuted(boolean muted) {
+        }
+
+        @Override
+        public void sendDigits(String digits) {
+        }
+    }
+
+    private final AtomicInteger incomingCount = new AtomicInteger();
+    private final AtomicInteger answeredCount = new AtomicInteger();
+    private final int[] disconnectedCounts = new int[4];
+
+    private static CallConnection pickCall(CallStateMachine callStateMachine, Random random) {
+        List<CallStateMachine.Call> calls = new ArrayList<CallStateMachine.Call>(callStateMachine.getSnapshot().getCalls());
+        return calls.isEmpty() ? null : calls.get(random.nextInt(calls.size())).getConnection();
+    }
+
+    private void onDisconnected(CallStateMachine callStateMachine, CallConnection connection) {
+        int disconnected = callStateMachine.onDisconnected(connection);
+        synchronized (disconnectedCounts) {
+            disconnectedCounts[disconnected]++;
+        }
+    }
+
+    @Test
+    public void concurrentEventsNeverLoseUpdates() throws Exception {
+        final CallStateMachine callStateMachine = new CallStateMachine();
+        final List<List<CountingConnection>> created = new ArrayList<List<CountingConnection>>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final List<Throwable> failures = new ArrayList<Throwable>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final List<CountingConnection> connections = new ArrayList<CountingConnection>();
+            created.add(connections);
+            final Random random = new Random(t);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                            switch (random.nextInt(7)) {
+                                case 0:
+                                    CountingConnection incoming = new CountingConnection();
+                                    connections.add(incoming);
+                                    incomingCount.incrementAndGet();
+                                    callStateMachine.onIncoming(incoming, null);
+                                    break;
+                                case 1:
+                                    if (callStateMachine.answer() != null) {
+                                        answeredCount.incrementAndGet();
+                                    }
+                                    break;
+                                case 2:
+                                    callStateMachine.reject();
+                                    break;
+                                case 3:
+                                    callStateMachine.disconnect(pickCall(callStateMachine, random));
+                                    break;
+                                case 4:
+                                    callStateMachine.hold();
+                                    break;
+                                case 5:
+                                    CallConnection held = pickCall(callStateMachine, random);
+                                    if (held != null) {
+                                        callStateMachine.swap(held);
+                                    }
+                                    break;
+                                default:
+                                    onDisconnected(callStateMachine, pickCall(callStateMachine, random));
+                                    break;
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        assertTrue(failures.toString(), failures.isEmpty());
+
+        // Drain whatever is left, as the SDK would eventually report
+        CallConnection remaining;
+        while ((remaining = pickCall(callStateMachine, new Random())) != null) {
+            onDisconnected(callStateMachine, remaining);
+        }
+        assertEquals(CallStateMachine.State.IDLE, callStateMachine.getState());
+        assertNull(callStateMachine.getActiveConnection());
+        assertNull(callStateMachine.getPendingConnection());
+
+        int accepted = 0;
+        int rejected = 0;
+        int disconnected = 0;
+        for (List<CountingConnection> connections : created) {
+            for (CountingConnection connection : connections) {
+                assertTrue(connection.accepted.get() <= 1);
+                assertTrue(connection.rejected.get() <= 1);
+                assertTrue(connection.disconnected.get() <= 1);
+                assertFalse(connection.accepted.get() == 1 && connection.rejected.get() == 1);
+                assertFalse(connection.accepted.get() == 0 && connection.disconnected.get() == 1);
+                accepted += connection.accepted.get();
+                rejected += connection.rejected.get();
+                disconnected += connection.disconnected.get();
+            }
+        }
+
+        /*
+         * Every call leaves the registry exactly once: an answered call as ACTIVE or, if it was
+         * disconnected locally first, as LOCAL; a ringing call by being rejected or as PENDING.
+         */
+        assertEquals(answeredCount.get(), accepted);
+        assertEquals(disconnected, disconnectedCounts[CallStateMachine.DISCONNECTED_LOCAL]);
+        assertEquals(accepted, disconnectedCounts[CallStateMachine.DISCONNECTED_ACTIVE] + disconnectedCounts[CallStateMachine.DISCONNECTED_LOCAL]);
+        assertEquals(incomingCount.get() - accepted, rejected + disconnectedCounts[CallStateMachine.DISCONNECTED_PENDING]);
+    }
+
+    private static class MuteConnection extends CountingConnection {
+        private volatile boolean muted;
+
+        @Override
+        public void setMuted(boolean muted) {
+            this.muted = muted;
+        }
+    }
+
+    @Test
+    public void sdkEndsWithTheMuteStateOfTheFinalSnapshot() throws Exception {
+        final CallStateMachine callStateMachine = new CallStateMachine();
+        final MuteConnection alice = new MuteConnection();
+        final MuteConnection bob = new MuteConnection();
+        callStateMachine.onIncoming(alice, null);
+        callStateMachine.answer();
+        callStateMachine.onIncoming(bob, null);
+        callStateMachine.answer();
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            final Random random = new Random(t);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                            switch (random.nextInt(3)) {
+                                case 0:
+                                    callStateMachine.setMuted(random.nextBoolean());
+                                    break;
+                                case 1:
+                                    callStateMachine.swap(random.nextBoolean() ? alice : bob);
+                                    break;
+                                default:
+                                    callStateMachine.hold();
+                                    break;
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+
+        for (MuteConnection connection : new MuteConnection[]{alice, bob}) {
+            CallStateMachine.Call call = callStateMachine.getSnapshot().getCall(connection);
+            assertEquals(call.isHeld() || call.isMuted(), connection.muted);
+        }
+    }
+}
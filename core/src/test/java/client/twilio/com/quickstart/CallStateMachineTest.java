@@ -0,0 +1,186 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CallStateMachineTest {
+
+    private final List<String> events = new ArrayList<String>();
+
+    private class FakeConnection implements CallConnection {
+        private final String name;
+
+        private FakeConnection(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void accept() {
+            events.add("accept " + name);
+        }
+
+        @Override
+        public void reject() {
+            events.add("reject " + name);
+        }
+
+        @Override
+        public void disconnect() {
+            events.add("disconnect " + name);
+        }
+
+        @Override
+        public void setMuted(boolean muted) {
+            events.add("mute " + name + " " + muted);
+        }
+
+        @Override
+        public void sendDigits(String digits) {
+            events.add("digits " + name + " " + digits);
+        }
+    }
+
+    private final CallDevice device = new CallDevice() {
+        @Override
+        public CallConnection connect(Map<String, String> params) {
+            return new FakeConnection(params.get("To"));
+        }
+
+        @Override
+        public void updateCapabilityToken(String capabilityToken) {
+        }
+    };
+
+    @Test
+    public void outgoingCallGoesThroughConnectingToConnected() throws Exception {
+        CallStateMachine callStateMachine = new CallStateMachine();
+
+        CallConnection connection = callStateMachine.connect(device, " bob ", false);
+        assertTrue(callStateMachine.setMuted(true));
+
+        assertSame(connection, callStateMachine.getActiveConnection());
+        assertEquals("client:bob", callStateMachine.getSnapshot().getActiveCall().getAddress());
+        assertTrue(callStateMachine.getSnapshot().getActiveCall().isMuted());
+        assertEquals(CallStateMachine.State.CONNECTING, callStateMachine.getState());
+        assertEquals("mute client:bob true", events.get(0));
+        assertNull(callStateMachine.connect(null, "bob", false));
+
+        assertTrue(callStateMachine.onConnected(connection));
+        assertFalse(callStateMachine.onConnected(connection));
+        assertEquals(CallStateMachine.State.CONNECTED, callStateMachine.getState());
+    }
+
+    @Test
+    public void localDisconnectIsConfirmedBySdk() throws Exception {
+        CallStateMachine callStateMachine = new CallStateMachine();
+        CallConnection connection = callStateMachine.connect(device, "+15555550100", true);
+
+        assertTrue(callStateMachine.disconnect());
+        assertFalse(callStateMachine.disconnect());
+        assertEquals(CallStateMachine.State.DISCONNECTING, callStateMachine.getState());
+        assertFalse(callStateMachine.getSnapshot().hasLiveCalls());
+
+        assertEquals(CallStateMachine.DISCONNECTED_LOCAL, callStateMachine.onDisconnected(connection));
+        assertEquals(CallStateMachine.State.IDLE, callStateMachine.getState());
+        assertEquals("[disconnect +15555550100]", events.toString());
+    }
+
+    @Test
+    public void answeringHoldsTheActiveCall() throws Exception {
+        CallStateMachine callStateMachine = new CallStateMachine();
+        CallConnection first = new FakeConnection("first");
+        CallConnection second = new FakeConnection("second");
+
+        callStateMachine.onIncoming(first, "client:alice");
+        assertEquals(CallStateMachine.State.RINGING, callStateMachine.getState());
+        callStateMachine.answer();
+        callStateMachine.onIncoming(second, "client:bob");
+        assertEquals(CallStateMachine.State.CONNECTING, callStateMachine.getState());
+        callStateMachine.answer();
+
+        assertSame(second, callStateMachine.getActiveConnection());
+        assertNull(callStateMachine.getPendingConnection());
+        assertTrue(callStateMachine.getSnapshot().getCall(first).isHeld());
+        assertEquals(2, callStateMachine.getSnapshot().getCalls().size());
+        assertEquals("[accept first, mute first true, accept second]", events.toString());
+    }
+
+    @Test
+    public void swapRestoresPerCallMuteState() throws Exception {
+        CallStateMachine callStateMachine = new CallStateMachine();
+        CallConnection first = callStateMachine.connect(device, "alice", false);
+        callStateMachine.setMuted(true);
+        callStateMachine.setSpeakerPhone(true);
+        CallConnection second = callStateMachine.connect(device, "bob", false);
+        events.clear();
+
+        assertTrue(callStateMachine.getSnapshot().getActiveCall().isSpeakerPhone());
+        assertFalse(callStateMachine.getSnapshot().getActiveCall().isMuted());
+        assertNull(callStateMachine.swap(second));
+
+        CallStateMachine.Call resumed = callStateMachine.swap(first);
+        assertSame(first, resumed.getConnection());
+        assertTrue(resumed.isMuted());
+        assertTrue(callStateMachine.getSnapshot().getCall(second).isHeld());
+        assertEquals("[mute client:bob true, mute client:alice true]", events.toString());
+
+        assertTrue(callStateMachine.hold());
+        assertFalse(callStateMachine.hold());
+        assertNull(callStateMachine.getActiveConnection());
+        assertEquals(CallStateMachine.State.IDLE, callStateMachine.getState());
+        assertTrue(callStateMachine.getSnapshot().hasLiveCalls());
+    }
+
+    @Test
+    public void heldCallsCanBeDisconnected() throws Exception {
+        CallStateMachine callStateMachine = new CallStateMachine();
+        CallConnection first = callStateMachine.connect(device, "alice", false);
+        CallConnection second = callStateMachine.connect(device, "bob", false);
+
+        assertTrue(callStateMachine.disconnect(first));
+        assertSame(second, callStateMachine.getActiveConnection());
+        assertEquals(CallStateMachine.DISCONNECTED_LOCAL, callStateMachine.onDisconnected(first));
+        assertEquals(CallStateMachine.DISCONNECTED_ACTIVE, callStateMachine.onDisconnected(second));
+        assertEquals(CallStateMachine.State.IDLE, callStateMachine.getState());
+        assertTrue(callStateMachine.getSnapshot().getCalls().isEmpty());
+    }
+
+    @Test
+    public void remoteDisconnectsAreAttributed() throws Exception {
+        CallStateMachine callStateMachine = new CallStateMachine();
+        CallConnection active = new FakeConnection("active");
+        CallConnection pending = new FakeConnection("pending");
+        callStateMachine.onIncoming(active, null);
+        callStateMachine.answer();
+        callStateMachine.onIncoming(pending, null);
+
+        assertEquals(CallStateMachine.DISCONNECTED_OTHER, callStateMachine.onDisconnected(new FakeConnection("other")));
+        assertEquals(CallStateMachine.DISCONNECTED_PENDING, callStateMachine.onDisconnected(pending));
+        assertEquals(CallStateMachine.DISCONNECTED_ACTIVE, callStateMachine.onDisconnected(active));
+        assertNull(callStateMachine.getActiveConnection());
+        assertEquals(CallStateMachine.State.IDLE, callStateMachine.getState());
+        assertEquals(CallStateMachine.DISCONNECTED_OTHER, callStateMachine.onDisconnected(null));
+    }
+
+    @Test
+    public void rejectLeavesTheActiveCallAlone() throws Exception {
+        CallStateMachine callStateMachine = new CallStateMachine();
+        CallConnection active = callStateMachine.connect(device, "bob", false);
+        callStateMachine.onConnected(active);
+        CallConnection older = new FakeConnection("older");
+        callStateMachine.onIncoming(older, null);
+        callStateMachine.onIncoming(new FakeConnection("waiting"), null);
+
+        assertNotNull(callStateMachine.reject());
+        assertSame(older, callStateMachine.getPendingConnection());
+        assertNotNull(callStateMachine.reject());
+        assertNull(callStateMachine.reject());
+        assertSame(active, callStateMachine.getActiveConnection());
+        assertEquals(CallStateMachine.State.CONNECTED, callStateMachine.getState());
+    }
+}
@@ -0,0 +1,83 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CallViewStateTest {
+
+    private static class FakeConnection implements CallConnection {
+        @Override
+        public void accept() {
+        }
+
+        @Override
+        public void reject() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void setMuted(boolean muted) {
+        }
+
+        @Override
+        public void sendDigits(String digits) {
+        }
+    }
+
+    private final CallDevice device = new CallDevice() {
+        @Override
+        public CallConnection connect(Map<String, String> params) {
+            return new FakeConnection();
+        }
+
+        @Override
+        public void updateCapabilityToken(String capabilityToken) {
+        }
+    };
+
+    @Test
+    public void idleWithoutLiveCalls() throws Exception {
+        CallStateMachine callStateMachine = new CallStateMachine();
+        callStateMachine.onIncoming(new FakeConnection(), "client:alice");
+
+        assertSame(CallViewState.IDLE, CallViewState.from(callStateMachine.getSnapshot(), true));
+    }
+
+    @Test
+    public void listsCallsWithTheActiveCallAudio() throws Exception {
+        CallStateMachine callStateMachine = new CallStateMachine();
+        CallConnection first = callStateMachine.connect(device, "alice", false);
+        callStateMachine.onConnected(first);
+        CallConnection second = callStateMachine.connect(device, "+15555550100", true);
+        callStateMachine.setMuted(true);
+        callStateMachine.onIncoming(new FakeConnection(), "client:carol");
+
+        CallViewState state = CallViewState.from(callStateMachine.getSnapshot(), false);
+
+        assertTrue(state.isInCall());
+        assertTrue(state.isMuted());
+        assertFalse(state.isSpeakerPhone());
+        assertEquals(Arrays.asList("client:alice - On hold", "+15555550100 - Connecting"), state.getCallLabels());
+        assertEquals(Arrays.asList(first, second), state.getCallConnections());
+    }
+
+    @Test
+    public void equalStatesAreNotRenderedAgain() throws Exception {
+        CallStateMachine callStateMachine = new CallStateMachine();
+        CallConnection connection = callStateMachine.connect(device, "alice", false);
+        CallViewState connecting = CallViewState.from(callStateMachine.getSnapshot(), false);
+
+        assertEquals(connecting, CallViewState.from(callStateMachine.getSnapshot(), false));
+        assertEquals(connecting.hashCode(), CallViewState.from(callStateMachine.getSnapshot(), false).hashCode());
+
+        callStateMachine.onConnected(connection);
+        assertFalse(connecting.equals(CallViewState.from(callStateMachine.getSnapshot(), false)));
+    }
+}
@@ -0,0 +1,135 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CapabilityTokenCoalescerTest {
+
+    private final List<ClientProfile> fetchedProfiles = new ArrayList<ClientProfile>();
+    private final List<CapabilityTokenCoalescer.Callback> pendingFetches = new ArrayList<CapabilityTokenCoalescer.Callback>();
+    private final List<String> deliveredTokens = new ArrayList<String>();
+
+    private CapabilityTokenCoalescer coalescer;
+    private CapabilityTokenCoalescer.Callback callback;
+
+    @Before
+    public void setUp() throws Exception {
+        coalescer = new CapabilityTokenCoalescer(new CapabilityTokenCoalescer.Fetcher() {
+            @Override
+            public void fetch(ClientProfile clientProfile, CapabilityTokenCoalescer.Callback callback) {
+                fetchedProfiles.add(clientProfile);
+                pendingFetches.add(callback);
+            }
+        });
+        callback = new CapabilityTokenCoalescer.Callback() {
+            @Override
+            public void onToken(ClientProfile clientProfile, String capabilityToken) {
+                deliveredTokens.add(clientProfile.getName() + "=" + capabilityToken);
+            }
+
+            @Override
+            public void onError(ClientProfile clientProfile, Exception e) {
+                deliveredTokens.add(clientProfile.getName() + "!" + e.getMessage());
+            }
+        };
+    }
+
+    @Test
+    public void overlappingRequestsShareOneFetch() throws Exception {
+        coalescer.request(new ClientProfile("jenny", true, true), callback);
+        coalescer.request(new ClientProfile("jenny", true, true), callback);
+        coalescer.request(new ClientProfile("jenny", true, true), callback);
+
+        assertEquals(1, fetchedProfiles.size());
+        assertEquals(2, coalescer.getDeduplicatedCount());
+
+        pendingFetches.get(0).onToken(fetchedProfiles.get(0), "token");
+
+        assertEquals(1, deliveredTokens.size());
+        assertEquals("jenny=token", deliveredTokens.get(0));
+        assertFalse(coalescer.isInFlight(new ClientProfile("jenny", true, true)));
+    }
+
+    @Test
+    public void responseForSupersededProfileIsDropped() throws Exception {
+        coalescer.request(new ClientProfile("jenny", true, true), callback);
+        coalescer.request(new ClientProfile("bob", true, true), callback);
+
+        assertEquals(2, fetchedProfiles.size());
+
+        pendingFetches.get(1).onToken(fetchedProfiles.get(1), "bob-token");
+        pendingFetches.get(0).onToken(fetchedProfiles.get(0), "jenny-token");
+
+        assertEquals(1, deliveredTokens.size());
+        assertEquals("bob=bob-token", deliveredTokens.get(0));
+        assertEquals(1, coalescer.getStaleDroppedCount());
+    }
+
+    @Test
+    public void rejoiningAnOlderProfileMakesItCurrentAgain() throws Exception {
+        coalescer.request(new ClientProfile("jenny", true, true), callback);
+        coalescer.request(new ClientProfile("bob", true, true), callback);
+        coalescer.request(new ClientProfile("jenny", true, true), callback);
+
+        assertEquals(2, coalescer.getFetchCount());
+
+        pendingFetches.get(1).onToken(fetchedProfiles.get(1), "bob-token");
+        pendingFetches.get(0).onError(fetchedProfiles.get(0), new Exception("offline"));
+
+        assertEquals(1, deliveredTokens.size());
+        assertEquals("jenny!offline", deliveredTokens.get(0));
+    }
+
+    @Test
+    public void prefetchSharesAFetchWithoutSupersedingRequests() throws Exception {
+        final List<String> prefetchedTokens = new ArrayList<String>();
+        CapabilityTokenCoalescer.Callback prefetchCallback = new CapabilityTokenCoalescer.Callback() {
+            @Override
+            public void onToken(ClientProfile clientProfile, String capabilityToken) {
+                prefetchedTokens.add(clientProfile.getName() + "=" + capabilityToken);
+            }
+
+            @Override
+            public void onError(ClientProfile clientProfile, Exception e) {
+                prefetchedTokens.add(clientProfile.getName() + "!" + e.getMessage());
+            }
+        };
+        coalescer.request(new ClientProfile("jenny", true, true), callback);
+        coalescer.prefetch(new ClientProfile("jenny", true, true), prefetchCallback);
+        coalescer.prefetch(new ClientProfile("bob", true, true), prefetchCallback);
+
+        assertEquals(2, coalescer.getFetchCount());
+        assertEquals(1, coalescer.getDeduplicatedCount());
+
+        pendingFetches.get(0).onToken(fetchedProfiles.get(0), "jenny-token");
+        assertEquals("jenny=jenny-token", deliveredTokens.get(0));
+        assertEquals("jenny=jenny-token", prefetchedTokens.get(0));
+
+        // A request for another profile leaves the prefetch to be delivered
+        coalescer.request(new ClientProfile("carol", true, true), callback);
+        pendingFetches.get(1).onToken(fetchedProfiles.get(1), "bob-token");
+        assertEquals("bob=bob-token", prefetchedTokens.get(1));
+        assertEquals(1, deliveredTokens.size());
+        assertEquals(0, coalescer.getStaleDroppedCount());
+    }
+
+    @Test
+    public void supersedeDropsEveryResponseInFlight() throws Exception {
+        coalescer.request(new ClientProfile("jenny", true, true), callback);
+        coalescer.supersede();
+        pendingFetches.get(0).onToken(fetchedProfiles.get(0), "jenny-token");
+
+        assertTrue(deliveredTokens.isEmpty());
+        assertEquals(1, coalescer.getStaleDroppedCount());
+
+        // Later requests are delivered as usual
+        coalescer.request(new ClientProfile("jenny", true, true), callback);
+        pendingFetches.get(1).onToken(fetchedProfiles.get(1), "jenny-token");
+        assertEquals("jenny=jenny-token", deliveredTokens.get(0));
+    }
+}
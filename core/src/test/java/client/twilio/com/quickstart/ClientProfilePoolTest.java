@@ -0,0 +1,97 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ClientProfilePoolTest {
+
+    private static final long MARGIN_MILLIS = 60 * 1000;
+    private static final long RETRY_MILLIS = 5 * 60 * 1000;
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+
+    private static final ClientProfile ALICE = new ClientProfile("alice", true, true);
+    private static final ClientProfile BOB = new ClientProfile("bob", true, true);
+    private static final ClientProfile CAROL = new ClientProfile("carol", true, false);
+
+    private final ClientProfilePool pool = new ClientProfilePool(2, MARGIN_MILLIS, RETRY_MILLIS);
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        pool.use(ALICE);
+        pool.use(BOB);
+        pool.use(ALICE);
+        pool.use(CAROL);
+
+        assertEquals(2, pool.size());
+        assertFalse(pool.contains(BOB));
+        assertEquals(Arrays.asList(CAROL, ALICE), profiles(pool.getEntries()));
+    }
+
+    @Test
+    public void handsOutTokensValidBeyondTheMargin() {
+        pool.use(ALICE);
+        assertNull(pool.getValidToken(ALICE, 0));
+        pool.onToken(ALICE, "jwt", HOUR_MILLIS);
+
+        assertEquals("jwt", pool.getValidToken(ALICE, 0));
+        assertNull(pool.getValidToken(ALICE, HOUR_MILLIS - MARGIN_MILLIS));
+        // A token without a known expiry is never reused
+        pool.onToken(ALICE, "jwt", 0);
+        assertNull(pool.getValidToken(ALICE, 0));
+    }
+
+    @Test
+    public void refreshesMissingAndExpiringTokensExceptRegistered() {
+        pool.use(ALICE);
+        pool.use(BOB);
+        pool.onToken(BOB, "bob-jwt", HOUR_MILLIS);
+
+        // Bob is registered and refreshed on its own, Alice has no token yet
+        assertEquals(0, pool.getNextRefreshAtMillis(BOB));
+        assertEquals(Collections.singletonList(ALICE), pool.takeDueRefreshes(0, BOB));
+        // Already being fetched
+        assertTrue(pool.takeDueRefreshes(0, BOB).isEmpty());
+        assertEquals(Long.MAX_VALUE, pool.getNextRefreshAtMillis(BOB));
+
+        pool.onToken(ALICE, "alice-jwt", 2 * HOUR_MILLIS);
+        assertEquals(2 * HOUR_MILLIS - MARGIN_MILLIS, pool.getNextRefreshAtMillis(BOB));
+        assertEquals(HOUR_MILLIS - MARGIN_MILLIS, pool.getNextRefreshAtMillis(ALICE));
+        assertTrue(pool.takeDueRefreshes(HOUR_MILLIS, BOB).isEmpty());
+        assertEquals(Collections.singletonList(BOB), pool.takeDueRefreshes(HOUR_MILLIS, ALICE));
+    }
+
+    @Test
+    public void retriesFailedFetchAfterDelay() {
+        pool.use(ALICE);
+        assertEquals(1, pool.takeDueRefreshes(1000, null).size());
+        pool.onTokenFailed(ALICE, 1000);
+
+        assertEquals(1000 + RETRY_MILLIS, pool.getNextRefreshAtMillis(null));
+        assertTrue(pool.takeDueRefreshes(2000, null).isEmpty());
+        assertEquals(1, pool.takeDueRefreshes(1000 + RETRY_MILLIS, null).size());
+    }
+
+    @Test
+    public void dropsTokenOfEvictedProfile() {
+        pool.use(ALICE);
+        pool.takeDueRefreshes(0, null);
+        pool.use(BOB);
+        pool.use(CAROL);
+
+        assertFalse(pool.onToken(ALICE, "jwt", HOUR_MILLIS));
+        assertNull(pool.getValidToken(ALICE, 0));
+    }
+
+    private static List<ClientProfile> profiles(List<ClientProfilePool.Entry> entries) {
+        ClientProfile[] profiles = new ClientProfile[entries.size()];
+        for (int i = 0; i < profiles.length; i++) {
+            profiles[i] = entries.get(i).getClientProfile();
+        }
+        return Arrays.asList(profiles);
+    }
+}
@@ -0,0 +1,97 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ContactIndexTest {
+
+    private static ContactIndex.Suggestion contact(String name, String number) {
+        return new ContactIndex.Suggestion(name, number, true, 0, 0);
+    }
+
+    private static List<String> contactsOf(List<ContactIndex.Suggestion> suggestions) {
+        List<String> contacts = new ArrayList<String>();
+        for (ContactIndex.Suggestion suggestion : suggestions) {
+            contacts.add(suggestion.getContact());
+        }
+        return contacts;
+    }
+
+    @Test
+    public void matchesAnyWordOfTheName() {
+        ContactIndex index = new ContactIndex(100);
+        index.add(Arrays.asList(contact("Alice Smith", "+1 415 555 0100"), contact("Bob Jones", "+1 415 555 0101")));
+
+        assertEquals(Arrays.asList("+1 415 555 0100"), contactsOf(index.search("Ali", 5)));
+        assertEquals(Arrays.asList("+1 415 555 0100"), contactsOf(index.search("smi", 5)));
+        assertEquals(Arrays.asList("+1 415 555 0101"), contactsOf(index.search("JONES", 5)));
+        assertTrue(index.search("carol", 5).isEmpty());
+        assertTrue(index.search("  ", 5).isEmpty());
+    }
+
+    @Test
+    public void matchesPhoneNumberDigitsWhateverTheFormatting() {
+        ContactIndex index = new ContactIndex(100);
+        index.add(Arrays.asList(contact("Alice", "+1 (415) 555-0100"), contact("Bob", "+44 20 7946 0000")));
+
+        assertEquals(Arrays.asList("+1 (415) 555-0100"), contactsOf(index.search("+1 415-55", 5)));
+        assertEquals(Arrays.asList("+44 20 7946 0000"), contactsOf(index.search("4420", 5)));
+    }
+
+    @Test
+    public void matchesNormalizedPhoneNumbersWithoutTheirCountryCode() {
+        ContactIndex index = new ContactIndex(100);
+        index.add(Arrays.asList(contact("Alice", "+14155550100")));
+
+        assertEquals(Arrays.asList("+14155550100"), contactsOf(index.search("(415) 555", 5)));
+        assertEquals(Arrays.asList("+14155550100"), contactsOf(index.search("1415", 5)));
+    }
+
+    @Test
+    public void ranksDialedContactsFirstAndSuggestsEachContactOnce() {
+        ContactIndex index = new ContactIndex(100);
+        index.add(Arrays.asList(contact("Anna", "100"), contact("Andy", "200"), contact("Ann", "300")));
+        index.add(Arrays.asList(new ContactIndex.Suggestion("Ann", "300", true, 1, 1000L)));
+        index.add(Arrays.asList(new ContactIndex.Suggestion("Ann", "(300)", true, 2, 2000L),
+                new ContactIndex.Suggestion("alice", "alice", false, 1, 3000L)));
+
+        List<ContactIndex.Suggestion> found = index.search("a", 10);
+        assertEquals(Arrays.asList("(300)", "alice", "200", "100"), contactsOf(found));
+        assertEquals(2, found.get(0).getDialCount());
+        assertEquals(Arrays.asList("(300)", "alice"), contactsOf(index.search("a", 2)));
+    }
+
+    @Test
+    public void dropsSuggestionsBeyondCapacity() {
+        ContactIndex index = new ContactIndex(2);
+        index.add(Arrays.asList(contact("Anna", "100"), contact("Andy", "200"), contact("Ann", "300")));
+        assertEquals(2, index.size());
+        assertTrue(index.isFull());
+
+        index.add(Arrays.asList(contact("Amy", "400")));
+        assertEquals(Arrays.asList("200", "100"), contactsOf(index.search("a", 10)));
+    }
+
+    @Test
+    public void keepsPreviousResultsValidWhileAddingBatches() {
+        ContactIndex index = new ContactIndex(1000);
+        index.add(Arrays.asList(contact("Zed", "999")));
+        List<ContactIndex.Suggestion> before = index.search("z", 10);
+
+        List<ContactIndex.Suggestion> batch = new ArrayList<ContactIndex.Suggestion>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(contact("Zoe " + i, String.valueOf(1000 + i)));
+        }
+        index.add(batch);
+
+        assertEquals(1, before.size());
+        assertEquals(501, index.size());
+        assertEquals(10, index.search("z", 10).size());
+        assertEquals(Arrays.asList("1250"), contactsOf(index.search("1250", 10)));
+    }
+}
@@ -0,0 +1,109 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ContactNormalizerTest {
+
+    private final ContactNormalizer normalizer = new ContactNormalizer("US", 4);
+
+    @Test
+    public void normalizesNationalNumbersOfDefaultRegion() {
+        assertEquals("+15555550100", phoneNumber("(555) 555-0100"));
+        assertEquals("+15555550100", phoneNumber("1 555 555 0100"));
+        assertEquals("+15555550100", phoneNumber("555.555.0100"));
+        assertEquals("+442079460018", new ContactNormalizer("gb", 4).normalize("020 7946 0018", true).getContact());
+        // No trunk prefix in Italy: the leading 0 is part of the number
+        assertEquals("+390612345678", new ContactNormalizer("IT", 4).normalize("06 1234 5678", true).getContact());
+    }
+
+    @Test
+    public void normalizesInternationalNumbers() {
+        assertEquals("+442079460018", phoneNumber("+44 20 7946 0018"));
+        assertEquals("+442079460018", phoneNumber("011 44 20 7946 0018"));
+        assertEquals("+33123456789", new ContactNormalizer("DE", 4).normalize("0033 1 23 45 67 89", true).getContact());
+        // Country codes missing from the tables only get the E.164 length check
+        assertEquals("+380441234567", phoneNumber("+380 44 123 4567"));
+    }
+
+    @Test
+    public void dialsNationalNumbersAsTypedOutsideTheTables() {
+        ContactNormalizer polish = new ContactNormalizer("PL", 4);
+        assertEquals("221234567", polish.normalize("22 123 45 67", true).getContact());
+        assertEquals("112", polish.normalize("112", true).getContact());
+        assertEquals(ContactNormalizer.ERROR_INVALID_LENGTH, polish.normalize("11", true).getError());
+        assertEquals(ContactNormalizer.ERROR_INVALID_CHARACTER, polish.normalize("22 ABC", true).getError());
+        // International numbers are still put in E.164
+        assertEquals("+48221234567", polish.normalize("+48 22 123 45 67", true).getContact());
+    }
+
+    @Test
+    public void rejectsInvalidPhoneNumbers() {
+        assertEquals(ContactNormalizer.ERROR_EMPTY, phoneNumberError(" - "));
+        assertEquals(ContactNormalizer.ERROR_INVALID_CHARACTER, phoneNumberError("555-CALL-NOW"));
+        assertEquals(ContactNormalizer.ERROR_INVALID_CHARACTER, phoneNumberError("555+0100"));
+        assertEquals(ContactNormalizer.ERROR_INVALID_LENGTH, phoneNumberError("555 0100"));
+        assertEquals(ContactNormalizer.ERROR_INVALID_LENGTH, phoneNumberError("+44 20 7946"));
+        assertEquals(ContactNormalizer.ERROR_INVALID_LENGTH, phoneNumberError("+1 234 567 8901 2345"));
+        assertEquals(ContactNormalizer.ERROR_INVALID_LENGTH, phoneNumberError("+"));
+        assertNull(normalizer.normalize("555 0100", true).getContact());
+    }
+
+    @Test
+    public void splitsOffKnownCountryCodes() {
+        assertEquals("5555550100", ContactNormalizer.nationalNumberOf("+15555550100"));
+        assertEquals("2079460018", ContactNormalizer.nationalNumberOf("+442079460018"));
+        assertNull(ContactNormalizer.nationalNumberOf("+380441234567"));
+        assertNull(ContactNormalizer.nationalNumberOf("221234567"));
+        assertNull(ContactNormalizer.nationalNumberOf("+"));
+    }
+
+    @Test
+    public void checksClientNames() {
+        assertEquals("bob", normalizer.normalize("  bob ", false).getContact());
+        assertEquals("bob_2", normalizer.normalize("client:bob_2", false).getContact());
+        assertEquals(ContactNormalizer.ERROR_EMPTY, normalizer.normalize("client: ", false).getError());
+        assertEquals(ContactNormalizer.ERROR_INVALID_CHARACTER, normalizer.normalize("bob smith", false).getError());
+        assertEquals(ContactNormalizer.ERROR_INVALID_CHARACTER, normalizer.normalize("b\u00f6b", false).getError());
+
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i <= ContactNormalizer.MAX_CLIENT_NAME_LENGTH; i++) {
+            longName.append('a');
+        }
+        assertEquals(ContactNormalizer.ERROR_INVALID_LENGTH, normalizer.normalize(longName.toString(), false).getError());
+    }
+
+    @Test
+    public void cachesLeastRecentlyUsedResults() {
+        ContactNormalizer.Result first = normalizer.normalize("555 555 0100", true);
+        assertSame(first, normalizer.normalize("555 555 0100", true));
+        // The same text as a client name is a separate entry
+        assertFalse(normalizer.normalize("555 555 0100", false).isValid());
+        assertEquals(1, normalizer.getHitCount());
+
+        for (int i = 1; i <= 3; i++) {
+            normalizer.normalize("555 555 010" + i, true);
+        }
+        normalizer.normalize("555 555 0100", true);
+        // Four entries fit: the oldest number is evicted, the one just used is not
+        normalizer.normalize("555 555 0109", true);
+        assertSame(first, normalizer.normalize("555 555 0100", true));
+        assertEquals(3, normalizer.getHitCount());
+
+        // Bulk reads do not touch the cache
+        assertEquals("+15555550199", normalizer.normalizeUncached("555 555 0199", true).getContact());
+        assertEquals(3, normalizer.getHitCount());
+        assertEquals(6, normalizer.getMissCount());
+    }
+
+    private String phoneNumber(String contact) {
+        ContactNormalizer.Result result = normalizer.normalize(contact, true);
+        assertTrue(contact, result.isValid());
+        return result.getContact();
+    }
+
+    private int phoneNumberError(String contact) {
+        return normalizer.normalize(contact, true).getError();
+    }
+}
@@ -0,0 +1,88 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DialHistoryTest {
+
+    @Test
+    public void countsDialsPerContactAndType() {
+        DialHistory history = new DialHistory(10);
+        assertEquals(1, history.record("alice", false, 1000L).getDialCount());
+        DialHistory.Entry entry = history.record(" alice ", false, 2000L);
+        assertEquals("alice", entry.getContact());
+        assertEquals(2, entry.getDialCount());
+        assertEquals(2000L, entry.getLastDialedMillis());
+        assertEquals(1, history.record("alice", true, 3000L).getDialCount());
+        assertEquals(1, history.record("14155550100", true, 3000L).getDialCount());
+        assertEquals(2, history.record("+1 (415) 555-0100", true, 3500L).getDialCount());
+        assertEquals(2, history.get("14155550100", true).getDialCount());
+        assertNull(history.get("bob", false));
+        assertNull(history.record("  ", false, 4000L));
+        assertNull(history.record(null, true, 4000L));
+        assertEquals(3, history.size());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyDialedContact() {
+        DialHistory history = new DialHistory(2);
+        history.record("alice", false, 1000L);
+        history.record("bob", false, 2000L);
+        history.record("alice", false, 3000L);
+        history.record("carol", false, 4000L);
+
+        List<DialHistory.Entry> entries = history.getEntries();
+        assertEquals(2, entries.size());
+        assertEquals("alice", entries.get(0).getContact());
+        assertEquals("carol", entries.get(1).getContact());
+    }
+
+    @Test
+    public void mergesPhoneNumbersDialedBeforeNormalization() {
+        DialHistory history = new DialHistory(10);
+        history.record("(415) 555-0100", true, 1000L);
+        history.record("alice", false, 2000L);
+        history.record("+14155550100", true, 3000L);
+        history.record("12", true, 4000L);
+
+        assertTrue(history.normalizePhoneNumbers(new ContactNormalizer("US", 4)));
+        List<DialHistory.Entry> entries = history.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals("alice", entries.get(0).getContact());
+        assertEquals("+14155550100", entries.get(1).getContact());
+        assertEquals(2, entries.get(1).getDialCount());
+        assertEquals(3000L, entries.get(1).getLastDialedMillis());
+        // Numbers that cannot be dialed are left as recorded
+        assertEquals("12", entries.get(2).getContact());
+        assertFalse(history.normalizePhoneNumbers(new ContactNormalizer("US", 4)));
+    }
+
+    @Test
+    public void roundTripsThroughItsFileFormat() throws IOException {
+        DialHistory history = new DialHistory(10);
+        history.record("alice", false, 1000L);
+        history.record("+14155550100", true, 2000L);
+        history.record("alice", false, 3000L);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        history.writeTo(new DataOutputStream(bytes));
+
+        DialHistory restored = new DialHistory(10);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        List<DialHistory.Entry> entries = restored.getEntries();
+        assertEquals(2, entries.size());
+        assertEquals("+14155550100", entries.get(0).getContact());
+        assertTrue(entries.get(0).isPhoneNumber());
+        assertEquals("alice", entries.get(1).getContact());
+        assertEquals(2, entries.get(1).getDialCount());
+        assertEquals(3000L, entries.get(1).getLastDialedMillis());
+    }
+}
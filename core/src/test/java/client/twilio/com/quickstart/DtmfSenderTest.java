@@ -0,0 +1,192 @@
+package client.twilio.com.quickstart;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DtmfSenderTest {
+
+    private static class FakeConnection implements CallConnection {
+        private final String name;
+        private final List<String> log;
+
+        FakeConnection(String name, List<String> log) {
+            this.name = name;
+            this.log = log;
+        }
+
+        @Override
+        public void accept() {
+        }
+
+        @Override
+        public void reject() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void setMuted(boolean muted) {
+        }
+
+        @Override
+        public void sendDigits(String digits) {
+            log.add(name + " " + digits);
+        }
+    }
+
+    private final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger digitsSent = new AtomicInteger();
+    private ScheduledExecutorService executor;
+    private DtmfSender sender;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        sender = new DtmfSender(executor, new DtmfSender.Callback() {
+            @Override
+            public void onDigitSent(long keypressToSendNanos) {
+                assertTrue(keypressToSendNanos >= 0);
+                digitsSent.incrementAndGet();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void sendsQueuedDigitsInOneRun() throws InterruptedException {
+        FakeConnection alice = new FakeConnection("alice", log);
+        // Hold the executor so the keys are all queued before the drain
+        CountDownLatch release = block();
+        for (char key : "123#".toCharArray()) {
+            assertTrue(sender.send(alice, key));
+        }
+        assertFalse(sender.send(alice, 'x'));
+        release.countDown();
+        awaitIdle();
+
+        assertEquals(Collections.singletonList("alice 123#"), log);
+        assertEquals(4, digitsSent.get());
+    }
+
+    @Test
+    public void keepsTheOrderOfEachCall() throws InterruptedException {
+        FakeConnection alice = new FakeConnection("alice", log);
+        FakeConnection bob = new FakeConnection("bob", log);
+        CountDownLatch release = block();
+        sender.send(alice, '1');
+        sender.send(alice, '2');
+        sender.send(bob, '3');
+        sender.send(alice, '4');
+        release.countDown();
+        awaitIdle();
+
+        assertEquals(2, log.size());
+        assertTrue(log.contains("alice 124"));
+        assertTrue(log.contains("bob 3"));
+    }
+
+    @Test
+    public void pauseOfOneCallDoesNotHoldBackAnother() throws InterruptedException {
+        FakeConnection alice = new FakeConnection("alice", log);
+        FakeConnection bob = new FakeConnection("bob", log);
+        long startNanos = System.nanoTime();
+        // Alice is put on hold in the middle of her pause and Bob becomes the active call
+        sender.sendSequence(alice, "1,2");
+        sender.send(bob, '3');
+
+        long deadlineNanos = startNanos + TimeUnit.SECONDS.toNanos(5);
+        while (!log.contains("bob 3") && System.nanoTime() < deadlineNanos) {
+            Thread.sleep(5);
+        }
+        assertTrue(log.contains("bob 3"));
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(DtmfSender.PAUSE_MILLIS));
+        assertFalse(log.contains("alice 2"));
+
+        assertEquals(1, sender.cancel(alice));
+        awaitIdle();
+        assertFalse(log.contains("alice 2"));
+    }
+
+    @Test
+    public void pauseHoldsBackLaterKeys() throws InterruptedException {
+        FakeConnection alice = new FakeConnection("alice", log);
+        long startNanos = System.nanoTime();
+        assertEquals(5, sender.sendSequence(alice, "1-2 w3*"));
+        awaitIdle();
+
+        assertEquals(2, log.size());
+        assertEquals("alice 12", log.get(0));
+        assertEquals("alice 3*", log.get(1));
+        assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(DtmfSender.SHORT_PAUSE_MILLIS));
+        assertEquals(4, digitsSent.get());
+    }
+
+    @Test
+    public void cancelDropsKeysOfDisconnectedCall() throws InterruptedException {
+        FakeConnection alice = new FakeConnection("alice", log);
+        FakeConnection bob = new FakeConnection("bob", log);
+        sender.sendSequence(alice, "1w234");
+        sender.send(bob, '5');
+        // The first digit may be sent already; nothing after the pause is
+        assertTrue(sender.cancel(alice) >= 3);
+        awaitIdle();
+
+        for (String sent : log) {
+            assertFalse(sent.startsWith("alice 2"));
+        }
+        assertTrue(log.contains("bob 5"));
+    }
+
+    /*
+     * Block the executor until the returned latch is counted down
+     */
+    private CountDownLatch block() {
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        return release;
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sender.getPendingCount() > 0 && System.nanoTime() < deadlineNanos) {
+            Thread.sleep(10);
+        }
+        // Let the last run go out
+        final CountDownLatch drained = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                drained.countDown();
+            }
+        });
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        assertEquals(0, sender.getPendingCount());
+    }
+}
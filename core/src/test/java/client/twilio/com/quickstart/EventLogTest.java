@@ -0,0 +1,57 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class EventLogTest {
+
+    private static String[] export(EventLog eventLog) throws IOException {
+        StringBuilder out = new StringBuilder();
+        eventLog.export(out);
+        return out.length() == 0 ? new String[0] : out.toString().split("\n");
+    }
+
+    @Test
+    public void dropsEventsBelowTheLevel() throws IOException {
+        EventLog eventLog = new EventLog(EventLog.LEVEL_INFO, 8);
+        assertFalse(eventLog.isLoggable(EventLog.LEVEL_DEBUG));
+        assertTrue(eventLog.isLoggable(EventLog.LEVEL_ERROR));
+
+        eventLog.record(EventLog.LEVEL_DEBUG, EventLog.EVENT_CONNECTING, 1, 0, 0);
+        eventLog.record(EventLog.LEVEL_ERROR, EventLog.EVENT_DISCONNECTED, 1, 31005, 0);
+        assertEquals(1, eventLog.size());
+        String[] lines = export(eventLog);
+        assertEquals(1, lines.length);
+        assertTrue(lines[0], lines[0].endsWith("E disconnected subject=1 code=31005 value=0"));
+    }
+
+    @Test
+    public void keepsTheMostRecentEventsOldestFirst() throws IOException {
+        EventLog eventLog = new EventLog(EventLog.LEVEL_DEBUG, 3);
+        for (int i = 0; i < 5; i++) {
+            eventLog.record(EventLog.LEVEL_INFO, EventLog.EVENT_RECOVERY_SCHEDULED, 0, -1, i * 1000L);
+        }
+        assertEquals(3, eventLog.size());
+        assertEquals(5, eventLog.getRecordedCount());
+
+        String[] lines = export(eventLog);
+        assertEquals(3, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("+0ms I recovery_scheduled"));
+        assertTrue(lines[0], lines[0].endsWith("code=-1 value=2000"));
+        assertTrue(lines[2], lines[2].endsWith("code=-1 value=4000"));
+    }
+
+    @Test
+    public void exportsNothingWhenEmpty() throws IOException {
+        assertEquals(0, export(new EventLog(EventLog.LEVEL_DEBUG, 4)).length);
+    }
+
+    @Test
+    public void namesUnknownEvents() {
+        assertEquals("connected", EventLog.getEventName(EventLog.EVENT_CONNECTED));
+        assertEquals("event_99", EventLog.getEventName(99));
+    }
+}
@@ -0,0 +1,126 @@
+package client.twilio.com.quickstart;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HttpTokenTransportTest {
+
+    private static class Result implements TokenTransport.Callback {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile String body;
+        private volatile Exception failure;
+        private volatile int calls;
+
+        @Override
+        public void onResponse(String body) {
+            this.body = body;
+            calls++;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            this.failure = e;
+            calls++;
+            done.countDown();
+        }
+
+        private Result await() throws InterruptedException {
+            assertTrue("No response", done.await(5, TimeUnit.SECONDS));
+            return this;
+        }
+    }
+
+    private LocalTokenServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new LocalTokenServer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    private static Result get(TokenTransport transport, String url) throws InterruptedException {
+        Result result = new Result();
+        transport.get(url, result);
+        return result.await();
+    }
+
+    @Test
+    public void reusesOneConnectionForConsecutiveRequests() throws Exception {
+        HttpTokenTransport transport = new HttpTokenTransport();
+        server.setToken("first");
+        assertEquals("first", get(transport, server.getUrl()).body);
+        server.setToken("second");
+        assertEquals("second", get(transport, server.getUrl() + "?client=jenny").body);
+        assertEquals("/token?client=jenny", server.getLastPath());
+        server.setToken("third");
+        assertEquals("third", get(transport, server.getUrl()).body);
+
+        assertEquals(3, server.getRequestCount());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void requestsAndDecodesGzip() throws Exception {
+        server.setToken("compressed token \u00e9");
+        Result result = get(new HttpTokenTransport(), server.getUrl());
+        assertEquals("gzip", server.getLastAcceptEncoding());
+        assertEquals("compressed token \u00e9", result.body);
+    }
+
+    @Test
+    public void revalidatesTheLastTokenWithItsETag() throws Exception {
+        HttpTokenTransport transport = new HttpTokenTransport();
+        server.setETag("\"v1\"");
+        server.setToken("cached");
+        assertEquals("cached", get(transport, server.getUrl()).body);
+        assertNull(server.getLastIfNoneMatch());
+
+        server.setToken("not sent");
+        assertEquals("cached", get(transport, server.getUrl()).body);
+        assertEquals("\"v1\"", server.getLastIfNoneMatch());
+        assertEquals(1, transport.getNotModifiedCount());
+
+        // Another URL is not revalidated
+        server.setToken("other");
+        assertEquals("other", get(transport, server.getUrl() + "?client=bob").body);
+        assertNull(server.getLastIfNoneMatch());
+        assertEquals(3, transport.getRequestCount());
+    }
+
+    @Test
+    public void reportsErrorResponsesAsFailures() throws Exception {
+        HttpTokenTransport transport = new HttpTokenTransport();
+        server.setResponseCode(500);
+        Result result = get(transport, server.getUrl());
+        assertNull(result.body);
+        assertTrue(result.failure instanceof IOException);
+        assertEquals(1, result.calls);
+
+        // The connection is still good for the next request
+        server.setResponseCode(200);
+        server.setToken("recovered");
+        assertEquals("recovered", get(transport, server.getUrl()).body);
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void failsWhenTheServerIsTooSlow() throws Exception {
+        server.setDelayMillis(2000);
+        long startMillis = System.currentTimeMillis();
+        Result result = get(new HttpTokenTransport(1000, 200), server.getUrl());
+        assertTrue(result.failure instanceof IOException);
+        assertTrue(System.currentTimeMillis() - startMillis < 1500);
+    }
+}
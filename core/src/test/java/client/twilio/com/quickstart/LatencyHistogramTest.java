@@ -0,0 +1,55 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverTheTrackableRange() throws Exception {
+        for (long millis = 0; millis <= LatencyHistogram.MAX_TRACKABLE_MILLIS; millis += 7) {
+            int index = LatencyHistogram.bucketIndex(millis);
+            assertTrue(index >= 0 && index < LatencyHistogram.BUCKET_COUNT);
+            assertTrue(LatencyHistogram.bucketLowerBound(index) <= millis);
+            if (index + 1 < LatencyHistogram.BUCKET_COUNT) {
+                assertTrue(LatencyHistogram.bucketLowerBound(index + 1) > millis);
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(LatencyHistogram.MAX_TRACKABLE_MILLIS));
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 1000; millis++) {
+            histogram.record(millis);
+        }
+
+        assertEquals(1000, histogram.getTotalCount());
+        assertEquals(500, histogram.getValueAtPercentile(50), 500 * 0.07);
+        assertEquals(990, histogram.getValueAtPercentile(99), 990 * 0.07);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void persistedCountsAreAdded() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(120);
+        histogram.record(340);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.writeTo(new DataOutputStream(bytes));
+
+        LatencyHistogram restored = new LatencyHistogram();
+        restored.record(80);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(3, restored.getTotalCount());
+        assertEquals(340, restored.getMaxMillis());
+    }
+}
@@ -0,0 +1,209 @@
+package client.twilio.com.quickstart;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * A stand-in for the token service on the loopback interface, for tests. Speaks just enough
+ * HTTP/1.1 to serve GET requests on persistent connections, and counts the connections accepted so
+ * tests can tell whether a client reused one.
+ */
+class LocalTokenServer {
+
+    private final ServerSocket serverSocket;
+    private final List<Socket> sockets = new ArrayList<Socket>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private volatile int responseCode = 200;
+    private volatile String token = "token";
+    private volatile String eTag;
+    private volatile long delayMillis;
+    private volatile String lastIfNoneMatch;
+    private volatile String lastAcceptEncoding;
+    private volatile String lastPath;
+
+    LocalTokenServer() throws IOException {
+        serverSocket = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, "LocalTokenServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    String getUrl() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/token";
+    }
+
+    void setResponseCode(int responseCode) {
+        this.responseCode = responseCode;
+    }
+
+    void setToken(String token) {
+        this.token = token;
+    }
+
+    /*
+     * Tag responses with the ETag, and answer requests revalidating it with 304 Not Modified
+     */
+    void setETag(String eTag) {
+        this.eTag = eTag;
+    }
+
+    void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    int getRequestCount() {
+        return requestCount.get();
+    }
+
+    String getLastIfNoneMatch() {
+        return lastIfNoneMatch;
+    }
+
+    String getLastAcceptEncoding() {
+        return lastAcceptEncoding;
+    }
+
+    String getLastPath() {
+        return lastPath;
+    }
+
+    void close() throws IOException {
+        serverSocket.close();
+        synchronized (sockets) {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            connectionCount.incrementAndGet();
+            synchronized (sockets) {
+                sockets.add(socket);
+            }
+            Thread connectionThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serve(socket);
+                    } catch (IOException e) {
+                        // The client went away
+                    }
+                }
+            });
+            connectionThread.setDaemon(true);
+            connectionThread.start();
+        }
+    }
+
+    /*
+     * Answer requests on the connection until the client closes it
+     */
+    private void serve(Socket socket) throws IOException {
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        try {
+            String requestLine;
+            while ((requestLine = readLine(in)) != null) {
+                String ifNoneMatch = null;
+                String acceptEncoding = null;
+                String header;
+                while ((header = readLine(in)) != null && header.length() > 0) {
+                    int colon = header.indexOf(':');
+                    String name = header.substring(0, colon).trim();
+                    String value = header.substring(colon + 1).trim();
+                    if (name.equalsIgnoreCase("If-None-Match")) {
+                        ifNoneMatch = value;
+                    } else if (name.equalsIgnoreCase("Accept-Encoding")) {
+                        acceptEncoding = value;
+                    }
+                }
+                requestCount.incrementAndGet();
+                lastIfNoneMatch = ifNoneMatch;
+                lastAcceptEncoding = acceptEncoding;
+                lastPath = requestLine.split(" ")[1];
+                if (delayMillis > 0) {
+                    try {
+                        Thread.sleep(delayMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                respond(out, ifNoneMatch, acceptEncoding);
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    private void respond(OutputStream out, String ifNoneMatch, String acceptEncoding) throws IOException {
+        String currentETag = eTag;
+        StringBuilder head = new StringBuilder();
+        byte[] body;
+        if (currentETag != null && currentETag.equals(ifNoneMatch)) {
+            head.append("HTTP/1.1 304 Not Modified\r\n");
+            body = new byte[0];
+        } else {
+            int code = responseCode;
+            head.append("HTTP/1.1 ").append(code).append(code == 200 ? " OK" : " Error").append("\r\n");
+            body = (code == 200 ? token : "error").getBytes("UTF-8");
+            if (code == 200 && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+                gzip.write(body);
+                gzip.close();
+                body = compressed.toByteArray();
+                head.append("Content-Encoding: gzip\r\n");
+            }
+            if (code == 200 && currentETag != null) {
+                head.append("ETag: ").append(currentETag).append("\r\n");
+            }
+            head.append("Content-Type: text/plain; charset=utf-8\r\n");
+        }
+        head.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+        out.write(head.toString().getBytes("US-ASCII"));
+        out.write(body);
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+}
@@ -0,0 +1,63 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PresenceRosterTest {
+
+    @Test
+    public void tracksEachClientIncrementally() {
+        PresenceRoster roster = new PresenceRoster();
+        assertEquals(PresenceRoster.UNKNOWN, roster.getAvailability("alice"));
+
+        assertTrue(roster.update("alice", true));
+        assertTrue(roster.update("bob", true));
+        assertTrue(roster.update("bob", false));
+        assertEquals(PresenceRoster.AVAILABLE, roster.getAvailability("alice"));
+        assertEquals(PresenceRoster.AVAILABLE, roster.getAvailability(" alice "));
+        assertEquals(PresenceRoster.UNAVAILABLE, roster.getAvailability("bob"));
+        assertEquals(PresenceRoster.UNKNOWN, roster.getAvailability(null));
+        assertEquals(1, roster.getAvailableCount());
+    }
+
+    @Test
+    public void onlyChangesVersionWhenSomethingChanged() {
+        PresenceRoster roster = new PresenceRoster();
+        assertFalse(roster.clear());
+        assertFalse(roster.update(null, true));
+        long version = roster.getVersion();
+
+        assertTrue(roster.update("alice", true));
+        assertEquals(version + 1, roster.getVersion());
+        assertFalse(roster.update("alice", true));
+        assertEquals(version + 1, roster.getVersion());
+
+        assertTrue(roster.clear());
+        assertEquals(version + 2, roster.getVersion());
+        assertEquals(PresenceRoster.UNKNOWN, roster.getAvailability("alice"));
+    }
+
+    @Test
+    public void acceptsUpdatesFromConcurrentThreads() throws InterruptedException {
+        final PresenceRoster roster = new PresenceRoster();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t * 1000;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        roster.update("client" + (offset + i), true);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, roster.getAvailableCount());
+        assertEquals(4000, roster.getVersion());
+    }
+}
@@ -0,0 +1,111 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RecoverySchedulerTest {
+
+    /*
+     * Always draws the same fraction of the jitter range
+     */
+    private static class FixedRandom extends Random {
+        private final double value;
+
+        private FixedRandom(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+
+    @Test
+    public void classifiesErrorCodes() {
+        assertEquals(RecoveryScheduler.ACTION_REFRESH_TOKEN, RecoveryScheduler.classify(31205));
+        assertEquals(RecoveryScheduler.ACTION_REFRESH_TOKEN, RecoveryScheduler.classify(31204));
+        assertEquals(RecoveryScheduler.ACTION_REFRESH_TOKEN, RecoveryScheduler.classify(RecoveryScheduler.ERROR_TOKEN_REQUEST_FAILED));
+        assertEquals(RecoveryScheduler.ACTION_RETRY, RecoveryScheduler.classify(31009));
+        assertEquals(RecoveryScheduler.ACTION_RETRY, RecoveryScheduler.classify(31000));
+        assertEquals(RecoveryScheduler.ACTION_RETRY, RecoveryScheduler.classify(12345));
+        assertEquals(RecoveryScheduler.ACTION_NONE, RecoveryScheduler.classify(31203));
+    }
+
+    @Test
+    public void backsOffExponentiallyUpToTheMaximum() {
+        RecoveryScheduler scheduler = new RecoveryScheduler(new FixedRandom(0.999999));
+        long previous = 0;
+        for (int attempt = 1; attempt <= 30; attempt++) {
+            long delay = scheduler.onFailure(31009, 0);
+            assertTrue(delay >= previous);
+            assertTrue(delay <= RecoveryScheduler.MAX_DELAY_MILLIS);
+            previous = delay;
+        }
+        assertEquals(RecoveryScheduler.MAX_DELAY_MILLIS - 1, previous);
+        assertEquals(30, scheduler.getAttempts());
+    }
+
+    @Test
+    public void jittersBetweenHalfAndAllOfTheDelay() {
+        assertEquals(500, new RecoveryScheduler(new FixedRandom(0)).nextDelayMillis(1));
+        assertEquals(2000, new RecoveryScheduler(new FixedRandom(0)).nextDelayMillis(3));
+        assertEquals(3000, new RecoveryScheduler(new FixedRandom(0.5)).nextDelayMillis(3));
+
+        RecoveryScheduler scheduler = new RecoveryScheduler();
+        for (int i = 0; i < 1000; i++) {
+            long delay = scheduler.nextDelayMillis(2);
+            assertTrue(delay >= 1000 && delay <= 2000);
+        }
+    }
+
+    @Test
+    public void keepsATokenRefreshPendingUntilTaken() {
+        RecoveryScheduler scheduler = new RecoveryScheduler(new FixedRandom(0));
+        scheduler.onFailure(31205, 0);
+        scheduler.onFailure(31009, 0);
+        assertEquals(RecoveryScheduler.ACTION_REFRESH_TOKEN, scheduler.takePendingAction());
+        assertEquals(RecoveryScheduler.ACTION_NONE, scheduler.takePendingAction());
+
+        scheduler.onFailure(31009, 0);
+        assertEquals(RecoveryScheduler.ACTION_RETRY, scheduler.takePendingAction());
+    }
+
+    @Test
+    public void doesNotRetryAccountErrors() {
+        RecoveryScheduler scheduler = new RecoveryScheduler(new FixedRandom(0));
+        assertEquals(-1, scheduler.onFailure(31203, 0));
+        assertFalse(scheduler.isRecovering());
+    }
+
+    @Test
+    public void measuresTheTimeFromFirstFailureToRecovery() {
+        RecoveryScheduler scheduler = new RecoveryScheduler(new FixedRandom(0));
+        assertEquals(-1, scheduler.onRecovered(100));
+
+        scheduler.onFailure(RecoveryScheduler.ERROR_TOKEN_REQUEST_FAILED, 1000);
+        scheduler.onFailure(31009, 5000);
+        assertTrue(scheduler.isRecovering());
+        assertEquals(8000, scheduler.onRecovered(9000));
+        assertFalse(scheduler.isRecovering());
+        assertEquals(RecoveryScheduler.ACTION_NONE, scheduler.takePendingAction());
+
+        // The next outage starts from its own first failure, with the shortest delay again
+        assertEquals(500, scheduler.onFailure(31009, 20000));
+        assertEquals(1000, scheduler.onRecovered(21000));
+    }
+
+    @Test
+    public void resetForgetsFailuresWithoutAnOutage() {
+        RecoveryScheduler scheduler = new RecoveryScheduler(new FixedRandom(0));
+        scheduler.onFailure(31205, 1000);
+        scheduler.reset();
+        assertFalse(scheduler.isRecovering());
+        assertEquals(RecoveryScheduler.ACTION_NONE, scheduler.takePendingAction());
+        assertEquals(-1, scheduler.onRecovered(2000));
+        assertEquals(500, scheduler.onFailure(31009, 3000));
+    }
+}
@@ -0,0 +1,58 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.Assert.*;
+
+public class StartupTracerTest {
+
+    @Test
+    public void completedLaunchRecordsReachedSpansOnly() throws Exception {
+        StartupTracer tracer = new StartupTracer(4);
+        tracer.mark(StartupTracer.MARK_LAUNCH);
+        tracer.mark(StartupTracer.MARK_PERMISSION_GRANTED);
+        tracer.mark(StartupTracer.MARK_CREATING_DEVICE);
+        tracer.mark(StartupTracer.MARK_DEVICE_CREATED);
+
+        assertTrue(tracer.completeLaunch(1));
+        assertFalse(tracer.completeLaunch(1));
+
+        assertEquals(1, tracer.getLaunchCount());
+        assertNotNull(tracer.summarize(StartupTracer.SPAN_TOTAL, 1));
+        assertNotNull(tracer.summarize(StartupTracer.SPAN_CREATE_DEVICE, 1));
+        assertNull(tracer.summarize(StartupTracer.SPAN_TOKEN_FETCH, 1));
+        assertNull(tracer.summarize(StartupTracer.SPAN_TOTAL, 2));
+    }
+
+    @Test
+    public void persistedLaunchesAreKeptInFrontOfTheCurrentLaunch() throws Exception {
+        StartupTracer previous = new StartupTracer(3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < 5; i++) {
+            StartupTracer launch = new StartupTracer(3);
+            if (bytes.size() > 0) {
+                launch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            }
+            launch.mark(StartupTracer.MARK_LAUNCH);
+            launch.completeLaunch(7);
+            bytes.reset();
+            launch.writeTo(new DataOutputStream(bytes));
+            previous = launch;
+        }
+
+        StartupTracer current = new StartupTracer(3);
+        current.mark(StartupTracer.MARK_LAUNCH);
+        current.completeLaunch(8);
+        current.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(3, previous.getLaunchCount());
+        assertEquals(3, current.getLaunchCount());
+        assertNotNull(current.summarize(StartupTracer.SPAN_TOTAL, 8));
+        assertNotNull(current.summarize(StartupTracer.SPAN_TOTAL, 7));
+    }
+}
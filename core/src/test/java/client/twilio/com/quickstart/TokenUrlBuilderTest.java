@@ -0,0 +1,26 @@
+package client.twilio.com.quickstart;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenUrlBuilderTest {
+
+    @Test
+    public void profileIsCorrelatedToQueryParameters() throws Exception {
+        assertEquals("https://example.com/token?allowOutgoing=true&client=jenny",
+                TokenUrlBuilder.build("https://example.com/token", new ClientProfile("jenny", true, true)));
+        assertEquals("https://example.com/token?client=jenny",
+                TokenUrlBuilder.build("https://example.com/token", new ClientProfile("jenny", false, true)));
+        assertEquals("https://example.com/token?allowOutgoing=true",
+                TokenUrlBuilder.build("https://example.com/token", new ClientProfile("jenny", true, false)));
+        assertEquals("https://example.com/token?v=2&allowOutgoing=true",
+                TokenUrlBuilder.build("https://example.com/token?v=2", new ClientProfile(null, true, true)));
+    }
+
+    @Test
+    public void clientNameIsPercentEncoded() throws Exception {
+        assertEquals("https://example.com/token?client=a%20b%2Bc%26d~%C3%A9",
+                TokenUrlBuilder.build("https://example.com/token", new ClientProfile("a b+c&d~\u00e9", false, true)));
+    }
+}